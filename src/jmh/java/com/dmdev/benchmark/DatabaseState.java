@@ -0,0 +1,53 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.JdbcSubscriptionDao;
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.DatabaseSchema;
+import com.dmdev.util.ConnectionManager;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedded H2 database from the test {@code application.properties}, filled with {@link #USERS} users
+ * having {@link #SUBSCRIPTIONS_PER_USER} subscriptions each.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+
+    static final int USERS = 1_000;
+    static final int SUBSCRIPTIONS_PER_USER = 5;
+
+    final SubscriptionDao subscriptionDao = JdbcSubscriptionDao.getInstance();
+    final List<Integer> subscriptionIds = new ArrayList<>();
+
+    @Setup
+    public void prepareDatabase() throws SQLException {
+        try (var connection = ConnectionManager.get()) {
+            DatabaseSchema.create(connection);
+            DatabaseSchema.clean(connection);
+        }
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (int userId = 0; userId < USERS; userId++) {
+            for (int i = 0; i < SUBSCRIPTIONS_PER_USER; i++) {
+                subscriptions.add(Subscription.builder()
+                        .userId(userId)
+                        .name("subscription-" + i)
+                        .provider(Provider.GOOGLE)
+                        .expirationDate(Instant.now().plus(Duration.ofDays(365)))
+                        .status(Status.ACTIVE)
+                        .build());
+            }
+        }
+        subscriptionDao.insertAll(subscriptions).forEach(subscription -> subscriptionIds.add(subscription.getId()));
+    }
+}
@@ -0,0 +1,55 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionDaoBenchmark {
+
+    private final AtomicInteger insertedNames = new AtomicInteger();
+
+    @Benchmark
+    public Optional<Subscription> findById(DatabaseState database) {
+        var ids = database.subscriptionIds;
+        return database.subscriptionDao.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    public List<Subscription> findByUserId(DatabaseState database) {
+        return database.subscriptionDao.findByUserId(ThreadLocalRandom.current().nextInt(DatabaseState.USERS));
+    }
+
+    @Benchmark
+    public Subscription insert(DatabaseState database) {
+        return database.subscriptionDao.insert(Subscription.builder()
+                .userId(-1)
+                .name("inserted-" + insertedNames.incrementAndGet())
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(Duration.ofDays(30)))
+                .status(Status.ACTIVE)
+                .build());
+    }
+}
@@ -0,0 +1,68 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.service.SubscriptionService;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionServiceBenchmark {
+
+    private SubscriptionService subscriptionService;
+
+    @Setup
+    public void init(DatabaseState database) {
+        subscriptionService = new SubscriptionService(
+                database.subscriptionDao,
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                Clock.systemUTC());
+    }
+
+    @Benchmark
+    public Subscription upsert() {
+        return subscriptionService.upsert(randomDto());
+    }
+
+    /**
+     * Cancel only accepts active subscriptions, so each cancel is preceded by an upsert reactivating one.
+     */
+    @Benchmark
+    public Subscription upsertAndCancel() {
+        var subscription = subscriptionService.upsert(randomDto());
+        subscriptionService.cancel(subscription.getId());
+        return subscription;
+    }
+
+    private static CreateSubscriptionDto randomDto() {
+        var random = ThreadLocalRandom.current();
+        return CreateSubscriptionDto.builder()
+                .userId(random.nextInt(DatabaseState.USERS))
+                .name("subscription-" + random.nextInt(DatabaseState.SUBSCRIPTIONS_PER_USER))
+                .provider("Google")
+                .expirationDate(Instant.now().plus(Duration.ofDays(365)))
+                .build();
+    }
+}
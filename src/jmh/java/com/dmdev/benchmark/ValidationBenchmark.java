@@ -0,0 +1,69 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.ValidationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private final CreateSubscriptionValidator validator = CreateSubscriptionValidator.getInstance();
+    private final CreateSubscriptionMapper mapper = CreateSubscriptionMapper.getInstance();
+
+    private final CreateSubscriptionDto validDto = CreateSubscriptionDto.builder()
+            .userId(22)
+            .name("Andrey")
+            .provider("Google")
+            .expirationDate(Instant.now().plus(Duration.ofDays(365)))
+            .build();
+    private final CreateSubscriptionDto invalidDto = CreateSubscriptionDto.builder()
+            .userId(null)
+            .name(" ")
+            .provider("dummy")
+            .expirationDate(Instant.now().minus(Duration.ofDays(1)))
+            .build();
+
+    private String providerName = "google";
+
+    @Benchmark
+    public ValidationResult validateValid() {
+        return validator.validate(validDto);
+    }
+
+    @Benchmark
+    public ValidationResult validateInvalid() {
+        return validator.validate(invalidDto);
+    }
+
+    @Benchmark
+    public Subscription map() {
+        return mapper.map(validDto);
+    }
+
+    @Benchmark
+    public Optional<Provider> findProviderByName() {
+        return Provider.findByNameOpt(providerName);
+    }
+}
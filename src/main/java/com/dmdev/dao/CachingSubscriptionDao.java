@@ -0,0 +1,310 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.CacheStats;
+import com.dmdev.util.LruCache;
+import com.dmdev.util.TransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache for {@link #findById} and {@link #findByUserId} in front of another {@link SubscriptionDao}.
+ * <p>
+ * Every write going through this DAO invalidates the affected entries, so reads after writes are consistent
+ * within the process. Writes made by other processes become visible once cached entries reach their time to live.
+ * Cached subscriptions are copied on the way in and out, so callers can't modify the cached state.
+ * Misses are read from the primary, so a replica lagging behind an invalidating write can't refill the cache
+ * with the row it replaced.
+ * <p>
+ * Every invalidation advances a generation, and a row read or written while the generation advanced isn't cached,
+ * as the invalidation may have come after the row was read and before it was put, leaving it cached past its
+ * replacement. Nothing is cached inside {@link TransactionManager#inTransaction}, where rows may not be committed
+ * yet and outlive a rollback; writes there only invalidate.
+ */
+public class CachingSubscriptionDao implements SubscriptionDao {
+
+    private final SubscriptionDao delegate;
+    private final LruCache<Integer, Subscription> subscriptionsById;
+    private final LruCache<Integer, List<Subscription>> subscriptionsByUserId;
+    /**
+     * Guarded by {@code this}, like the puts and invalidations, so no invalidation slips in between checking it
+     * and putting.
+     */
+    private long generation;
+
+    public CachingSubscriptionDao(SubscriptionDao delegate, int maximumSize, Duration timeToLive, Clock clock) {
+        this.delegate = delegate;
+        this.subscriptionsById = new LruCache<>(maximumSize, timeToLive, clock);
+        this.subscriptionsByUserId = new LruCache<>(maximumSize, timeToLive, clock);
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        var cachedSubscription = subscriptionsById.get(id);
+        if (cachedSubscription != null) {
+            return Optional.of(copy(cachedSubscription));
+        }
+        var readGeneration = generation();
+        var subscription = delegate.findByIdOnPrimary(id);
+        subscription.ifPresent(value -> fill(subscriptionsById, id, copy(value), readGeneration));
+        return subscription;
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        var cachedSubscriptions = subscriptionsByUserId.get(userId);
+        if (cachedSubscriptions != null) {
+            return copy(cachedSubscriptions);
+        }
+        var readGeneration = generation();
+        var subscriptions = delegate.findByUserIdOnPrimary(userId);
+        fill(subscriptionsByUserId, userId, copy(subscriptions), readGeneration);
+        return subscriptions;
+    }
+
+    /**
+     * Always reads through, as callers need the row as of the latest write.
+     */
+    @Override
+    public Optional<Subscription> findByIdOnPrimary(Integer id) {
+        return delegate.findByIdOnPrimary(id);
+    }
+
+    @Override
+    public List<Subscription> findByUserIdOnPrimary(Integer userId) {
+        return delegate.findByUserIdOnPrimary(userId);
+    }
+
+    /**
+     * Always reads through, as the row lock must be taken in the database.
+     */
+    @Override
+    public Optional<Subscription> findByIdForUpdate(Integer id) {
+        return delegate.findByIdForUpdate(id);
+    }
+
+    @Override
+    public List<Subscription> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Page<Subscription> findPage(Integer afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Page<Subscription> findByUserIdPage(Integer userId, Integer afterId, int limit) {
+        return delegate.findByUserIdPage(userId, afterId, limit);
+    }
+
+    @Override
+    public Stream<Subscription> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+        return delegate.streamAll(filter);
+    }
+
+    @Override
+    public Stream<Subscription> streamByUserId(Integer userId) {
+        return delegate.streamByUserId(userId);
+    }
+
+    @Override
+    public Stream<Subscription> streamActiveExpiringBetween(Instant from, Instant to) {
+        return delegate.streamActiveExpiringBetween(from, to);
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public boolean existsByIdOnPrimary(Integer id) {
+        return delegate.existsByIdOnPrimary(id);
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        try {
+            return delegate.cancel(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expiredAt) {
+        try {
+            return delegate.expire(id, expiredAt);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        try {
+            return delegate.update(entity);
+        } finally {
+            invalidate(entity.getId());
+            invalidateUser(entity.getUserId());
+        }
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        try {
+            return delegate.insert(entity);
+        } finally {
+            invalidateUser(entity.getUserId());
+        }
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        var writeGeneration = generation();
+        try {
+            var subscription = delegate.upsertByUserIdAndName(entity);
+            fillWritten(subscription.stream().toList(), writeGeneration);
+            return subscription;
+        } finally {
+            invalidateUser(entity.getUserId());
+        }
+    }
+
+    @Override
+    public List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities) {
+        var writeGeneration = generation();
+        try {
+            var subscriptions = delegate.upsertAllByUserIdAndName(entities);
+            fillWritten(subscriptions.stream().flatMap(Optional::stream).toList(), writeGeneration);
+            return subscriptions;
+        } finally {
+            entities.forEach(entity -> invalidateUser(entity.getUserId()));
+        }
+    }
+
+    @Override
+    public int expireOverdue(Instant now, int chunkSize) {
+        try {
+            return delegate.expireOverdue(now, chunkSize);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public int expireDue(Collection<Integer> ids, Instant now) {
+        try {
+            return delegate.expireDue(ids, now);
+        } finally {
+            ids.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public List<Subscription> updateAll(Collection<Subscription> entities) {
+        try {
+            return delegate.updateAll(entities);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public List<Subscription> insertAll(Collection<Subscription> entities) {
+        try {
+            return delegate.insertAll(entities);
+        } finally {
+            entities.forEach(entity -> invalidateUser(entity.getUserId()));
+        }
+    }
+
+    public CacheStats getByIdStats() {
+        return subscriptionsById.stats();
+    }
+
+    public CacheStats getByUserIdStats() {
+        return subscriptionsByUserId.stats();
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        subscriptionsById.invalidateAll();
+        subscriptionsByUserId.invalidateAll();
+    }
+
+    /**
+     * Drops the subscription and every cached user list containing it, as its user may have changed.
+     */
+    private synchronized void invalidate(Integer id) {
+        generation++;
+        subscriptionsById.invalidate(id);
+        subscriptionsByUserId.invalidateIf((userId, subscriptions) -> subscriptions.stream()
+                .anyMatch(subscription -> subscription.getId().equals(id)));
+    }
+
+    private synchronized void invalidateUser(Integer userId) {
+        generation++;
+        subscriptionsByUserId.invalidate(userId);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a value read from the delegate, unless something was invalidated since the read began or it was read
+     * in a transaction.
+     */
+    private synchronized <K, V> void fill(LruCache<K, V> cache, K key, V value, long readGeneration) {
+        if (generation == readGeneration && !TransactionManager.isActive()) {
+            cache.put(key, value);
+        }
+    }
+
+    /**
+     * Caches the subscriptions written by an upsert, unless something was invalidated since the write began,
+     * in which case they may already be outdated, or they were written in a transaction that may still roll back.
+     * Such subscriptions are dropped instead. Advances the generation, so a concurrent upsert of the same rows
+     * committed before this one can't put its rows afterwards.
+     */
+    private synchronized void fillWritten(List<Subscription> subscriptions, long writeGeneration) {
+        if (generation == writeGeneration && !TransactionManager.isActive()) {
+            subscriptions.forEach(subscription -> subscriptionsById.put(subscription.getId(), copy(subscription)));
+        } else {
+            subscriptions.forEach(subscription -> subscriptionsById.invalidate(subscription.getId()));
+        }
+        generation++;
+    }
+
+    private static Subscription copy(Subscription subscription) {
+        return subscription.toBuilder().build();
+    }
+
+    private static List<Subscription> copy(List<Subscription> subscriptions) {
+        return subscriptions.stream()
+                .map(CachingSubscriptionDao::copy)
+                .toList();
+    }
+}
@@ -2,8 +2,10 @@ package com.dmdev.dao;
 
 import com.dmdev.entity.BaseEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public interface Dao<K, T extends BaseEntity<K>> {
 
@@ -13,13 +15,31 @@ public interface Dao<K, T extends BaseEntity<K>> {
                 : insert(entity);
     }
 
+    default List<T> upsertAll(Collection<T> entities) {
+        var entitiesById = entities.stream()
+                .collect(Collectors.partitioningBy(entity -> entity.getId() != null));
+        updateAll(entitiesById.get(true));
+        insertAll(entitiesById.get(false));
+        return List.copyOf(entities);
+    }
+
     List<T> findAll();
 
     Optional<T> findById(K id);
 
     boolean delete(K id);
 
+    /**
+     * Updates the entity. Versioned entities (see {@link BaseEntity#getVersion()}) are only written if the stored
+     * version still matches, and their version is incremented.
+     *
+     * @throws com.dmdev.exception.OptimisticLockException if the stored version doesn't match
+     */
     T update(T entity);
 
     T insert(T entity);
+
+    List<T> updateAll(Collection<T> entities);
+
+    List<T> insertAll(Collection<T> entities);
 }
@@ -0,0 +1,15 @@
+package com.dmdev.dao;
+
+public enum Dialect {
+    POSTGRESQL, H2;
+
+    public static Dialect fromUrl(String url) {
+        if (url.startsWith("jdbc:postgresql:")) {
+            return POSTGRESQL;
+        }
+        if (url.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        throw new IllegalArgumentException("Unsupported database url " + url);
+    }
+}
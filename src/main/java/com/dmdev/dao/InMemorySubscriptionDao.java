@@ -0,0 +1,457 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.OptimisticLockException;
+import com.dmdev.util.IntObjectHashMap;
+import com.dmdev.util.TransactionManager;
+import lombok.SneakyThrows;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link SubscriptionDao} keeping subscriptions in memory, for edge caches, load tests and fast unit tests.
+ * <p>
+ * Subscriptions are indexed by id and by user id in primitive int-keyed maps, so neither lookup scans,
+ * and the {@code (user_id, name)} uniqueness of the database schema is enforced with the same exception type.
+ * Writers take an exclusive lock; lookups by id read optimistically without locking and only fall back to
+ * a read lock if a write happened meanwhile. Stored subscriptions are never modified in place,
+ * and callers only ever see copies.
+ */
+public class InMemorySubscriptionDao implements SubscriptionDao {
+
+    private static final Comparator<Subscription> BY_ID = Comparator.comparing(Subscription::getId);
+
+    private final StampedLock lock = new StampedLock();
+    private final IntObjectHashMap<Subscription> subscriptionsById = new IntObjectHashMap<>();
+    private final IntObjectHashMap<Map<String, Subscription>> subscriptionsByUserId = new IntObjectHashMap<>();
+    private int lastId;
+
+    @Override
+    public List<Subscription> findAll() {
+        return read(() -> select(subscription -> true));
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(readOptimistically(() -> subscriptionsById.get(id))).map(InMemorySubscriptionDao::copy);
+    }
+
+    /**
+     * Same as {@link #findById(Integer)}, as there are no replicas.
+     */
+    @Override
+    public Optional<Subscription> findByIdOnPrimary(Integer id) {
+        return findById(id);
+    }
+
+    /**
+     * Same as {@link #findById(Integer)}; there is no row lock to take, but the transaction requirement is kept
+     * so code doesn't behave differently once it runs against the database.
+     */
+    @Override
+    public Optional<Subscription> findByIdForUpdate(Integer id) {
+        if (!TransactionManager.isActive()) {
+            throw new IllegalStateException("findByIdForUpdate requires an active transaction");
+        }
+        return findById(id);
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return id != null && readOptimistically(() -> subscriptionsById.containsKey(id));
+    }
+
+    @Override
+    public boolean existsByIdOnPrimary(Integer id) {
+        return existsById(id);
+    }
+
+    @Override
+    public List<Subscription> findByUserIdOnPrimary(Integer userId) {
+        return findByUserId(userId);
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        if (userId == null) {
+            return new ArrayList<>();
+        }
+        var subscriptions = read(() -> {
+            var subscriptionsByName = subscriptionsByUserId.get(userId);
+            return subscriptionsByName == null ? List.<Subscription>of() : List.copyOf(subscriptionsByName.values());
+        });
+        return sortedCopies(subscriptions.stream());
+    }
+
+    @Override
+    public Page<Subscription> findPage(Integer afterId, int limit) {
+        return page(afterId, limit, () -> select(subscription -> true));
+    }
+
+    @Override
+    public Page<Subscription> findByUserIdPage(Integer userId, Integer afterId, int limit) {
+        return page(afterId, limit, () -> findByUserId(userId));
+    }
+
+    @Override
+    public Stream<Subscription> streamAll() {
+        return findAll().stream();
+    }
+
+    @Override
+    public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+        return read(() -> select(filter::matches)).stream();
+    }
+
+    @Override
+    public Stream<Subscription> streamByUserId(Integer userId) {
+        return findByUserId(userId).stream();
+    }
+
+    @Override
+    public Stream<Subscription> streamActiveExpiringBetween(Instant from, Instant to) {
+        return read(() -> select(subscription -> subscription.getStatus() == Status.ACTIVE
+                && !subscription.getExpirationDate().isBefore(from)
+                && subscription.getExpirationDate().isBefore(to))).stream();
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        return write(() -> transition(id, subscription -> subscription.getStatus() == Status.ACTIVE,
+                subscription -> subscription.setStatus(Status.CANCELED)));
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expiredAt) {
+        return write(() -> transition(id, subscription -> subscription.getStatus() != Status.EXPIRED,
+                subscription -> subscription.setStatus(Status.EXPIRED).setExpirationDate(expiredAt)));
+    }
+
+    /**
+     * Expires the overdue subscriptions in chunks of at most {@code chunkSize}, each under its own write lock,
+     * so readers aren't blocked for the whole sweep. Subscriptions changed between chunks are checked again.
+     */
+    @Override
+    public int expireOverdue(Instant now, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        Predicate<Subscription> overdue = subscription -> subscription.getStatus() == Status.ACTIVE
+                && subscription.getExpirationDate().isBefore(now);
+        var ids = read(() -> select(overdue)).stream()
+                .map(Subscription::getId)
+                .toList();
+        var expired = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            var chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            expired += write(() -> {
+                var expiredInChunk = 0;
+                for (var id : chunk) {
+                    if (transition(id, overdue, subscription -> subscription.setStatus(Status.EXPIRED))) {
+                        expiredInChunk++;
+                    }
+                }
+                return expiredInChunk;
+            });
+        }
+        return expired;
+    }
+
+    @Override
+    public int expireDue(Collection<Integer> ids, Instant now) {
+        return write(() -> {
+            var expired = 0;
+            for (var id : ids) {
+                if (transition(id, subscription -> subscription.getStatus() == Status.ACTIVE
+                                && !subscription.getExpirationDate().isAfter(now),
+                        subscription -> subscription.setStatus(Status.EXPIRED))) {
+                    expired++;
+                }
+            }
+            return expired;
+        });
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        return write(() -> {
+            var subscription = subscriptionsById.remove(id);
+            if (subscription == null) {
+                return false;
+            }
+            unindex(subscription);
+            return true;
+        });
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        return write(() -> {
+            checkInsertable(List.of(entity));
+            return doInsert(entity);
+        });
+    }
+
+    @Override
+    public List<Subscription> insertAll(Collection<Subscription> entities) {
+        return write(() -> {
+            checkInsertable(entities);
+            entities.forEach(this::doInsert);
+            return new ArrayList<>(entities);
+        });
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        return write(() -> {
+            checkUpdatable(List.of(entity));
+            doUpdate(entity);
+            return entity;
+        });
+    }
+
+    /**
+     * Applies all updates or none of them.
+     */
+    @Override
+    public List<Subscription> updateAll(Collection<Subscription> entities) {
+        return write(() -> {
+            checkUpdatable(entities);
+            entities.forEach(this::doUpdate);
+            return new ArrayList<>(entities);
+        });
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        return write(() -> doUpsertByUserIdAndName(entity));
+    }
+
+    @Override
+    public List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return write(() -> {
+            List<Optional<Subscription>> subscriptions = new ArrayList<>(entities.size());
+            for (var entity : entities) {
+                subscriptions.add(doUpsertByUserIdAndName(entity));
+            }
+            return subscriptions;
+        });
+    }
+
+    private Optional<Subscription> doUpsertByUserIdAndName(Subscription entity) {
+        checkNotNull(entity);
+        var existing = findByUserIdAndName(entity.getUserId(), entity.getName());
+        if (existing == null) {
+            return Optional.of(copy(doInsert(copy(entity))));
+        }
+        if (existing.getProvider() != entity.getProvider()) {
+            return Optional.empty();
+        }
+        var updated = copy(existing)
+                .setExpirationDate(entity.getExpirationDate())
+                .setStatus(entity.getStatus())
+                .setVersion(existing.getVersion() + 1);
+        store(updated);
+        return Optional.of(copy(updated));
+    }
+
+    private boolean transition(Integer id, Predicate<Subscription> allowed, Consumer<Subscription> change) {
+        var subscription = id == null ? null : subscriptionsById.get(id);
+        if (subscription == null || !allowed.test(subscription)) {
+            return false;
+        }
+        var changed = copy(subscription);
+        change.accept(changed);
+        store(changed.setVersion(subscription.getVersion() + 1));
+        return true;
+    }
+
+    private Subscription doInsert(Subscription entity) {
+        entity.setId(++lastId).setVersion(0);
+        var stored = copy(entity);
+        subscriptionsById.put(stored.getId(), stored);
+        index(stored);
+        return entity;
+    }
+
+    private void doUpdate(Subscription entity) {
+        var existing = subscriptionsById.get(entity.getId());
+        if (existing == null) {
+            return;
+        }
+        if (entity.getVersion() != null) {
+            entity.setVersion(entity.getVersion() + 1);
+        }
+        store(copy(entity).setVersion(existing.getVersion() + 1));
+    }
+
+    /**
+     * Replaces the stored subscription with the same id, keeping the user index in sync.
+     */
+    private void store(Subscription subscription) {
+        var previous = subscriptionsById.put(subscription.getId(), subscription);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(subscription);
+    }
+
+    private void index(Subscription subscription) {
+        var subscriptionsByName = subscriptionsByUserId.get(subscription.getUserId());
+        if (subscriptionsByName == null) {
+            subscriptionsByName = new HashMap<>(4);
+            subscriptionsByUserId.put(subscription.getUserId(), subscriptionsByName);
+        }
+        subscriptionsByName.put(subscription.getName(), subscription);
+    }
+
+    private void unindex(Subscription subscription) {
+        var subscriptionsByName = subscriptionsByUserId.get(subscription.getUserId());
+        subscriptionsByName.remove(subscription.getName());
+        if (subscriptionsByName.isEmpty()) {
+            subscriptionsByUserId.remove(subscription.getUserId());
+        }
+    }
+
+    private Subscription findByUserIdAndName(Integer userId, String name) {
+        var subscriptionsByName = subscriptionsByUserId.get(userId);
+        return subscriptionsByName == null ? null : subscriptionsByName.get(name);
+    }
+
+    private void checkInsertable(Collection<Subscription> entities) {
+        checkUnique(entities, Set.of());
+    }
+
+    /**
+     * Checks versions and uniqueness of all entities before any of them is applied.
+     */
+    private void checkUpdatable(Collection<Subscription> entities) {
+        for (var entity : entities) {
+            var existing = subscriptionsById.get(entity.getId());
+            if (entity.getVersion() != null && (existing == null || !existing.getVersion().equals(entity.getVersion()))) {
+                throw new OptimisticLockException(Subscription.class, entity.getId(), entity.getVersion());
+            }
+        }
+        checkUnique(entities, entities.stream().map(Subscription::getId).collect(Collectors.toSet()));
+    }
+
+    /**
+     * A stored subscription only blocks a user id and name if it isn't among the written ones,
+     * because those may be renamed by the same call.
+     */
+    @SneakyThrows
+    private void checkUnique(Collection<Subscription> entities, Set<Integer> writtenIds) {
+        Set<UserIdAndName> claimed = new HashSet<>(entities.size() * 2);
+        for (var entity : entities) {
+            checkNotNull(entity);
+            var existing = findByUserIdAndName(entity.getUserId(), entity.getName());
+            var taken = existing != null && !writtenIds.contains(existing.getId());
+            if (taken || !claimed.add(new UserIdAndName(entity.getUserId(), entity.getName()))) {
+                throw new SQLIntegrityConstraintViolationException(String.format(
+                        "Duplicate subscription %s of user %d", entity.getName(), entity.getUserId()));
+            }
+        }
+    }
+
+    @SneakyThrows
+    private static void checkNotNull(Subscription entity) {
+        if (entity.getUserId() == null || entity.getName() == null || entity.getProvider() == null
+            || entity.getExpirationDate() == null || entity.getStatus() == null) {
+            throw new SQLIntegrityConstraintViolationException("Subscription has null columns: " + entity);
+        }
+    }
+
+    private List<Subscription> select(Predicate<Subscription> predicate) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        subscriptionsById.forEachValue(subscription -> {
+            if (predicate.test(subscription)) {
+                subscriptions.add(subscription);
+            }
+        });
+        return sortedCopies(subscriptions.stream());
+    }
+
+    private Page<Subscription> page(Integer afterId, int limit, Supplier<List<Subscription>> source) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        var from = afterId == null ? Integer.MIN_VALUE : afterId;
+        var subscriptions = read(source).stream()
+                .filter(subscription -> subscription.getId() > from)
+                .limit(limit + 1L)
+                .toList();
+        return subscriptions.size() <= limit
+                ? new Page<>(subscriptions, null)
+                : new Page<>(subscriptions.subList(0, limit), subscriptions.get(limit - 1).getId());
+    }
+
+    private <T> T readOptimistically(Supplier<T> reader) {
+        var stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                var result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // a concurrent write left the maps inconsistent for this read, retry under the lock
+            }
+        }
+        return read(reader);
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        var stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T write(Supplier<T> writer) {
+        var stamp = lock.writeLock();
+        try {
+            return writer.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static List<Subscription> sortedCopies(Stream<Subscription> subscriptions) {
+        return subscriptions
+                .sorted(BY_ID)
+                .map(InMemorySubscriptionDao::copy)
+                .toList();
+    }
+
+    private static Subscription copy(Subscription subscription) {
+        return subscription.toBuilder().build();
+    }
+
+    private record UserIdAndName(Integer userId, String name) {
+    }
+}
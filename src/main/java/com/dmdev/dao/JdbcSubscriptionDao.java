@@ -0,0 +1,595 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.OptimisticLockException;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.OperationMetrics;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.util.TransactionManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link SubscriptionDao} of the {@code subscription} table, reading through {@link JdbcTemplate}.
+ */
+public class JdbcSubscriptionDao implements SubscriptionDao {
+
+    private static final JdbcSubscriptionDao INSTANCE = new JdbcSubscriptionDao();
+
+    private static final OperationMetrics FIND_ALL_METRICS = MetricsRegistry.operation("SubscriptionDao.findAll");
+    private static final OperationMetrics FIND_BY_ID_METRICS = MetricsRegistry.operation("SubscriptionDao.findById");
+    private static final OperationMetrics FIND_BY_ID_ON_PRIMARY_METRICS = MetricsRegistry.operation("SubscriptionDao.findByIdOnPrimary");
+    private static final OperationMetrics FIND_BY_ID_FOR_UPDATE_METRICS = MetricsRegistry.operation("SubscriptionDao.findByIdForUpdate");
+    private static final OperationMetrics DELETE_METRICS = MetricsRegistry.operation("SubscriptionDao.delete");
+    private static final OperationMetrics EXISTS_BY_ID_METRICS = MetricsRegistry.operation("SubscriptionDao.existsById");
+    private static final OperationMetrics EXISTS_BY_ID_ON_PRIMARY_METRICS = MetricsRegistry.operation("SubscriptionDao.existsByIdOnPrimary");
+    private static final OperationMetrics CANCEL_METRICS = MetricsRegistry.operation("SubscriptionDao.cancel");
+    private static final OperationMetrics EXPIRE_METRICS = MetricsRegistry.operation("SubscriptionDao.expire");
+    private static final OperationMetrics UPDATE_METRICS = MetricsRegistry.operation("SubscriptionDao.update");
+    private static final OperationMetrics INSERT_METRICS = MetricsRegistry.operation("SubscriptionDao.insert");
+    private static final OperationMetrics UPSERT_BY_USER_ID_AND_NAME_METRICS = MetricsRegistry.operation("SubscriptionDao.upsertByUserIdAndName");
+    private static final OperationMetrics UPSERT_ALL_BY_USER_ID_AND_NAME_METRICS = MetricsRegistry.operation("SubscriptionDao.upsertAllByUserIdAndName");
+    private static final OperationMetrics EXPIRE_OVERDUE_METRICS = MetricsRegistry.operation("SubscriptionDao.expireOverdue");
+    private static final OperationMetrics EXPIRE_DUE_METRICS = MetricsRegistry.operation("SubscriptionDao.expireDue");
+    private static final OperationMetrics UPDATE_ALL_METRICS = MetricsRegistry.operation("SubscriptionDao.updateAll");
+    private static final OperationMetrics INSERT_ALL_METRICS = MetricsRegistry.operation("SubscriptionDao.insertAll");
+    private static final OperationMetrics FIND_BY_USER_ID_METRICS = MetricsRegistry.operation("SubscriptionDao.findByUserId");
+    private static final OperationMetrics FIND_BY_USER_ID_ON_PRIMARY_METRICS = MetricsRegistry.operation("SubscriptionDao.findByUserIdOnPrimary");
+    private static final OperationMetrics FIND_PAGE_METRICS = MetricsRegistry.operation("SubscriptionDao.findPage");
+    private static final OperationMetrics FIND_BY_USER_ID_PAGE_METRICS = MetricsRegistry.operation("SubscriptionDao.findByUserIdPage");
+    private static final OperationMetrics STREAM_ALL_METRICS = MetricsRegistry.operation("SubscriptionDao.streamAll");
+    private static final OperationMetrics STREAM_BY_USER_ID_METRICS = MetricsRegistry.operation("SubscriptionDao.streamByUserId");
+    private static final OperationMetrics STREAM_ALL_FILTERED_METRICS = MetricsRegistry.operation("SubscriptionDao.streamAllFiltered");
+    private static final OperationMetrics STREAM_ACTIVE_EXPIRING_BETWEEN_METRICS = MetricsRegistry.operation("SubscriptionDao.streamActiveExpiringBetween");
+
+    private static final String URL_KEY = "db.url";
+    private static final String BATCH_SIZE_KEY = "db.batch.size";
+    private static final String FETCH_SIZE_KEY = "db.fetch.size";
+
+    private static final String GET_ALL_SQL = """
+            SELECT
+                id,
+                user_id,
+                name,
+                provider,
+                expiration_date,
+                status,
+                version
+            FROM subscription
+            """;
+    private static final String GET_BY_ID_SQL = GET_ALL_SQL + " WHERE id = ?";
+    private static final String GET_BY_ID_FOR_UPDATE_SQL = GET_BY_ID_SQL + " FOR UPDATE";
+    private static final String GET_BY_USER_ID_SQL = GET_ALL_SQL + " WHERE user_id = ?";
+    private static final String GET_PAGE_SQL = GET_ALL_SQL + " WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String GET_PAGE_BY_USER_ID_SQL = GET_ALL_SQL + " WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String GET_ACTIVE_EXPIRING_BETWEEN_SQL = GET_ALL_SQL + """
+             WHERE status = 'ACTIVE'
+               AND expiration_date >= ?
+               AND expiration_date < ?
+            """;
+    private static final String EXISTS_BY_ID_SQL = "SELECT 1 FROM subscription WHERE id = ?";
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM subscription WHERE id = ?";
+    private static final String SAVE_SQL =
+            "INSERT INTO subscription (user_id, name, provider, expiration_date, status, version) VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String UPDATE_BY_ID_SQL = """
+            UPDATE subscription
+            SET user_id = ?,
+                name = ?,
+                provider = ?,
+                expiration_date = ?,
+                status = ?,
+                version = version + 1
+            WHERE id = ?
+              AND version = COALESCE(?, version)
+            """;
+    private static final String CANCEL_SQL = """
+            UPDATE subscription
+            SET status = 'CANCELED',
+                version = version + 1
+            WHERE id = ?
+              AND status = 'ACTIVE'
+            """;
+    private static final String EXPIRE_SQL = """
+            UPDATE subscription
+            SET status = 'EXPIRED',
+                expiration_date = ?,
+                version = version + 1
+            WHERE id = ?
+              AND status <> 'EXPIRED'
+            """;
+    private static final String EXPIRE_OVERDUE_SQL = """
+            UPDATE subscription
+            SET status = 'EXPIRED',
+                version = version + 1
+            WHERE status = 'ACTIVE'
+              AND id IN (
+                SELECT id
+                FROM subscription
+                WHERE status = 'ACTIVE'
+                  AND expiration_date < ?
+                ORDER BY id
+                LIMIT ?
+              )
+            """;
+    private static final String EXPIRE_DUE_SQL = """
+            UPDATE subscription
+            SET status = 'EXPIRED',
+                version = version + 1
+            WHERE id = ?
+              AND status = 'ACTIVE'
+              AND expiration_date <= ?
+            """;
+    private static final String POSTGRESQL_UPSERT_BY_USER_ID_AND_NAME_SQL = """
+            INSERT INTO subscription (user_id, name, provider, expiration_date, status, version)
+            VALUES (?, ?, ?, ?, ?, 0)
+            ON CONFLICT (user_id, name) DO UPDATE
+            SET expiration_date = EXCLUDED.expiration_date,
+                status = EXCLUDED.status,
+                version = subscription.version + 1
+            WHERE subscription.provider = EXCLUDED.provider
+            RETURNING id, user_id, name, provider, expiration_date, status, version
+            """;
+    private static final String H2_UPSERT_BY_USER_ID_AND_NAME_SQL = """
+            SELECT id, user_id, name, provider, expiration_date, status, version
+            FROM FINAL TABLE (
+                MERGE INTO subscription target
+                USING (VALUES (CAST(? AS INT), CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS TIMESTAMP), CAST(? AS VARCHAR)))
+                    AS source (user_id, name, provider, expiration_date, status)
+                ON target.user_id = source.user_id AND target.name = source.name
+                WHEN MATCHED AND target.provider = source.provider THEN
+                    UPDATE SET expiration_date = source.expiration_date,
+                               status = source.status,
+                               version = target.version + 1
+                WHEN NOT MATCHED THEN
+                    INSERT (user_id, name, provider, expiration_date, status, version)
+                    VALUES (source.user_id, source.name, source.provider, source.expiration_date, source.status, 0)
+            )
+            """;
+
+    private final String upsertByUserIdAndNameSql = switch (Dialect.fromUrl(PropertiesUtil.get(URL_KEY))) {
+        case POSTGRESQL -> POSTGRESQL_UPSERT_BY_USER_ID_AND_NAME_SQL;
+        case H2 -> H2_UPSERT_BY_USER_ID_AND_NAME_SQL;
+    };
+    private final int batchSize = PropertiesUtil.getInt(BATCH_SIZE_KEY, 500);
+    private final int fetchSize = PropertiesUtil.getInt(FETCH_SIZE_KEY, 500);
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Used by reads that may see slightly stale data; locking reads and reads done to prepare writes use the primary.
+     */
+    private final JdbcTemplate readJdbcTemplate;
+
+    public JdbcSubscriptionDao() {
+        this(new JdbcTemplate());
+    }
+
+    public JdbcSubscriptionDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readJdbcTemplate = jdbcTemplate.forReads();
+    }
+
+    public static JdbcSubscriptionDao getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public List<Subscription> findAll() {
+        return FIND_ALL_METRICS.record(() -> readJdbcTemplate.query(GET_ALL_SQL, SubscriptionRowMapper::new));
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return FIND_BY_ID_METRICS.record(() -> readJdbcTemplate.queryForOptional(GET_BY_ID_SQL, SubscriptionRowMapper::new,
+                preparedStatement -> preparedStatement.setInt(1, id)));
+    }
+
+    @Override
+    public Optional<Subscription> findByIdOnPrimary(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return FIND_BY_ID_ON_PRIMARY_METRICS.record(() -> jdbcTemplate.queryForOptional(GET_BY_ID_SQL, SubscriptionRowMapper::new,
+                preparedStatement -> preparedStatement.setInt(1, id)));
+    }
+
+    @Override
+    public Optional<Subscription> findByIdForUpdate(Integer id) {
+        if (!TransactionManager.isActive()) {
+            throw new IllegalStateException("findByIdForUpdate requires an active transaction");
+        }
+        if (id == null) {
+            return Optional.empty();
+        }
+        return FIND_BY_ID_FOR_UPDATE_METRICS.record(() -> jdbcTemplate.queryForOptional(GET_BY_ID_FOR_UPDATE_SQL, SubscriptionRowMapper::new,
+                preparedStatement -> preparedStatement.setInt(1, id)));
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        return EXISTS_BY_ID_METRICS.record(() -> readJdbcTemplate.exists(EXISTS_BY_ID_SQL,
+                preparedStatement -> preparedStatement.setInt(1, id)));
+    }
+
+    @Override
+    public boolean existsByIdOnPrimary(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        return EXISTS_BY_ID_ON_PRIMARY_METRICS.record(() -> jdbcTemplate.exists(EXISTS_BY_ID_SQL,
+                preparedStatement -> preparedStatement.setInt(1, id)));
+    }
+
+    /**
+     * Cancels the subscription if it is active, checking and changing the status in a single statement.
+     *
+     * @return {@code false} if there is no such subscription or it isn't active
+     */
+    @Override
+    public boolean cancel(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        return CANCEL_METRICS.record(() -> jdbcTemplate.update(CANCEL_SQL,
+                preparedStatement -> preparedStatement.setInt(1, id)) > 0);
+    }
+
+    /**
+     * Expires the subscription as of {@code expiredAt} unless it has already expired,
+     * checking and changing the status in a single statement.
+     *
+     * @return {@code false} if there is no such subscription or it has already expired
+     */
+    @Override
+    public boolean expire(Integer id, Instant expiredAt) {
+        if (id == null) {
+            return false;
+        }
+        return EXPIRE_METRICS.record(() -> jdbcTemplate.update(EXPIRE_SQL, preparedStatement -> {
+            preparedStatement.setTimestamp(1, Timestamp.from(expiredAt));
+            preparedStatement.setInt(2, id);
+        }) > 0);
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        return DELETE_METRICS.record(() -> jdbcTemplate.update(DELETE_BY_ID_SQL,
+                preparedStatement -> preparedStatement.setInt(1, id)) > 0);
+    }
+
+    /**
+     * Updates the subscription and increments its version. If the entity carries a version, the update only
+     * applies to the row with that version.
+     *
+     * @throws OptimisticLockException if the row was changed since the entity's version was read
+     */
+    @Override
+    public Subscription update(Subscription entity) {
+        return UPDATE_METRICS.record(() -> {
+            var updateCount = jdbcTemplate.update(UPDATE_BY_ID_SQL,
+                    preparedStatement -> prepareStatementToUpdate(preparedStatement, entity));
+            checkVersion(entity, updateCount);
+            advanceVersion(entity);
+            return entity;
+        });
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        return INSERT_METRICS.record(() -> {
+            var id = jdbcTemplate.insert(SAVE_SQL, "id",
+                    preparedStatement -> prepareStatementToUpsert(preparedStatement, entity));
+            return entity.setId(id).setVersion(0);
+        });
+    }
+
+    /**
+     * Atomically inserts the subscription or, if the user already has one with the same name and provider,
+     * updates its expiration date and status, in a single statement.
+     *
+     * @return the resulting row, or an empty optional if the user's subscription with the same name
+     * belongs to another provider
+     */
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        return UPSERT_BY_USER_ID_AND_NAME_METRICS.record(() -> executeUpsert(entity));
+    }
+
+    @Override
+    public List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return UPSERT_ALL_BY_USER_ID_AND_NAME_METRICS.record(() -> TransactionManager.inTransaction(() -> {
+            List<Optional<Subscription>> subscriptions = new ArrayList<>(entities.size());
+            for (var entity : entities) {
+                subscriptions.add(executeUpsert(entity));
+            }
+            return subscriptions;
+        }));
+    }
+
+    private Optional<Subscription> executeUpsert(Subscription entity) {
+        return jdbcTemplate.queryForOptional(upsertByUserIdAndNameSql, SubscriptionRowMapper::new,
+                preparedStatement -> prepareStatementToUpsert(preparedStatement, entity));
+    }
+
+    /**
+     * Expires every active subscription whose expiration date is before {@code now},
+     * with set-based updates of at most {@code chunkSize} rows each, so no single statement locks the whole table.
+     *
+     * @return the number of expired subscriptions
+     */
+    @Override
+    public int expireOverdue(Instant now, int chunkSize) {
+        checkChunkSize(chunkSize);
+        return EXPIRE_OVERDUE_METRICS.record(() -> {
+            var expired = 0;
+            int updated;
+            do {
+                updated = jdbcTemplate.update(EXPIRE_OVERDUE_SQL, preparedStatement -> {
+                    preparedStatement.setTimestamp(1, Timestamp.from(now));
+                    preparedStatement.setInt(2, chunkSize);
+                });
+                expired += updated;
+            } while (updated == chunkSize);
+            return expired;
+        });
+    }
+
+    /**
+     * Expires the given subscriptions with JDBC batches of {@code db.batch.size} statements. A subscription is only
+     * expired if it is still active and its expiration date isn't after {@code now}, so ids scheduled from
+     * an outdated expiration date are skipped.
+     *
+     * @return the number of expired subscriptions; statements the driver reports as
+     * {@link Statement#SUCCESS_NO_INFO} aren't counted, as they may have matched nothing
+     */
+    @Override
+    public int expireDue(Collection<Integer> ids, Instant now) {
+        return EXPIRE_DUE_METRICS.record(() -> {
+            var expired = new int[1];
+            var nonNullIds = ids.stream()
+                    .filter(Objects::nonNull)
+                    .toList();
+            jdbcTemplate.batchUpdate(EXPIRE_DUE_SQL, nonNullIds, batchSize, (preparedStatement, id) -> {
+                        preparedStatement.setInt(1, id);
+                        preparedStatement.setTimestamp(2, Timestamp.from(now));
+                    },
+                    (batch, updateCounts, generatedKeys) -> {
+                        for (var updateCount : updateCounts) {
+                            if (updateCount > 0) {
+                                expired[0] += updateCount;
+                            }
+                        }
+                    });
+            return expired[0];
+        });
+    }
+
+    /**
+     * Updates entities with JDBC batches of {@code db.batch.size} statements, committing once per batch.
+     * Versions are checked as in {@link #update(Subscription)}; a conflict rolls back the current batch.
+     */
+    @Override
+    public List<Subscription> updateAll(Collection<Subscription> entities) {
+        return UPDATE_ALL_METRICS.record(() -> {
+            jdbcTemplate.batchUpdate(UPDATE_BY_ID_SQL, entities, batchSize, this::prepareStatementToUpdate,
+                    (batch, updateCounts, generatedKeys) -> {
+                        for (int i = 0; i < batch.size(); i++) {
+                            checkVersion(batch.get(i), updateCounts[i]);
+                        }
+                        batch.forEach(JdbcSubscriptionDao::advanceVersion);
+                    });
+            return new ArrayList<>(entities);
+        });
+    }
+
+    /**
+     * Inserts entities with JDBC batches of {@code db.batch.size} statements, committing once per batch.
+     * Generated ids are written back onto the given entities.
+     */
+    @Override
+    public List<Subscription> insertAll(Collection<Subscription> entities) {
+        return INSERT_ALL_METRICS.record(() -> {
+            jdbcTemplate.batchInsert(SAVE_SQL, entities, batchSize, this::prepareStatementToUpsert,
+                    (batch, updateCounts, generatedKeys) -> {
+                        for (var entity : batch) {
+                            generatedKeys.next();
+                            entity.setId(generatedKeys.getInt("id")).setVersion(0);
+                        }
+                    });
+            return new ArrayList<>(entities);
+        });
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        if (userId == null) {
+            return new ArrayList<>();
+        }
+        return FIND_BY_USER_ID_METRICS.record(() -> readJdbcTemplate.query(GET_BY_USER_ID_SQL, SubscriptionRowMapper::new,
+                preparedStatement -> preparedStatement.setInt(1, userId)));
+    }
+
+    @Override
+    public List<Subscription> findByUserIdOnPrimary(Integer userId) {
+        if (userId == null) {
+            return new ArrayList<>();
+        }
+        return FIND_BY_USER_ID_ON_PRIMARY_METRICS.record(() -> jdbcTemplate.query(GET_BY_USER_ID_SQL, SubscriptionRowMapper::new,
+                preparedStatement -> preparedStatement.setInt(1, userId)));
+    }
+
+    /**
+     * Returns up to {@code limit} subscriptions with ids greater than {@code afterId}, ordered by id.
+     * Seeking by id instead of skipping with OFFSET keeps deep pages as fast as the first one.
+     *
+     * @param afterId the previous page's {@link Page#getNextCursor()}, or {@code null} for the first page
+     */
+    @Override
+    public Page<Subscription> findPage(Integer afterId, int limit) {
+        return FIND_PAGE_METRICS.record(() -> findPage(GET_PAGE_SQL, limit, preparedStatement -> {
+            preparedStatement.setInt(1, afterId == null ? Integer.MIN_VALUE : afterId);
+            preparedStatement.setInt(2, fetchLimit(limit));
+        }));
+    }
+
+    @Override
+    public Page<Subscription> findByUserIdPage(Integer userId, Integer afterId, int limit) {
+        if (userId == null) {
+            checkLimit(limit);
+            return new Page<>(new ArrayList<>(), null);
+        }
+        return FIND_BY_USER_ID_PAGE_METRICS.record(() -> findPage(GET_PAGE_BY_USER_ID_SQL, limit, preparedStatement -> {
+            preparedStatement.setInt(1, userId);
+            preparedStatement.setInt(2, afterId == null ? Integer.MIN_VALUE : afterId);
+            preparedStatement.setInt(3, fetchLimit(limit));
+        }));
+    }
+
+    private Page<Subscription> findPage(String sql, int limit, JdbcTemplate.ParameterBinder parameterBinder) {
+        checkLimit(limit);
+        // one extra row is requested only to find out whether there is a next page
+        var subscriptions = readJdbcTemplate.query(sql, SubscriptionRowMapper::new, parameterBinder);
+        if (subscriptions.size() <= limit) {
+            return new Page<>(subscriptions, null);
+        }
+        subscriptions.remove(limit);
+        return new Page<>(subscriptions, subscriptions.get(limit - 1).getId());
+    }
+
+    /**
+     * Streams all subscriptions through a database cursor, fetching {@code db.fetch.size} rows at a time.
+     * The stream holds a connection until it is closed, so it must be used in a try-with-resources block.
+     */
+    @Override
+    public Stream<Subscription> streamAll() {
+        return STREAM_ALL_METRICS.record(() -> readJdbcTemplate.stream(GET_ALL_SQL, SubscriptionRowMapper::new, fetchSize,
+                JdbcTemplate.ParameterBinder.NONE));
+    }
+
+    @Override
+    public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+        return STREAM_ALL_FILTERED_METRICS.record(() -> {
+            List<Object> parameters = new ArrayList<>();
+            var sql = new StringBuilder(GET_ALL_SQL).append(" WHERE 1 = 1");
+            appendIn(sql, parameters, "status", filter.getStatuses());
+            appendIn(sql, parameters, "provider", filter.getProviders());
+            if (filter.getExpiresFrom() != null) {
+                sql.append(" AND expiration_date >= ?");
+                parameters.add(Timestamp.from(filter.getExpiresFrom()));
+            }
+            if (filter.getExpiresBefore() != null) {
+                sql.append(" AND expiration_date < ?");
+                parameters.add(Timestamp.from(filter.getExpiresBefore()));
+            }
+            sql.append(" ORDER BY id");
+            return readJdbcTemplate.stream(sql.toString(), SubscriptionRowMapper::new, fetchSize, preparedStatement -> {
+                for (int i = 0; i < parameters.size(); i++) {
+                    preparedStatement.setObject(i + 1, parameters.get(i));
+                }
+            });
+        });
+    }
+
+    @Override
+    public Stream<Subscription> streamByUserId(Integer userId) {
+        if (userId == null) {
+            return Stream.empty();
+        }
+        return STREAM_BY_USER_ID_METRICS.record(() -> readJdbcTemplate.stream(GET_BY_USER_ID_SQL, SubscriptionRowMapper::new, fetchSize,
+                preparedStatement -> preparedStatement.setInt(1, userId)));
+    }
+
+    /**
+     * Streams active subscriptions expiring from {@code from} inclusive to {@code to} exclusive
+     * through a database cursor, like {@link #streamAll()}. Reads the primary, as every range is loaded only once.
+     */
+    @Override
+    public Stream<Subscription> streamActiveExpiringBetween(Instant from, Instant to) {
+        return STREAM_ACTIVE_EXPIRING_BETWEEN_METRICS.record(() -> jdbcTemplate.stream(GET_ACTIVE_EXPIRING_BETWEEN_SQL,
+                SubscriptionRowMapper::new, fetchSize, preparedStatement -> {
+                    preparedStatement.setTimestamp(1, Timestamp.from(from));
+                    preparedStatement.setTimestamp(2, Timestamp.from(to));
+                }));
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+    }
+
+    /**
+     * The limit of a page plus the extra row telling whether there is a next one, clamped so it can't overflow.
+     */
+    private static int fetchLimit(int limit) {
+        return (int) Math.min(limit + 1L, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A chunk size of zero would never finish, as every chunk would expire nothing and look like a full one.
+     */
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+    }
+
+    private static void appendIn(StringBuilder sql, List<Object> parameters, String column, Set<? extends Enum<?>> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        sql.append(" AND ").append(column).append(" IN (")
+                .append(String.join(", ", Collections.nCopies(values.size(), "?")))
+                .append(')');
+        values.forEach(value -> parameters.add(value.name()));
+    }
+
+    private void prepareStatementToUpdate(PreparedStatement preparedStatement, Subscription entity) throws SQLException {
+        prepareStatementToUpsert(preparedStatement, entity);
+        preparedStatement.setInt(6, entity.getId());
+        preparedStatement.setObject(7, entity.getVersion(), Types.INTEGER);
+    }
+
+    /**
+     * Drivers may report {@link java.sql.Statement#SUCCESS_NO_INFO} for batched statements, which isn't a conflict.
+     */
+    private static void checkVersion(Subscription entity, int updateCount) {
+        if (entity.getVersion() != null && updateCount == 0) {
+            throw new OptimisticLockException(Subscription.class, entity.getId(), entity.getVersion());
+        }
+    }
+
+    private static void advanceVersion(Subscription entity) {
+        if (entity.getVersion() != null) {
+            entity.setVersion(entity.getVersion() + 1);
+        }
+    }
+
+    private void prepareStatementToUpsert(PreparedStatement preparedStatement, Subscription entity) throws SQLException {
+        preparedStatement.setInt(1, entity.getUserId());
+        preparedStatement.setString(2, entity.getName());
+        preparedStatement.setString(3, entity.getProvider().name());
+        preparedStatement.setTimestamp(4, Timestamp.from(entity.getExpirationDate()));
+        preparedStatement.setString(5, entity.getStatus().name());
+    }
+}
@@ -0,0 +1,301 @@
+package com.dmdev.dao;
+
+import com.dmdev.util.ConnectionManager;
+import lombok.SneakyThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.sql.ResultSet.CONCUR_READ_ONLY;
+import static java.sql.ResultSet.TYPE_FORWARD_ONLY;
+import static java.sql.Statement.RETURN_GENERATED_KEYS;
+
+/**
+ * Connection, statement and result set handling shared by the DAOs.
+ * <p>
+ * Every call borrows a connection from the {@link ConnectionSupplier}, which is {@link ConnectionManager#get()}
+ * by default, so calls made inside {@link com.dmdev.util.TransactionManager#inTransaction} share its transaction.
+ * The template returned by {@link #forReads()} borrows from the read supplier instead, which by default is
+ * {@link ConnectionManager#getForRead()}, routing to a read replica outside of transactions.
+ */
+public class JdbcTemplate {
+
+    private final ConnectionSupplier connectionSupplier;
+    private final ConnectionSupplier readConnectionSupplier;
+
+    public JdbcTemplate() {
+        this(ConnectionManager::get, ConnectionManager::getForRead);
+    }
+
+    public JdbcTemplate(ConnectionSupplier connectionSupplier) {
+        this(connectionSupplier, connectionSupplier);
+    }
+
+    public JdbcTemplate(ConnectionSupplier connectionSupplier, ConnectionSupplier readConnectionSupplier) {
+        this.connectionSupplier = connectionSupplier;
+        this.readConnectionSupplier = readConnectionSupplier;
+    }
+
+    /**
+     * @return a template for read-only statements that tolerate replication lag
+     */
+    public JdbcTemplate forReads() {
+        return connectionSupplier == readConnectionSupplier
+                ? this
+                : new JdbcTemplate(readConnectionSupplier);
+    }
+
+    @SneakyThrows
+    public <T> List<T> query(String sql, RowMapper.Factory<T> rowMapperFactory, ParameterBinder parameterBinder) {
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            parameterBinder.bind(preparedStatement);
+
+            try (var resultSet = preparedStatement.executeQuery()) {
+                var rowMapper = rowMapperFactory.create(resultSet);
+                List<T> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    rows.add(rowMapper.mapRow(resultSet));
+                }
+                return rows;
+            }
+        }
+    }
+
+    public <T> List<T> query(String sql, RowMapper.Factory<T> rowMapperFactory) {
+        return query(sql, rowMapperFactory, ParameterBinder.NONE);
+    }
+
+    @SneakyThrows
+    public <T> Optional<T> queryForOptional(String sql, RowMapper.Factory<T> rowMapperFactory, ParameterBinder parameterBinder) {
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            parameterBinder.bind(preparedStatement);
+
+            try (var resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next()
+                        ? Optional.of(rowMapperFactory.create(resultSet).mapRow(resultSet))
+                        : Optional.empty();
+            }
+        }
+    }
+
+    @SneakyThrows
+    public boolean exists(String sql, ParameterBinder parameterBinder) {
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            parameterBinder.bind(preparedStatement);
+
+            try (var resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * @return the number of affected rows
+     */
+    @SneakyThrows
+    public int update(String sql, ParameterBinder parameterBinder) {
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            parameterBinder.bind(preparedStatement);
+
+            return preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs an insert and returns the generated key of the inserted row.
+     */
+    @SneakyThrows
+    public int insert(String sql, String keyColumn, ParameterBinder parameterBinder) {
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = connection.prepareStatement(sql, RETURN_GENERATED_KEYS)) {
+            parameterBinder.bind(preparedStatement);
+
+            preparedStatement.executeUpdate();
+            try (var generatedKeys = preparedStatement.getGeneratedKeys()) {
+                generatedKeys.next();
+                return generatedKeys.getInt(keyColumn);
+            }
+        }
+    }
+
+    /**
+     * Executes the statement for every item with JDBC batches of {@code batchSize} statements,
+     * committing once per batch. A failed batch is rolled back; earlier batches stay committed.
+     */
+    @SneakyThrows
+    public <E> void batchUpdate(String sql,
+                                Collection<E> items,
+                                int batchSize,
+                                ItemBinder<E> itemBinder,
+                                BatchHandler<E> batchHandler) {
+        executeInBatches(sql, items, batchSize, itemBinder, batchHandler, false);
+    }
+
+    /**
+     * Same as {@link #batchUpdate}, but the handler can read the keys generated by each batch.
+     */
+    @SneakyThrows
+    public <E> void batchInsert(String sql,
+                                Collection<E> items,
+                                int batchSize,
+                                ItemBinder<E> itemBinder,
+                                BatchHandler<E> batchHandler) {
+        executeInBatches(sql, items, batchSize, itemBinder, batchHandler, true);
+    }
+
+    /**
+     * Streams the rows through a database cursor, fetching {@code fetchSize} rows at a time.
+     * The stream holds a connection until it is closed, so it must be used in a try-with-resources block.
+     */
+    @SneakyThrows
+    public <T> Stream<T> stream(String sql,
+                                RowMapper.Factory<T> rowMapperFactory,
+                                int fetchSize,
+                                ParameterBinder parameterBinder) {
+        var connection = connectionSupplier.get();
+        try {
+            // PostgreSQL only honours the fetch size with a server-side cursor, which needs an open transaction
+            connection.setAutoCommit(false);
+            var preparedStatement = connection.prepareStatement(sql, TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(fetchSize);
+            parameterBinder.bind(preparedStatement);
+            var resultSet = preparedStatement.executeQuery();
+            return StreamSupport.stream(new ResultSetSpliterator<>(resultSet, rowMapperFactory.create(resultSet)), false)
+                    .onClose(() -> close(connection, preparedStatement, resultSet));
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private <E> void executeInBatches(String sql,
+                                      Collection<E> items,
+                                      int batchSize,
+                                      ItemBinder<E> itemBinder,
+                                      BatchHandler<E> batchHandler,
+                                      boolean returnGeneratedKeys) throws SQLException {
+        if (items.isEmpty()) {
+            return;
+        }
+        try (var connection = connectionSupplier.get();
+             var preparedStatement = returnGeneratedKeys
+                     ? connection.prepareStatement(sql, RETURN_GENERATED_KEYS)
+                     : connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                List<E> batch = new ArrayList<>(Math.min(batchSize, items.size()));
+                for (var item : items) {
+                    itemBinder.bind(preparedStatement, item);
+                    preparedStatement.addBatch();
+                    batch.add(item);
+                    if (batch.size() == batchSize) {
+                        executeBatch(connection, preparedStatement, batch, batchHandler, returnGeneratedKeys);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    executeBatch(connection, preparedStatement, batch, batchHandler, returnGeneratedKeys);
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static <E> void executeBatch(Connection connection,
+                                         PreparedStatement preparedStatement,
+                                         List<E> batch,
+                                         BatchHandler<E> batchHandler,
+                                         boolean returnGeneratedKeys) throws SQLException {
+        var updateCounts = preparedStatement.executeBatch();
+        if (returnGeneratedKeys) {
+            try (var generatedKeys = preparedStatement.getGeneratedKeys()) {
+                batchHandler.handle(batch, updateCounts, generatedKeys);
+            }
+        } else {
+            batchHandler.handle(batch, updateCounts, null);
+        }
+        connection.commit();
+    }
+
+    @SneakyThrows
+    private static void close(Connection connection, PreparedStatement preparedStatement, ResultSet resultSet) {
+        try (connection; preparedStatement; resultSet) {
+            connection.rollback();
+        }
+    }
+
+    private static class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final ResultSet resultSet;
+        private final RowMapper<T> rowMapper;
+
+        private ResultSetSpliterator(ResultSet resultSet, RowMapper<T> rowMapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.resultSet = resultSet;
+            this.rowMapper = rowMapper;
+        }
+
+        @Override
+        @SneakyThrows
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!resultSet.next()) {
+                return false;
+            }
+            action.accept(rowMapper.mapRow(resultSet));
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSupplier {
+
+        Connection get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ParameterBinder {
+
+        ParameterBinder NONE = preparedStatement -> {
+        };
+
+        void bind(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ItemBinder<E> {
+
+        void bind(PreparedStatement preparedStatement, E item) throws SQLException;
+    }
+
+    /**
+     * Called after each executed batch, before it is committed, to check update counts or read generated keys.
+     * Throwing rolls the batch back.
+     */
+    @FunctionalInterface
+    public interface BatchHandler<E> {
+
+        /**
+         * @param generatedKeys keys generated by the batch, or {@code null} unless the batch is an insert
+         */
+        void handle(List<E> batch, int[] updateCounts, ResultSet generatedKeys) throws SQLException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.dmdev.dao;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Slice of rows ordered by id. {@code nextCursor} is the id to pass as {@code afterId} to get the next page,
+ * or {@code null} if this is the last one.
+ */
+@Value
+public class Page<T> {
+    List<T> content;
+    Integer nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
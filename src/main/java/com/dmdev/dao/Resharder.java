@@ -0,0 +1,79 @@
+package com.dmdev.dao;
+
+import com.dmdev.util.ConsistentHashRing;
+import com.dmdev.util.PropertiesUtil;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Moves users between the shards of a {@link ShardedSubscriptionDao} to match a new ring, for example after a shard
+ * has been added.
+ * <p>
+ * Every shard is scanned for users the target ring assigns to another shard, and they are moved in batches of
+ * {@code batchSize} users. Moving a batch blocks the other calls to the DAO, so smaller batches trade throughput for
+ * shorter pauses. The DAO remembers the users written to while the scans run, and those still on their old shard are
+ * moved by a last pass during which the DAO stays blocked, right before it switches to the target ring; only writes
+ * made through this DAO are seen, so other processes mustn't write to the shards meanwhile.
+ * <p>
+ * A failed resharding is resumed by running it again with the same ring, also after a restart, as the DAO restores
+ * the moves made so far from its {@link ReshardingJournal}. The summary of a resumed resharding counts only the users
+ * moved by it.
+ */
+public class Resharder {
+
+    private static final System.Logger LOG = System.getLogger(Resharder.class.getName());
+
+    private static final String BATCH_SIZE_KEY = "db.shard.resharding.batch-size";
+
+    private final ShardedSubscriptionDao subscriptionDao;
+    private final int batchSize;
+
+    public Resharder(ShardedSubscriptionDao subscriptionDao, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.subscriptionDao = subscriptionDao;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates the resharder moving {@code db.shard.resharding.batch-size} users at a time.
+     */
+    public static Resharder create(ShardedSubscriptionDao subscriptionDao) {
+        return new Resharder(subscriptionDao, PropertiesUtil.getInt(BATCH_SIZE_KEY, 100));
+    }
+
+    public ReshardingSummary reshard(ConsistentHashRing target) {
+        var start = System.nanoTime();
+        var progress = new Progress();
+        subscriptionDao.beginResharding(target);
+        for (int shard = 0; shard < subscriptionDao.getShardCount(); shard++) {
+            move(shard, subscriptionDao.findUsersToMove(shard, target), progress);
+        }
+        subscriptionDao.exclusively(() -> {
+            subscriptionDao.findWrittenUsersToMove().forEach((shard, userIds) -> move(shard, userIds, progress));
+            subscriptionDao.switchToTargetRing();
+            return null;
+        });
+        var summary = new ReshardingSummary(progress.users, progress.subscriptions, Duration.ofNanos(System.nanoTime() - start));
+        LOG.log(System.Logger.Level.INFO, "Moved {0} subscriptions of {1} users to shards {2} in {3}",
+                summary.getSubscriptions(), summary.getUsers(), target.getShards(), summary.getElapsed());
+        return summary;
+    }
+
+    private void move(int shard, List<Integer> userIds, Progress progress) {
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            var batch = userIds.subList(from, Math.min(from + batchSize, userIds.size()));
+            var moved = subscriptionDao.moveUsers(shard, batch);
+            progress.users += moved.users();
+            progress.subscriptions += moved.subscriptions();
+        }
+    }
+
+    private static class Progress {
+
+        private long users;
+        private long subscriptions;
+    }
+}
@@ -0,0 +1,152 @@
+package com.dmdev.dao;
+
+import com.dmdev.util.ConsistentHashRing;
+import lombok.SneakyThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * File recording the progress of a resharding, so a {@link ShardedSubscriptionDao} restarted in the middle of one
+ * keeps routing the users moved so far to their new shard, and {@link Resharder} can resume it.
+ * <p>
+ * The file holds the ring the resharding goes from and the one it goes to, followed by a line per moved user with
+ * the ids its subscriptions had and got:
+ * <pre>
+ * ring 128 0,1,2
+ * target 128 0,1,2,3
+ * moved 17 1088:195,1152:259
+ * </pre>
+ * Every write is forced to disk before the DAO routes by it. A line cut short by a crash is ignored, as the DAO hadn't
+ * routed by it yet. The file is deleted once the DAO switches to the target ring.
+ */
+public class ReshardingJournal {
+
+    private static final String RING = "ring";
+    private static final String TARGET = "target";
+    private static final String MOVED = "moved";
+
+    private final Path file;
+
+    public ReshardingJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the resharding recorded in the file, or empty if none is in progress
+     */
+    @SneakyThrows
+    Optional<State> load() {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        var content = Files.readString(file, StandardCharsets.UTF_8);
+        var lines = content.substring(0, content.lastIndexOf('\n') + 1).lines().toList();
+        if (lines.size() < 2) {
+            return Optional.empty();
+        }
+        var ring = parseRing(lines.get(0), RING);
+        var target = parseRing(lines.get(1), TARGET);
+        List<Move> moves = new ArrayList<>(lines.size() - 2);
+        for (var line : lines.subList(2, lines.size())) {
+            moves.add(parseMove(line));
+        }
+        return Optional.of(new State(ring, target, moves));
+    }
+
+    void begin(ConsistentHashRing ring, ConsistentHashRing target) {
+        write(format(RING, ring) + format(TARGET, target),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    void recordMoved(List<Move> moves) {
+        var lines = new StringBuilder();
+        for (var move : moves) {
+            lines.append(MOVED).append(' ').append(move.userId());
+            for (int i = 0; i < move.oldIds().size(); i++) {
+                lines.append(i == 0 ? ' ' : ',').append(move.oldIds().get(i)).append(':').append(move.newIds().get(i));
+            }
+            lines.append('\n');
+        }
+        write(lines.toString(), StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    @SneakyThrows
+    void complete() {
+        Files.deleteIfExists(file);
+    }
+
+    @SneakyThrows
+    private void write(String lines, OpenOption... options) {
+        try (var channel = FileChannel.open(file, options)) {
+            var buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static String format(String key, ConsistentHashRing ring) {
+        return key + ' ' + ring.getVirtualNodes() + ' ' + ring.getShards().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")) + '\n';
+    }
+
+    private ConsistentHashRing parseRing(String line, String key) {
+        var parts = split(line, key, 3);
+        return new ConsistentHashRing(Arrays.stream(parts[2].split(",")).map(Integer::valueOf).toList(),
+                Integer.parseInt(parts[1]));
+    }
+
+    private Move parseMove(String line) {
+        var parts = line.split(" ");
+        if (parts.length < 2 || parts.length > 3 || !parts[0].equals(MOVED)) {
+            throw corrupt(line);
+        }
+        List<Integer> oldIds = new ArrayList<>();
+        List<Integer> newIds = new ArrayList<>();
+        if (parts.length == 3) {
+            for (var ids : parts[2].split(",")) {
+                var pair = ids.split(":");
+                oldIds.add(Integer.valueOf(pair[0]));
+                newIds.add(Integer.valueOf(pair[1]));
+            }
+        }
+        return new Move(Integer.parseInt(parts[1]), oldIds, newIds);
+    }
+
+    private String[] split(String line, String key, int length) {
+        var parts = line.split(" ");
+        if (parts.length != length || !parts[0].equals(key)) {
+            throw corrupt(line);
+        }
+        return parts;
+    }
+
+    private IllegalStateException corrupt(String line) {
+        return new IllegalStateException("Corrupt resharding journal " + file + ": " + line);
+    }
+
+    /**
+     * Resharding in progress: the rings it goes from and to, and the users moved so far.
+     */
+    record State(ConsistentHashRing ring, ConsistentHashRing target, List<Move> moves) {
+    }
+
+    /**
+     * User moved to its target shard, with the ids its subscriptions had on the old shard and got on the new one.
+     */
+    record Move(int userId, List<Integer> oldIds, List<Integer> newIds) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.dmdev.dao;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+public class ReshardingSummary {
+    long users;
+    long subscriptions;
+    Duration elapsed;
+}
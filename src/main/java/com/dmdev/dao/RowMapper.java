@@ -0,0 +1,22 @@
+package com.dmdev.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a {@link ResultSet} to an object.
+ * <p>
+ * Mappers are created by a {@link Factory} once per result set, so column positions can be resolved
+ * with {@link ResultSet#findColumn(String)} up front instead of by name for every row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet resultSet) throws SQLException;
+
+    @FunctionalInterface
+    interface Factory<T> {
+
+        RowMapper<T> create(ResultSet resultSet) throws SQLException;
+    }
+}
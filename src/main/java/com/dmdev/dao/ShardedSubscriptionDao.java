@@ -0,0 +1,807 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.ConnectionManager;
+import com.dmdev.util.ConnectionPool;
+import com.dmdev.util.ConsistentHashRing;
+import com.dmdev.util.IntObjectHashMap;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.util.TransactionManager;
+import lombok.SneakyThrows;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link SubscriptionDao} partitioning subscriptions by user over several shards, each being a {@link SubscriptionDao}
+ * of its own database.
+ * <p>
+ * Users are assigned to shards by a {@link ConsistentHashRing}, so calls naming a user, such as
+ * {@link #findByUserId} or {@link #upsertByUserIdAndName}, go to exactly one shard. The ids handed out keep the index
+ * of their shard in their lowest bits ({@code id = shardLocalId * MAX_SHARDS + shard}), so calls naming
+ * a subscription, such as {@link #cancel} or {@link #expire}, go to exactly one shard as well; as a consequence,
+ * ids don't follow insertion order across shards. Calls spanning all shards, such as {@link #findAll}, query
+ * the shards in parallel and merge the results in id order.
+ * <p>
+ * Ids are ints, so a shard can only hand out local ids up to {@link #MAX_LOCAL_ID}, about 33.5 million, including
+ * the fresh ids of subscriptions moved to it by resharding. Calls touching a row past it fail with
+ * an {@link ArithmeticException}, so the DAO refuses to be created once a shard holds ids within a tenth of the limit;
+ * by then the ids have to be moved to {@code long}, which changes the {@link Dao} key type.
+ * <p>
+ * Outside of a transaction, batches spanning several shards are applied per shard, so a failing shard doesn't roll
+ * back the others. Inside a {@link com.dmdev.util.TransactionManager} transaction, the shards created by
+ * {@link #create} join it with a connection each and are called one after another on the calling thread; they are
+ * committed one after another as well, so a failed commit may leave the shards committed before it with the work.
+ * A subscription can't be moved to a user of another shard by {@link #update}.
+ * <p>
+ * {@link Resharder} moves users between shards while the DAO is in use. Its progress is kept in
+ * a {@link ReshardingJournal}, which the DAO reads when it is created, so after a restart in the middle of
+ * a resharding it still routes the users moved so far to their new shard; until the resharding is resumed, calls
+ * spanning all shards may see the subscriptions of the users whose move was cut short on both shards. A DAO without
+ * a journal rejects resharding.
+ * <p>
+ * Moved subscriptions get new ids, as ids name their shard. Until the resharding completes, calls naming
+ * a subscription by its old id are rejected with an {@link IllegalArgumentException} naming the new one, except
+ * {@link #expireDue}, which skips them. Once it completes, old ids are no longer known and behave like ids of deleted
+ * subscriptions, so holders of ids, such as {@link com.dmdev.service.ExpirationScheduler}, should reload them.
+ */
+public class ShardedSubscriptionDao implements SubscriptionDao, AutoCloseable {
+
+    /**
+     * Number of shards the ids have room for.
+     */
+    public static final int MAX_SHARDS = 64;
+    /**
+     * Largest shard-local id whose global id still fits an int.
+     */
+    public static final int MAX_LOCAL_ID = Integer.MAX_VALUE / MAX_SHARDS;
+    /**
+     * Local id past which a shard is considered out of ids.
+     */
+    private static final int LOCAL_ID_HEADROOM_LIMIT = MAX_LOCAL_ID - MAX_LOCAL_ID / 10;
+
+    private static final Comparator<Subscription> BY_ID = Comparator.comparing(Subscription::getId);
+
+    private static final String SHARD_URLS_KEY = "db.shard.urls";
+    private static final String VIRTUAL_NODES_KEY = "db.shard.virtual-nodes";
+    private static final String JOURNAL_KEY = "db.shard.resharding.journal";
+
+    private final List<SubscriptionDao> shards;
+    private final ReshardingJournal journal;
+    private final ExecutorService executor;
+    /**
+     * Held shared by every call and exclusively by {@link Resharder} while it moves users, so no call sees a user
+     * half moved. Streams don't hold it, so a stream read during resharding may miss or repeat moved subscriptions.
+     */
+    private final ReentrantReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private ConsistentHashRing ring;
+    private ConsistentHashRing targetRing;
+    private final Set<Integer> movedUserIds = new HashSet<>();
+    /**
+     * New ids of the subscriptions moved by the resharding in progress, by their old ids.
+     */
+    private final IntObjectHashMap<Integer> movedIds = new IntObjectHashMap<>();
+    /**
+     * Users written to while a resharding is in progress, which the scans of {@link Resharder} may have missed.
+     * Writes only hold the routing lock shared, so they add concurrently.
+     */
+    private final Set<Integer> writtenUserIds = ConcurrentHashMap.newKeySet();
+
+    public ShardedSubscriptionDao(List<? extends SubscriptionDao> shards, ConsistentHashRing ring) {
+        this(shards, ring, null);
+    }
+
+    /**
+     * @param ring    ring the subscriptions are placed by, replaced by the one recorded in the journal if a resharding
+     *                is in progress
+     * @param journal journal of resharding progress, or {@code null} if the DAO is never resharded
+     */
+    public ShardedSubscriptionDao(List<? extends SubscriptionDao> shards, ConsistentHashRing ring, ReshardingJournal journal) {
+        if (shards.isEmpty() || shards.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported: " + shards.size());
+        }
+        this.shards = List.copyOf(shards);
+        checkIdHeadroom();
+        this.journal = journal;
+        var resharding = journal == null ? Optional.<ReshardingJournal.State>empty() : journal.load();
+        this.ring = checkRing(resharding.map(ReshardingJournal.State::ring).orElse(ring));
+        resharding.ifPresent(state -> {
+            targetRing = checkRing(state.target());
+            state.moves().forEach(this::applyMove);
+        });
+        this.executor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            var thread = new Thread(runnable, "subscription-shard-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a shard per URL of {@code db.shard.urls}, with pools configured like the primary one,
+     * spread over a ring of {@code db.shard.virtual-nodes} points per shard, with the resharding journal kept in
+     * {@code db.shard.resharding.journal}.
+     */
+    public static ShardedSubscriptionDao create() {
+        var pools = Arrays.stream(PropertiesUtil.get(SHARD_URLS_KEY).split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(ConnectionManager::createPool)
+                .toList();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> pools.forEach(ConnectionPool::close), "shard-pool-shutdown"));
+        var journal = PropertiesUtil.get(JOURNAL_KEY);
+        return create(pools, PropertiesUtil.getInt(VIRTUAL_NODES_KEY, 128),
+                journal == null || journal.isBlank() ? null : new ReshardingJournal(Path.of(journal)));
+    }
+
+    /**
+     * Creates a shard per pool. The shards borrow through {@link ConnectionManager#get(ConnectionPool)},
+     * so they join transactions.
+     */
+    static ShardedSubscriptionDao create(List<ConnectionPool> pools, int virtualNodes, ReshardingJournal journal) {
+        var shards = pools.stream()
+                .map(pool -> new JdbcSubscriptionDao(new JdbcTemplate(() -> ConnectionManager.get(pool))))
+                .toList();
+        return new ShardedSubscriptionDao(shards, ConsistentHashRing.of(shards.size(), virtualNodes), journal);
+    }
+
+    @Override
+    public List<Subscription> findAll() {
+        return shared(() -> {
+            var subscriptions = scatter(shard -> toGlobal(shard, shards.get(shard).findAll()));
+            List<Subscription> merged = new ArrayList<>();
+            subscriptions.values().forEach(merged::addAll);
+            merged.sort(BY_ID);
+            return merged;
+        });
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard < 0
+                    ? Optional.empty()
+                    : shards.get(shard).findById(localId(id)).map(subscription -> toGlobal(shard, subscription));
+        });
+    }
+
+    @Override
+    public Optional<Subscription> findByIdOnPrimary(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard < 0
+                    ? Optional.empty()
+                    : shards.get(shard).findByIdOnPrimary(localId(id)).map(subscription -> toGlobal(shard, subscription));
+        });
+    }
+
+    @Override
+    public Optional<Subscription> findByIdForUpdate(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard < 0
+                    ? Optional.empty()
+                    : shards.get(shard).findByIdForUpdate(localId(id)).map(subscription -> toGlobal(shard, subscription));
+        });
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard >= 0 && shards.get(shard).existsById(localId(id));
+        });
+    }
+
+    @Override
+    public boolean existsByIdOnPrimary(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard >= 0 && shards.get(shard).existsByIdOnPrimary(localId(id));
+        });
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard >= 0 && shards.get(shard).cancel(localId(id));
+        });
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expiredAt) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard >= 0 && shards.get(shard).expire(localId(id), expiredAt);
+        });
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        return shared(() -> {
+            var shard = routeId(id);
+            return shard >= 0 && shards.get(shard).delete(localId(id));
+        });
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        return shared(() -> {
+            var shard = checkUpdatable(entity);
+            withLocalIds(shard, List.of(entity), () -> shards.get(shard).update(entity));
+            return entity;
+        });
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        return shared(() -> {
+            var shard = shardOfWrittenUser(entity.getUserId());
+            withLocalIds(shard, List.of(entity), () -> shards.get(shard).insert(entity));
+            return entity;
+        });
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        return shared(() -> {
+            var shard = shardOfWrittenUser(entity.getUserId());
+            return shards.get(shard).upsertByUserIdAndName(entity).map(subscription -> toGlobal(shard, subscription));
+        });
+    }
+
+    /**
+     * Upserts the entities of every shard with one call to that shard, in parallel.
+     * Each shard's part is atomic on its own.
+     */
+    @Override
+    public List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return shared(() -> {
+            var positionsByShard = positionsByShard(entities, entity -> shardOfWrittenUser(entity.getUserId()));
+            var results = scatter(positionsByShard.keySet(), shard -> shards.get(shard).upsertAllByUserIdAndName(
+                    positionsByShard.get(shard).stream().map(entities::get).toList()));
+            List<Optional<Subscription>> upserted = new ArrayList<>(Collections.nCopies(entities.size(), Optional.empty()));
+            results.forEach((shard, shardResults) -> {
+                var positions = positionsByShard.get(shard);
+                for (int i = 0; i < positions.size(); i++) {
+                    upserted.set(positions.get(i), shardResults.get(i).map(subscription -> toGlobal(shard, subscription)));
+                }
+            });
+            return upserted;
+        });
+    }
+
+    @Override
+    public int expireOverdue(Instant now, int chunkSize) {
+        return shared(() -> sum(scatter(shard -> shards.get(shard).expireOverdue(now, chunkSize))));
+    }
+
+    /**
+     * Expires the ids of every shard with one call to that shard, in parallel.
+     * Old ids of subscriptions moved by the resharding in progress are skipped.
+     */
+    @Override
+    public int expireDue(Collection<Integer> ids, Instant now) {
+        return shared(() -> {
+            Map<Integer, List<Integer>> localIdsByShard = new TreeMap<>();
+            for (var id : ids) {
+                var shard = shardOfId(id);
+                if (shard >= 0 && !movedIds.containsKey(id)) {
+                    localIdsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(localId(id));
+                }
+            }
+            return sum(scatter(localIdsByShard.keySet(), shard -> shards.get(shard).expireDue(localIdsByShard.get(shard), now)));
+        });
+    }
+
+    /**
+     * Updates the entities of every shard with one call to that shard, in parallel.
+     * Outside of a transaction, a failing shard doesn't roll back the others.
+     */
+    @Override
+    public List<Subscription> updateAll(Collection<Subscription> entities) {
+        return shared(() -> {
+            var entitiesByShard = groupByShard(entities, this::checkUpdatable);
+            scatter(entitiesByShard.keySet(), shard -> {
+                var shardEntities = entitiesByShard.get(shard);
+                withLocalIds(shard, shardEntities, () -> shards.get(shard).updateAll(shardEntities));
+                return null;
+            });
+            return new ArrayList<>(entities);
+        });
+    }
+
+    /**
+     * Inserts the entities of every shard with one call to that shard, in parallel.
+     * Outside of a transaction, a failing shard doesn't roll back the others.
+     */
+    @Override
+    public List<Subscription> insertAll(Collection<Subscription> entities) {
+        return shared(() -> {
+            var entitiesByShard = groupByShard(entities, entity -> shardOfWrittenUser(entity.getUserId()));
+            scatter(entitiesByShard.keySet(), shard -> {
+                var shardEntities = entitiesByShard.get(shard);
+                withLocalIds(shard, shardEntities, () -> shards.get(shard).insertAll(shardEntities));
+                return null;
+            });
+            return new ArrayList<>(entities);
+        });
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        return shared(() -> {
+            var shard = shardOfUser(userId);
+            return toGlobal(shard, shards.get(shard).findByUserId(userId));
+        });
+    }
+
+    @Override
+    public List<Subscription> findByUserIdOnPrimary(Integer userId) {
+        return shared(() -> {
+            var shard = shardOfUser(userId);
+            return toGlobal(shard, shards.get(shard).findByUserIdOnPrimary(userId));
+        });
+    }
+
+    /**
+     * Reads a page from every shard in parallel and keeps the lowest ids.
+     */
+    @Override
+    public Page<Subscription> findPage(Integer afterId, int limit) {
+        return shared(() -> {
+            var pages = scatter(shard -> shards.get(shard).findPage(localIdAfter(shard, afterId), limit));
+            List<Subscription> merged = new ArrayList<>();
+            var hasNext = false;
+            for (var entry : pages.entrySet()) {
+                merged.addAll(toGlobal(entry.getKey(), entry.getValue().getContent()));
+                hasNext |= entry.getValue().hasNext();
+            }
+            merged.sort(BY_ID);
+            hasNext |= merged.size() > limit;
+            var content = merged.subList(0, Math.min(limit, merged.size()));
+            return new Page<>(List.copyOf(content), hasNext ? content.get(content.size() - 1).getId() : null);
+        });
+    }
+
+    @Override
+    public Page<Subscription> findByUserIdPage(Integer userId, Integer afterId, int limit) {
+        return shared(() -> {
+            var shard = shardOfUser(userId);
+            var page = shards.get(shard).findByUserIdPage(userId, localIdAfter(shard, afterId), limit);
+            return new Page<>(toGlobal(shard, page.getContent()),
+                    page.hasNext() ? globalId(shard, page.getNextCursor()) : null);
+        });
+    }
+
+    /**
+     * Streams the shards one after another; each shard's cursor is opened once the previous one is exhausted.
+     */
+    @Override
+    public Stream<Subscription> streamAll() {
+        return concat(shard -> shards.get(shard).streamAll());
+    }
+
+    /**
+     * Opens a cursor on every shard and merges them in id order.
+     */
+    @Override
+    public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+        List<Stream<Subscription>> streams = new ArrayList<>(shards.size());
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                var globalShard = shard;
+                streams.add(shards.get(shard).streamAll(filter).map(subscription -> toGlobal(globalShard, subscription)));
+            }
+        } catch (Throwable e) {
+            // shards throw SQLException undeclared, which has to close the cursors opened so far as well
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        return StreamSupport.stream(new MergingSpliterator(streams.stream().map(Stream::iterator).toList()), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    @Override
+    public Stream<Subscription> streamByUserId(Integer userId) {
+        return shared(() -> {
+            var shard = shardOfUser(userId);
+            return shards.get(shard).streamByUserId(userId).map(subscription -> toGlobal(shard, subscription));
+        });
+    }
+
+    @Override
+    public Stream<Subscription> streamActiveExpiringBetween(Instant from, Instant to) {
+        return concat(shard -> shards.get(shard).streamActiveExpiringBetween(from, to));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    static int globalId(int shard, int localId) {
+        return Math.addExact(Math.multiplyExact(localId, MAX_SHARDS), shard);
+    }
+
+    static int localId(int id) {
+        return Math.floorDiv(id, MAX_SHARDS);
+    }
+
+    /**
+     * @return the index of the shard the id was handed out by, or {@code -1} if there is no such shard
+     */
+    int shardOfId(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        var shard = Math.floorMod(id, MAX_SHARDS);
+        return shard < shards.size() ? shard : -1;
+    }
+
+    /**
+     * Starts routing users passed to {@link #moveUsers} by the target ring. Calling it again with the same ring
+     * resumes an interrupted resharding, also one restored from the journal.
+     */
+    void beginResharding(ConsistentHashRing target) {
+        if (journal == null) {
+            throw new IllegalStateException("Resharding requires a journal to survive restarts");
+        }
+        exclusively(() -> {
+            if (targetRing != null && !targetRing.equals(target)) {
+                throw new IllegalStateException("Resharding to another ring is in progress");
+            }
+            if (targetRing == null) {
+                journal.begin(ring, checkRing(target));
+                targetRing = target;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return the users having subscriptions on the shard which the target ring assigns to another one
+     */
+    List<Integer> findUsersToMove(int shard, ConsistentHashRing target) {
+        try (var subscriptions = shards.get(shard).streamAll()) {
+            return subscriptions
+                    .map(Subscription::getUserId)
+                    .filter(userId -> target.shardFor(userId) != shard)
+                    .distinct()
+                    .toList();
+        }
+    }
+
+    /**
+     * @return the users written to their old shard since the resharding began, which the target ring assigns to
+     * another shard, by their old shard
+     */
+    Map<Integer, List<Integer>> findWrittenUsersToMove() {
+        Map<Integer, List<Integer>> userIdsByShard = new TreeMap<>();
+        for (var userId : writtenUserIds) {
+            var shard = ring.shardFor(userId);
+            if (!movedUserIds.contains(userId) && targetRing.shardFor(userId) != shard) {
+                userIdsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(userId);
+            }
+        }
+        return userIdsByShard;
+    }
+
+    /**
+     * Copies the subscriptions of the users from the shard to their target shard, records the move in the journal,
+     * switches their routing and deletes the originals, blocking every other call meanwhile.
+     * Copies left on the target shard by a move cut short before it was recorded are replaced, and subscriptions of
+     * users moved earlier are leftovers of a move cut short after it was recorded and are only deleted.
+     *
+     * @return the number of users and subscriptions moved, leaving out the users skipped as they were already on
+     * their target shard or moved earlier
+     */
+    MovedUsers moveUsers(int shard, Collection<Integer> userIds) {
+        return exclusively(() -> {
+            var source = shards.get(shard);
+            Map<Integer, List<Subscription>> originals = new TreeMap<>();
+            List<ReshardingJournal.Move> moves = new ArrayList<>();
+            for (var userId : userIds) {
+                var targetShard = targetRing.shardFor(userId);
+                if (targetShard == shard) {
+                    continue;
+                }
+                var subscriptions = source.findByUserId(userId);
+                originals.put(userId, subscriptions);
+                if (!movedUserIds.contains(userId)) {
+                    moves.add(copy(userId, shard, subscriptions, targetShard));
+                }
+            }
+            journal.recordMoved(moves);
+            moves.forEach(this::applyMove);
+            originals.values().forEach(subscriptions -> subscriptions.forEach(subscription -> source.delete(subscription.getId())));
+            return new MovedUsers(moves.size(), moves.stream()
+                    .mapToInt(move -> move.oldIds().size())
+                    .sum());
+        });
+    }
+
+    /**
+     * Routes all users by the target ring and deletes the journal. Must be called by {@link #exclusively},
+     * after every user has been moved.
+     */
+    void switchToTargetRing() {
+        if (!routingLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Switching rings requires the exclusive routing lock");
+        }
+        journal.complete();
+        ring = targetRing;
+        targetRing = null;
+        movedUserIds.clear();
+        movedIds.clear();
+        writtenUserIds.clear();
+    }
+
+    /**
+     * Runs the call while no other call is routed.
+     */
+    <T> T exclusively(Supplier<T> call) {
+        var lock = routingLock.writeLock();
+        lock.lock();
+        try {
+            return call.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int shardOfUser(Integer userId) {
+        // a missing user id is left to the shard to reject like a missing column
+        var key = userId == null ? 0 : userId;
+        return targetRing != null && movedUserIds.contains(key) ? targetRing.shardFor(key) : ring.shardFor(key);
+    }
+
+    /**
+     * Same as {@link #shardOfUser}, remembering the users written to while a resharding is in progress.
+     */
+    private int shardOfWrittenUser(Integer userId) {
+        if (targetRing != null && userId != null && !movedUserIds.contains(userId)) {
+            writtenUserIds.add(userId);
+        }
+        return shardOfUser(userId);
+    }
+
+    private ReshardingJournal.Move copy(int userId, int shard, List<Subscription> subscriptions, int targetShard) {
+        var target = shards.get(targetShard);
+        target.findByUserId(userId).forEach(copy -> target.delete(copy.getId()));
+        var copies = target.insertAll(subscriptions.stream()
+                .map(subscription -> subscription.toBuilder().id(null).build())
+                .toList());
+        return new ReshardingJournal.Move(userId,
+                subscriptions.stream().map(subscription -> globalId(shard, subscription.getId())).toList(),
+                copies.stream().map(copy -> globalId(targetShard, copy.getId())).toList());
+    }
+
+    private void applyMove(ReshardingJournal.Move move) {
+        movedUserIds.add(move.userId());
+        for (int i = 0; i < move.oldIds().size(); i++) {
+            movedIds.put(move.oldIds().get(i), move.newIds().get(i));
+        }
+    }
+
+    /**
+     * Same as {@link #shardOfId}, rejecting the old ids of subscriptions moved by the resharding in progress.
+     */
+    private int routeId(Integer id) {
+        var newId = id == null ? null : movedIds.get(id);
+        if (newId != null) {
+            throw new IllegalArgumentException("Subscription " + id + " has been moved to another shard as " + newId);
+        }
+        return shardOfId(id);
+    }
+
+    private int checkUpdatable(Subscription entity) {
+        var shard = routeId(entity.getId());
+        if (shard < 0) {
+            throw new IllegalArgumentException("Subscription " + entity.getId() + " belongs to no shard");
+        }
+        if (shard != shardOfWrittenUser(entity.getUserId())) {
+            throw new IllegalArgumentException("Subscription " + entity.getId() + " can't be moved to user "
+                                               + entity.getUserId() + " of another shard");
+        }
+        return shard;
+    }
+
+    /**
+     * Fails if a shard holds local ids close to {@link #MAX_LOCAL_ID}, so the DAO doesn't start only to fail on
+     * writes soon after.
+     */
+    private void checkIdHeadroom() {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!shards.get(shard).findPage(LOCAL_ID_HEADROOM_LIMIT, 1).getContent().isEmpty()) {
+                throw new IllegalStateException(String.format("Shard %d holds local ids above %d, close to the limit of %d",
+                        shard, LOCAL_ID_HEADROOM_LIMIT, MAX_LOCAL_ID));
+            }
+        }
+    }
+
+    private ConsistentHashRing checkRing(ConsistentHashRing ring) {
+        if (ring.getShards().get(ring.getShards().size() - 1) >= shards.size() || ring.getShards().get(0) < 0) {
+            throw new IllegalArgumentException("Ring shards " + ring.getShards() + " don't match " + shards.size() + " shards");
+        }
+        return ring;
+    }
+
+    private Integer localIdAfter(int shard, Integer afterId) {
+        // ids of the shard above afterId are those whose local id is above this one
+        return afterId == null ? null : Math.floorDiv(afterId - shard, MAX_SHARDS);
+    }
+
+    /**
+     * Gives the entities their shard-local ids for the call and global ones afterwards, including ids assigned by it.
+     */
+    private static void withLocalIds(int shard, List<Subscription> entities, Runnable call) {
+        entities.forEach(entity -> entity.setId(entity.getId() == null ? null : localId(entity.getId())));
+        try {
+            call.run();
+        } finally {
+            entities.forEach(entity -> entity.setId(entity.getId() == null ? null : globalId(shard, entity.getId())));
+        }
+    }
+
+    private static Subscription toGlobal(int shard, Subscription subscription) {
+        return subscription.setId(globalId(shard, subscription.getId()));
+    }
+
+    private static List<Subscription> toGlobal(int shard, List<Subscription> subscriptions) {
+        List<Subscription> global = new ArrayList<>(subscriptions.size());
+        subscriptions.forEach(subscription -> global.add(toGlobal(shard, subscription)));
+        return global;
+    }
+
+    private static Map<Integer, List<Subscription>> groupByShard(Collection<Subscription> entities,
+                                                                 ToIntFunction<Subscription> shardOf) {
+        Map<Integer, List<Subscription>> entitiesByShard = new TreeMap<>();
+        for (var entity : entities) {
+            entitiesByShard.computeIfAbsent(shardOf.applyAsInt(entity), shard -> new ArrayList<>()).add(entity);
+        }
+        return entitiesByShard;
+    }
+
+    private static Map<Integer, List<Integer>> positionsByShard(List<Subscription> entities,
+                                                                ToIntFunction<Subscription> shardOf) {
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < entities.size(); i++) {
+            positionsByShard.computeIfAbsent(shardOf.applyAsInt(entities.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return positionsByShard;
+    }
+
+    private <T> Map<Integer, T> scatter(IntFunction<T> call) {
+        return scatter(IntStream.range(0, shards.size()).boxed().toList(), call);
+    }
+
+    /**
+     * Calls the shards in parallel and waits for all of them. The first failure is rethrown once every call has
+     * finished. Calls run on the calling thread if there is only one, or if it is in a transaction, which the worker
+     * threads couldn't join.
+     */
+    @SneakyThrows
+    private <T> Map<Integer, T> scatter(Collection<Integer> shardIndexes, IntFunction<T> call) {
+        Map<Integer, T> results = new TreeMap<>();
+        if (shardIndexes.size() == 1 || TransactionManager.isActive()) {
+            shardIndexes.forEach(shard -> results.put(shard, call.apply(shard)));
+            return results;
+        }
+        Map<Integer, CompletableFuture<T>> futures = new TreeMap<>();
+        shardIndexes.forEach(shard -> futures.put(shard, CompletableFuture.supplyAsync(() -> call.apply(shard), executor)));
+        Throwable failure = null;
+        for (var entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static int sum(Map<Integer, Integer> counts) {
+        return counts.values().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    private Stream<Subscription> concat(IntFunction<Stream<Subscription>> stream) {
+        return IntStream.range(0, shards.size())
+                .boxed()
+                .flatMap(shard -> stream.apply(shard).map(subscription -> toGlobal(shard, subscription)));
+    }
+
+    private <T> T shared(Supplier<T> call) {
+        var lock = routingLock.readLock();
+        lock.lock();
+        try {
+            return call.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges iterators ordered by id into one ordered by id.
+     */
+    private static class MergingSpliterator extends Spliterators.AbstractSpliterator<Subscription> {
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing(head -> head.current, BY_ID));
+        private final List<Iterator<Subscription>> pending;
+
+        private MergingSpliterator(List<Iterator<Subscription>> iterators) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.pending = new ArrayList<>(iterators);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Subscription> action) {
+            // the cursors are only read once the stream is consumed
+            if (!pending.isEmpty()) {
+                pending.forEach(this::advance);
+                pending.clear();
+            }
+            var head = heads.poll();
+            if (head == null) {
+                return false;
+            }
+            action.accept(head.current);
+            advance(head.iterator);
+            return true;
+        }
+
+        private void advance(Iterator<Subscription> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        private record Head(Subscription current, Iterator<Subscription> iterator) {
+        }
+    }
+
+    record MovedUsers(int users, int subscriptions) {
+    }
+}
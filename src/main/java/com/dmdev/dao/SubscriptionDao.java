@@ -1,156 +1,139 @@
 package com.dmdev.dao;
 
-import com.dmdev.entity.Provider;
-import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
-import com.dmdev.util.ConnectionManager;
-import lombok.SneakyThrows;
-
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.util.ArrayList;
+import com.dmdev.util.TransactionManager;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-
-import static java.sql.Statement.RETURN_GENERATED_KEYS;
-
-public class SubscriptionDao implements Dao<Integer, Subscription> {
-
-    private static final SubscriptionDao INSTANCE = new SubscriptionDao();
-
-    private static final String GET_ALL_SQL = """
-            SELECT
-                id,
-                user_id,
-                name,
-                provider,
-                expiration_date,
-                status
-            FROM subscription
-            """;
-    private static final String GET_BY_ID_SQL = GET_ALL_SQL + " WHERE id = ?";
-    private static final String GET_BY_USER_ID_SQL = GET_ALL_SQL + " WHERE user_id = ?";
-    private static final String DELETE_BY_ID_SQL = "DELETE FROM subscription WHERE id = ?";
-    private static final String SAVE_SQL =
-            "INSERT INTO subscription (user_id, name, provider, expiration_date, status) VALUES (?, ?, ?, ?, ?)";
-    private static final String UPDATE_BY_ID_SQL = """
-            UPDATE subscription
-            SET user_id = ?,
-                name = ?,
-                provider = ?,
-                expiration_date = ?,
-                status = ?
-            WHERE id = ?
-            """;
-
-    public static SubscriptionDao getInstance() {
-        return INSTANCE;
-    }
-
-    @Override
-    @SneakyThrows
-    public List<Subscription> findAll() {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(GET_ALL_SQL)) {
-            var resultSet = preparedStatement.executeQuery();
-            List<Subscription> subscriptions = new ArrayList<>();
-            while (resultSet.next()) {
-                subscriptions.add(buildEntity(resultSet));
-            }
-
-            return subscriptions;
-        }
-    }
-
-    @Override
-    @SneakyThrows
-    public Optional<Subscription> findById(Integer id) {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(GET_BY_ID_SQL)) {
-            preparedStatement.setObject(1, id);
-
-            var resultSet = preparedStatement.executeQuery();
-            return resultSet.next()
-                    ? Optional.of(buildEntity(resultSet))
-                    : Optional.empty();
-        }
+import java.util.stream.Stream;
+
+/**
+ * Subscriptions of users. {@link JdbcSubscriptionDao} keeps them in the database, and the other implementations
+ * cache, shard or replace it.
+ * <p>
+ * No subscription has a {@code null} id or user id, so lookups and transitions given one find nothing and return
+ * an empty result or {@code false}.
+ */
+public interface SubscriptionDao extends Dao<Integer, Subscription> {
+
+    /**
+     * @deprecated use {@link JdbcSubscriptionDao#getInstance()}
+     */
+    @Deprecated
+    static SubscriptionDao getInstance() {
+        return JdbcSubscriptionDao.getInstance();
     }
 
-    @Override
-    @SneakyThrows
-    public boolean delete(Integer id) {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(DELETE_BY_ID_SQL)) {
-            preparedStatement.setObject(1, id);
-
-            return preparedStatement.executeUpdate() > 0;
-        }
-    }
-
-    @Override
-    @SneakyThrows
-    public Subscription update(Subscription entity) {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(UPDATE_BY_ID_SQL)) {
-            prepareStatementToUpsert(preparedStatement, entity);
-            preparedStatement.setObject(6, entity.getId());
-
-            preparedStatement.executeUpdate();
-            return entity;
-        }
-    }
-
-    @Override
-    @SneakyThrows
-    public Subscription insert(Subscription entity) {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(SAVE_SQL, RETURN_GENERATED_KEYS)) {
-            prepareStatementToUpsert(preparedStatement, entity);
-
-            preparedStatement.executeUpdate();
-
-            var generatedKeys = preparedStatement.getGeneratedKeys();
-            generatedKeys.next();
-            entity.setId(generatedKeys.getObject("id", Integer.class));
-
-            return entity;
-        }
-    }
-
-    @SneakyThrows
-    public List<Subscription> findByUserId(Integer userId) {
-        try (var connection = ConnectionManager.get();
-             var preparedStatement = connection.prepareStatement(GET_BY_USER_ID_SQL)) {
-            preparedStatement.setObject(1, userId);
-
-            var resultSet = preparedStatement.executeQuery();
-            List<Subscription> subscriptions = new ArrayList<>();
-            while (resultSet.next()) {
-                subscriptions.add(buildEntity(resultSet));
-            }
-
-            return subscriptions;
-        }
-    }
-
-    private Subscription buildEntity(ResultSet resultSet) throws SQLException {
-        return Subscription.builder()
-                .id(resultSet.getObject("id", Integer.class))
-                .userId(resultSet.getObject("user_id", Integer.class))
-                .name(resultSet.getObject("name", String.class))
-                .provider(Provider.valueOf(resultSet.getObject("provider", String.class)))
-                .expirationDate(resultSet.getObject("expiration_date", Timestamp.class).toInstant())
-                .status(Status.valueOf(resultSet.getObject("status", String.class)))
-                .build();
-    }
-
-    private void prepareStatementToUpsert(PreparedStatement preparedStatement, Subscription entity) throws SQLException {
-        preparedStatement.setObject(1, entity.getUserId());
-        preparedStatement.setObject(2, entity.getName());
-        preparedStatement.setObject(3, entity.getProvider().name());
-        preparedStatement.setObject(4, Timestamp.from(entity.getExpirationDate()));
-        preparedStatement.setObject(5, entity.getStatus().name());
-    }
+    /**
+     * Same as {@link #findById(Object)}, but always reads the primary, so the row reflects every committed write.
+     * Reads whose result feeds a write use it, as a lagging replica would make them act on an outdated row.
+     */
+    Optional<Subscription> findByIdOnPrimary(Integer id);
+
+    /**
+     * Same as {@link #findById(Object)}, but also locks the row until the current transaction ends,
+     * so it can't change between reading and updating it.
+     *
+     * @throws IllegalStateException if called outside of {@link TransactionManager#inTransaction}
+     */
+    Optional<Subscription> findByIdForUpdate(Integer id);
+
+    boolean existsById(Integer id);
+
+    /**
+     * Same as {@link #existsById(Integer)}, but always reads the primary, like {@link #findByIdOnPrimary(Integer)}.
+     */
+    boolean existsByIdOnPrimary(Integer id);
+
+    /**
+     * Cancels the subscription if it is active, checking and changing the status atomically.
+     *
+     * @return {@code false} if there is no such subscription or it isn't active
+     */
+    boolean cancel(Integer id);
+
+    /**
+     * Expires the subscription as of {@code expiredAt} unless it has already expired,
+     * checking and changing the status atomically.
+     *
+     * @return {@code false} if there is no such subscription or it has already expired
+     */
+    boolean expire(Integer id, Instant expiredAt);
+
+    /**
+     * Atomically inserts the subscription or, if the user already has one with the same name and provider,
+     * updates its expiration date and status.
+     *
+     * @return the resulting row, or an empty optional if the user's subscription with the same name
+     * belongs to another provider
+     */
+    Optional<Subscription> upsertByUserIdAndName(Subscription entity);
+
+    /**
+     * Runs {@link #upsertByUserIdAndName(Subscription)} for every entity in one transaction,
+     * so concurrent writers can share a single commit. If any statement fails, the whole batch is rolled back.
+     *
+     * @return resulting rows in the order of the given entities
+     */
+    List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities);
+
+    /**
+     * Expires every active subscription whose expiration date is before {@code now},
+     * in chunks of at most {@code chunkSize} subscriptions.
+     *
+     * @return the number of expired subscriptions
+     * @throws IllegalArgumentException if {@code chunkSize} isn't positive
+     */
+    int expireOverdue(Instant now, int chunkSize);
+
+    /**
+     * Expires the given subscriptions. A subscription is only expired if it is still active and its expiration date
+     * isn't after {@code now}, so ids scheduled from an outdated expiration date are skipped.
+     *
+     * @return the number of expired subscriptions
+     */
+    int expireDue(Collection<Integer> ids, Instant now);
+
+    List<Subscription> findByUserId(Integer userId);
+
+    /**
+     * Same as {@link #findByUserId(Integer)}, but always reads the primary, like {@link #findByIdOnPrimary(Integer)}.
+     */
+    List<Subscription> findByUserIdOnPrimary(Integer userId);
+
+    /**
+     * Returns up to {@code limit} subscriptions with ids greater than {@code afterId}, ordered by id.
+     *
+     * @param afterId the previous page's {@link Page#getNextCursor()}, or {@code null} for the first page
+     */
+    Page<Subscription> findPage(Integer afterId, int limit);
+
+    /**
+     * Same as {@link #findPage(Integer, int)}, limited to the subscriptions of the given user.
+     */
+    Page<Subscription> findByUserIdPage(Integer userId, Integer afterId, int limit);
+
+    /**
+     * Streams all subscriptions. The stream may hold a connection until it is closed, so it must be used
+     * in a try-with-resources block.
+     */
+    Stream<Subscription> streamAll();
+
+    /**
+     * Same as {@link #streamAll()}, limited to the subscriptions matching the filter and ordered by id.
+     */
+    Stream<Subscription> streamAll(SubscriptionFilter filter);
+
+    /**
+     * Same as {@link #streamAll()}, limited to the subscriptions of the given user.
+     */
+    Stream<Subscription> streamByUserId(Integer userId);
+
+    /**
+     * Streams active subscriptions expiring from {@code from} inclusive to {@code to} exclusive, like
+     * {@link #streamAll()}. Reads the primary, as every range is loaded only once.
+     */
+    Stream<Subscription> streamActiveExpiringBetween(Instant from, Instant to);
 }
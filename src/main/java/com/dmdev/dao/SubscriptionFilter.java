@@ -0,0 +1,46 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Criteria for {@link SubscriptionDao#streamAll(SubscriptionFilter)}. Empty sets and {@code null} bounds
+ * don't restrict anything.
+ */
+@Value
+@Builder
+public class SubscriptionFilter {
+
+    private static final SubscriptionFilter ALL = SubscriptionFilter.builder().build();
+
+    @Singular
+    Set<Status> statuses;
+    @Singular
+    Set<Provider> providers;
+    /**
+     * Inclusive lower bound of the expiration date.
+     */
+    Instant expiresFrom;
+    /**
+     * Exclusive upper bound of the expiration date.
+     */
+    Instant expiresBefore;
+
+    public static SubscriptionFilter all() {
+        return ALL;
+    }
+
+    public boolean matches(Subscription subscription) {
+        return (statuses.isEmpty() || statuses.contains(subscription.getStatus()))
+               && (providers.isEmpty() || providers.contains(subscription.getProvider()))
+               && (expiresFrom == null || !subscription.getExpirationDate().isBefore(expiresFrom))
+               && (expiresBefore == null || subscription.getExpirationDate().isBefore(expiresBefore));
+    }
+}
@@ -0,0 +1,42 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+class SubscriptionRowMapper implements RowMapper<Subscription> {
+
+    private final int idIndex;
+    private final int userIdIndex;
+    private final int nameIndex;
+    private final int providerIndex;
+    private final int expirationDateIndex;
+    private final int statusIndex;
+    private final int versionIndex;
+
+    SubscriptionRowMapper(ResultSet resultSet) throws SQLException {
+        this.idIndex = resultSet.findColumn("id");
+        this.userIdIndex = resultSet.findColumn("user_id");
+        this.nameIndex = resultSet.findColumn("name");
+        this.providerIndex = resultSet.findColumn("provider");
+        this.expirationDateIndex = resultSet.findColumn("expiration_date");
+        this.statusIndex = resultSet.findColumn("status");
+        this.versionIndex = resultSet.findColumn("version");
+    }
+
+    @Override
+    public Subscription mapRow(ResultSet resultSet) throws SQLException {
+        return Subscription.builder()
+                .id(resultSet.getInt(idIndex))
+                .userId(resultSet.getInt(userIdIndex))
+                .name(resultSet.getString(nameIndex))
+                .provider(Provider.findByName(resultSet.getString(providerIndex)))
+                .expirationDate(resultSet.getTimestamp(expirationDateIndex).toInstant())
+                .status(Status.findByName(resultSet.getString(statusIndex)))
+                .version(resultSet.getInt(versionIndex))
+                .build();
+    }
+}
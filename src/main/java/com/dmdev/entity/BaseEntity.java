@@ -3,4 +3,12 @@ package com.dmdev.entity;
 public interface BaseEntity<K> {
 
     K getId();
+
+    /**
+     * Version for optimistic locking, or {@code null} if the entity isn't versioned
+     * and updates should not check it.
+     */
+    default Integer getVersion() {
+        return null;
+    }
 }
@@ -1,18 +1,19 @@
 package com.dmdev.entity;
 
-import java.util.Arrays;
+import com.dmdev.util.EnumLookup;
+
 import java.util.Optional;
 
 public enum Provider {
     GOOGLE, APPLE;
 
+    private static final EnumLookup<Provider> LOOKUP = new EnumLookup<>(values());
+
     public static Provider findByName(String name) {
         return findByNameOpt(name).orElseThrow();
     }
 
     public static Optional<Provider> findByNameOpt(String name) {
-        return Arrays.stream(values())
-                .filter(provider -> provider.name().equalsIgnoreCase(name))
-                .findFirst();
+        return LOOKUP.find(name);
     }
 }
@@ -1,5 +1,19 @@
 package com.dmdev.entity;
 
+import com.dmdev.util.EnumLookup;
+
+import java.util.Optional;
+
 public enum Status {
-    ACTIVE, CANCELED, EXPIRED
+    ACTIVE, CANCELED, EXPIRED;
+
+    private static final EnumLookup<Status> LOOKUP = new EnumLookup<>(values());
+
+    public static Status findByName(String name) {
+        return findByNameOpt(name).orElseThrow();
+    }
+
+    public static Optional<Status> findByNameOpt(String name) {
+        return LOOKUP.find(name);
+    }
 }
@@ -12,7 +12,7 @@ import java.time.Instant;
 @Accessors(chain = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Subscription implements BaseEntity<Integer> {
     private Integer id;
     private Integer userId;
@@ -20,4 +20,5 @@ public class Subscription implements BaseEntity<Integer> {
     private Provider provider;
     private Instant expirationDate;
     private Status status;
+    private Integer version;
 }
@@ -0,0 +1,20 @@
+package com.dmdev.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a versioned update finds that the row has been changed or deleted since the entity was read.
+ */
+@Getter
+public class OptimisticLockException extends RuntimeException {
+
+    private final Object id;
+    private final int version;
+
+    public OptimisticLockException(Class<?> entityType, Object id, int version) {
+        super(String.format("%s %s with version %d was changed or deleted concurrently",
+                entityType.getSimpleName(), id, version));
+        this.id = id;
+        this.version = version;
+    }
+}
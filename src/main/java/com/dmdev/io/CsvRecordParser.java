@@ -0,0 +1,95 @@
+package com.dmdev.io;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses CSV lines by the column positions found in the header, so columns may come in any order
+ * and unknown columns are ignored.
+ */
+class CsvRecordParser implements RecordParser {
+
+    private final int columnCount;
+    private final int userIdColumn;
+    private final int nameColumn;
+    private final int providerColumn;
+    private final int expirationDateColumn;
+
+    CsvRecordParser(String header) {
+        var columns = split(header.startsWith("\uFEFF") ? header.substring(1) : header).stream()
+                .map(String::strip)
+                .toList();
+        this.columnCount = columns.size();
+        this.userIdColumn = column(columns, USER_ID);
+        this.nameColumn = column(columns, NAME);
+        this.providerColumn = column(columns, PROVIDER);
+        this.expirationDateColumn = column(columns, EXPIRATION_DATE);
+    }
+
+    @Override
+    public CreateSubscriptionDto parse(String line) {
+        var fields = split(line);
+        if (fields.size() != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " fields, found " + fields.size());
+        }
+        return CreateSubscriptionDto.builder()
+                .userId(RecordParser.parseUserId(fields.get(userIdColumn)))
+                .name(fields.get(nameColumn))
+                .provider(fields.get(providerColumn))
+                .expirationDate(RecordParser.parseExpirationDate(fields.get(expirationDateColumn)))
+                .build();
+    }
+
+    /**
+     * Splits a line into fields, unquoting quoted ones. Empty unquoted fields are {@code null}.
+     */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        var field = new StringBuilder();
+        var quoted = false;
+        var wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(toField(field, wasQuoted));
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (wasQuoted) {
+                throw new IllegalArgumentException("Unexpected character after quoted field at " + i);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(toField(field, wasQuoted));
+        return fields;
+    }
+
+    private static String toField(StringBuilder field, boolean wasQuoted) {
+        return field.isEmpty() && !wasQuoted ? null : field.toString();
+    }
+
+    private static int column(List<String> columns, String name) {
+        var column = columns.indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("CSV header has no " + name + " column: " + columns);
+        }
+        return column;
+    }
+}
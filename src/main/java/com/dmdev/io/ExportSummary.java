@@ -0,0 +1,20 @@
+package com.dmdev.io;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+public class ExportSummary {
+    long records;
+    /**
+     * Size of the written file, after compression if any.
+     */
+    long bytes;
+    Duration elapsed;
+
+    public double getRecordsPerSecond() {
+        var nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : records * 1_000_000_000.0 / nanos;
+    }
+}
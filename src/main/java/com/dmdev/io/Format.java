@@ -0,0 +1,38 @@
+package com.dmdev.io;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Line-oriented file formats for bulk subscription transfers.
+ */
+public enum Format {
+
+    /**
+     * Comma-separated values with a header line naming the columns. Fields may be quoted as in RFC 4180,
+     * but can't span lines.
+     */
+    CSV,
+
+    /**
+     * One flat JSON object per line.
+     */
+    NDJSON;
+
+    /**
+     * Detects the format by the extension of the file, ignoring a trailing {@code .gz}.
+     */
+    public static Format fromFileName(Path path) {
+        var fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".gz")) {
+            fileName = fileName.substring(0, fileName.length() - 3);
+        }
+        if (fileName.endsWith(".csv")) {
+            return CSV;
+        }
+        if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown file format: " + path);
+    }
+}
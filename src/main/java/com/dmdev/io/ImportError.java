@@ -0,0 +1,13 @@
+package com.dmdev.io;
+
+import com.dmdev.validator.Error;
+import lombok.Value;
+
+/**
+ * Reason why the record on a line of an import file wasn't imported. Lines are numbered from 1.
+ */
+@Value(staticConstructor = "of")
+public class ImportError {
+    long lineNumber;
+    Error error;
+}
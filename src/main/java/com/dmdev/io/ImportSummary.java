@@ -0,0 +1,18 @@
+package com.dmdev.io;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+public class ImportSummary {
+    long records;
+    long imported;
+    long rejected;
+    Duration elapsed;
+
+    public double getRecordsPerSecond() {
+        var nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : records * 1_000_000_000.0 / nanos;
+    }
+}
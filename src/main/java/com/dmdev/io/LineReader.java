@@ -0,0 +1,82 @@
+package com.dmdev.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a channel through one direct buffer, decoding each line only once it is complete.
+ * Lines longer than {@code maxLineLength} bytes are cut, so a file without line breaks can't exhaust the heap.
+ */
+class LineReader {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final int maxLineLength;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean truncated;
+    private boolean endOfInput;
+
+    LineReader(ReadableByteChannel channel, int bufferSize, int maxLineLength) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).flip();
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * @return the next line without its line terminator, or {@code null} at the end of input
+     */
+    String readLine() throws IOException {
+        lineLength = 0;
+        truncated = false;
+        while (true) {
+            while (buffer.hasRemaining()) {
+                var b = buffer.get();
+                if (b == '\n') {
+                    return decode();
+                }
+                append(b);
+            }
+            if (endOfInput || !fill()) {
+                return lineLength > 0 || truncated ? decode() : null;
+            }
+        }
+    }
+
+    /**
+     * @return whether the last line read was longer than {@code maxLineLength} and has been cut
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        var read = 0;
+        while (read == 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        endOfInput = read < 0;
+        return !endOfInput;
+    }
+
+    private void append(byte b) {
+        if (lineLength == maxLineLength) {
+            truncated = true;
+            return;
+        }
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, Math.min(line.length * 2, maxLineLength));
+        }
+        line[lineLength++] = b;
+    }
+
+    private String decode() {
+        var length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,145 @@
+package com.dmdev.io;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+
+/**
+ * Parses lines holding one flat JSON object. Values of unknown keys are skipped; nested objects and arrays
+ * aren't supported.
+ */
+class NdjsonRecordParser implements RecordParser {
+
+    @Override
+    public CreateSubscriptionDto parse(String line) {
+        return new Cursor(line).readObject();
+    }
+
+    private static class Cursor {
+
+        private final String line;
+        private final StringBuilder token = new StringBuilder();
+        private int position;
+
+        private Cursor(String line) {
+            this.line = line;
+        }
+
+        private CreateSubscriptionDto readObject() {
+            var dto = CreateSubscriptionDto.builder();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    var key = readString();
+                    expect(':');
+                    var value = readValue();
+                    switch (key) {
+                        case USER_ID -> dto.userId(RecordParser.parseUserId(value));
+                        case NAME -> dto.name(value);
+                        case PROVIDER -> dto.provider(value);
+                        case EXPIRATION_DATE -> dto.expirationDate(RecordParser.parseExpirationDate(value));
+                        default -> {
+                        }
+                    }
+                } while (consumeComma());
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw malformed("Unexpected content after object");
+            }
+            return dto.build();
+        }
+
+        /**
+         * @return the string or the literal text of the value, or {@code null} for JSON null
+         */
+        private String readValue() {
+            if (peek() == '"') {
+                return readString();
+            }
+            var start = position;
+            while (position < line.length() && ",} \t".indexOf(line.charAt(position)) < 0) {
+                position++;
+            }
+            var literal = line.substring(start, position);
+            if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+                throw malformed("Unsupported value at " + start);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            token.setLength(0);
+            while (position < line.length()) {
+                var c = line.charAt(position++);
+                if (c == '"') {
+                    return token.toString();
+                }
+                if (c == '\\') {
+                    token.append(readEscape());
+                } else {
+                    token.append(c);
+                }
+            }
+            throw malformed("Unterminated string");
+        }
+
+        private char readEscape() {
+            if (position >= line.length()) {
+                throw malformed("Unterminated escape");
+            }
+            var c = line.charAt(position++);
+            return switch (c) {
+                case '"', '\\', '/' -> c;
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case 'u' -> {
+                    if (position + 4 > line.length()) {
+                        throw malformed("Truncated unicode escape");
+                    }
+                    try {
+                        var codePoint = (char) Integer.parseInt(line, position, position + 4, 16);
+                        position += 4;
+                        yield codePoint;
+                    } catch (NumberFormatException e) {
+                        throw malformed("Invalid unicode escape at " + position);
+                    }
+                }
+                default -> throw malformed("Invalid escape \\" + c);
+            };
+        }
+
+        private boolean consumeComma() {
+            if (peek() == ',') {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw malformed("Expected '" + expected + "' at " + position);
+            }
+            position++;
+        }
+
+        /**
+         * @return the next character that isn't whitespace, or {@code 0} at the end of the line
+         */
+        private char peek() {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            return position < line.length() ? line.charAt(position) : 0;
+        }
+
+        private static IllegalArgumentException malformed(String message) {
+            return new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.dmdev.io;
+
+import com.dmdev.entity.Subscription;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Encodes subscriptions as UTF-8 straight into a byte buffer. Numbers, instants and text are written digit by digit
+ * and char by char, so encoding a record allocates nothing. Field names match the ones {@link RecordParser} reads,
+ * so exported files can be imported again.
+ */
+abstract class RecordEncoder {
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_INT = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final long MIN_FORMATTED_SECOND = Instant.parse("0000-01-01T00:00:00Z").getEpochSecond();
+    private static final long MAX_FORMATTED_SECOND = Instant.parse("9999-12-31T23:59:59Z").getEpochSecond();
+
+    static RecordEncoder of(Format format) {
+        return switch (format) {
+            case CSV -> new Csv();
+            case NDJSON -> new Ndjson();
+        };
+    }
+
+    /**
+     * Written once before the first record.
+     */
+    abstract void header(ByteBuffer buffer);
+
+    abstract void encode(Subscription subscription, ByteBuffer buffer);
+
+    /**
+     * @return how many bytes encoding the subscription may take at most
+     */
+    int maxLength(Subscription subscription) {
+        // every char of the name may be escaped as six bytes, the other fields take less than 128 bytes together
+        return 128 + subscription.getName().length() * 6;
+    }
+
+    static void putAscii(String value, ByteBuffer buffer) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    static void putInt(int value, ByteBuffer buffer) {
+        if (value == Integer.MIN_VALUE) {
+            buffer.put(MIN_INT);
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        var start = buffer.position();
+        do {
+            buffer.put(DIGITS[value % 10]);
+            value /= 10;
+        } while (value != 0);
+        reverse(buffer, start, buffer.position() - 1);
+    }
+
+    /**
+     * Writes the instant as {@link Instant#toString()} does.
+     */
+    static void putInstant(Instant instant, ByteBuffer buffer) {
+        var epochSecond = instant.getEpochSecond();
+        if (epochSecond < MIN_FORMATTED_SECOND || epochSecond > MAX_FORMATTED_SECOND) {
+            putAscii(instant.toString(), buffer);
+            return;
+        }
+        var epochDay = Math.floorDiv(epochSecond, 86_400);
+        var secondOfDay = (int) Math.floorMod(epochSecond, 86_400);
+        // civil date from days since 1970-01-01, counting years from March so leap days come last
+        var days = epochDay + 719_468;
+        var era = Math.floorDiv(days, 146_097);
+        var dayOfEra = (int) (days - era * 146_097);
+        var yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        var dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        var shiftedMonth = (5 * dayOfYear + 2) / 153;
+        var day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        var month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        var year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        putPadded(year, 4, buffer);
+        buffer.put((byte) '-');
+        putPadded(month, 2, buffer);
+        buffer.put((byte) '-');
+        putPadded(day, 2, buffer);
+        buffer.put((byte) 'T');
+        putPadded(secondOfDay / 3600, 2, buffer);
+        buffer.put((byte) ':');
+        putPadded(secondOfDay / 60 % 60, 2, buffer);
+        buffer.put((byte) ':');
+        putPadded(secondOfDay % 60, 2, buffer);
+        var nano = instant.getNano();
+        if (nano != 0) {
+            buffer.put((byte) '.');
+            if (nano % 1_000_000 == 0) {
+                putPadded(nano / 1_000_000, 3, buffer);
+            } else if (nano % 1000 == 0) {
+                putPadded(nano / 1000, 6, buffer);
+            } else {
+                putPadded(nano, 9, buffer);
+            }
+        }
+        buffer.put((byte) 'Z');
+    }
+
+    /**
+     * Writes the chars as UTF-8, replacing unpaired surrogates with {@code ?}.
+     */
+    static void putUtf8(char c, String value, int index, ByteBuffer buffer) {
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        } else if (!Character.isSurrogate(c)) {
+            buffer.put((byte) (0xE0 | c >> 12));
+            buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                   && Character.isLowSurrogate(value.charAt(index + 1))) {
+            var codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            buffer.put((byte) (0xF0 | codePoint >> 18));
+            buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        } else if (Character.isLowSurrogate(c) && index > 0 && Character.isHighSurrogate(value.charAt(index - 1))) {
+            // second half of a pair written with the first one
+            return;
+        } else {
+            buffer.put((byte) '?');
+        }
+    }
+
+    private static void putPadded(int value, int width, ByteBuffer buffer) {
+        var start = buffer.position();
+        for (int i = 0; i < width; i++) {
+            buffer.put(DIGITS[value % 10]);
+            value /= 10;
+        }
+        reverse(buffer, start, buffer.position() - 1);
+    }
+
+    private static void reverse(ByteBuffer buffer, int from, int to) {
+        while (from < to) {
+            var b = buffer.get(from);
+            buffer.put(from++, buffer.get(to));
+            buffer.put(to--, b);
+        }
+    }
+
+    /**
+     * Quotes names only when they contain a separator, a quote or a line break.
+     */
+    private static class Csv extends RecordEncoder {
+
+        private static final String HEADER = "id,userId,name,provider,expirationDate,status\n";
+
+        @Override
+        void header(ByteBuffer buffer) {
+            putAscii(HEADER, buffer);
+        }
+
+        @Override
+        void encode(Subscription subscription, ByteBuffer buffer) {
+            putInt(subscription.getId(), buffer);
+            buffer.put((byte) ',');
+            putInt(subscription.getUserId(), buffer);
+            buffer.put((byte) ',');
+            putName(subscription.getName(), buffer);
+            buffer.put((byte) ',');
+            putAscii(subscription.getProvider().name(), buffer);
+            buffer.put((byte) ',');
+            putInstant(subscription.getExpirationDate(), buffer);
+            buffer.put((byte) ',');
+            putAscii(subscription.getStatus().name(), buffer);
+            buffer.put((byte) '\n');
+        }
+
+        private static void putName(String name, ByteBuffer buffer) {
+            var quoted = name.isEmpty() || needsQuotes(name);
+            if (quoted) {
+                buffer.put((byte) '"');
+            }
+            for (int i = 0; i < name.length(); i++) {
+                var c = name.charAt(i);
+                if (c == '"') {
+                    buffer.put((byte) '"');
+                }
+                putUtf8(c, name, i, buffer);
+            }
+            if (quoted) {
+                buffer.put((byte) '"');
+            }
+        }
+
+        private static boolean needsQuotes(String name) {
+            for (int i = 0; i < name.length(); i++) {
+                var c = name.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Ndjson extends RecordEncoder {
+
+        @Override
+        void header(ByteBuffer buffer) {
+        }
+
+        @Override
+        void encode(Subscription subscription, ByteBuffer buffer) {
+            putAscii("{\"id\":", buffer);
+            putInt(subscription.getId(), buffer);
+            putAscii(",\"userId\":", buffer);
+            putInt(subscription.getUserId(), buffer);
+            putAscii(",\"name\":\"", buffer);
+            putEscaped(subscription.getName(), buffer);
+            putAscii("\",\"provider\":\"", buffer);
+            putAscii(subscription.getProvider().name(), buffer);
+            putAscii("\",\"expirationDate\":\"", buffer);
+            putInstant(subscription.getExpirationDate(), buffer);
+            putAscii("\",\"status\":\"", buffer);
+            putAscii(subscription.getStatus().name(), buffer);
+            putAscii("\"}\n", buffer);
+        }
+
+        private static void putEscaped(String value, ByteBuffer buffer) {
+            for (int i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    buffer.put((byte) '\\');
+                    buffer.put((byte) c);
+                } else if (c < 0x20) {
+                    putAscii("\\u00", buffer);
+                    buffer.put(DIGITS[c >> 4]);
+                    buffer.put(DIGITS[c & 0xF]);
+                } else {
+                    putUtf8(c, value, i, buffer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.dmdev.io;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses one line of an import file. Fields with unparsable values are left {@code null} for the validator
+ * to report; only lines that can't be split into fields are rejected.
+ */
+interface RecordParser {
+
+    String USER_ID = "userId";
+    String NAME = "name";
+    String PROVIDER = "provider";
+    String EXPIRATION_DATE = "expirationDate";
+
+    /**
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    CreateSubscriptionDto parse(String line);
+
+    static RecordParser of(Format format, String header) {
+        return switch (format) {
+            case CSV -> new CsvRecordParser(header);
+            case NDJSON -> new NdjsonRecordParser();
+        };
+    }
+
+    static Integer parseUserId(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.strip());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Instant parseExpirationDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(value.strip());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
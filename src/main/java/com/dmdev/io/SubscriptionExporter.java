@@ -0,0 +1,185 @@
+package com.dmdev.io;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionFilter;
+import lombok.SneakyThrows;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes subscriptions to CSV or NDJSON files in constant memory.
+ * <p>
+ * Rows are read through {@link SubscriptionDao#streamAll(SubscriptionFilter)}, so only one fetch of rows is held
+ * at a time, and encoded by {@link RecordEncoder} into a single reused buffer that is flushed to a
+ * {@link FileChannel} whenever the next record might not fit. Files ending with {@code .gz} are compressed.
+ * <p>
+ * Records are written to a temporary file next to the target, which is forced to disk and atomically moved over
+ * the target once the export succeeds. A failed export deletes it, so the target is either the complete new export
+ * or left as it was.
+ */
+public class SubscriptionExporter {
+
+    private static final System.Logger LOG = System.getLogger(SubscriptionExporter.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SubscriptionDao subscriptionDao;
+
+    public SubscriptionExporter(SubscriptionDao subscriptionDao) {
+        this.subscriptionDao = subscriptionDao;
+    }
+
+    /**
+     * Exports in the format given by the file name, see {@link Format#fromFileName(Path)}.
+     */
+    public ExportSummary export(Path target, SubscriptionFilter filter) {
+        return export(target, Format.fromFileName(target), filter);
+    }
+
+    @SneakyThrows
+    public ExportSummary export(Path target, Format format, SubscriptionFilter filter) {
+        var start = System.nanoTime();
+        var encoder = RecordEncoder.of(format);
+        var records = 0L;
+        var directory = target.toAbsolutePath().getParent();
+        var temporary = Files.createTempFile(directory, target.getFileName().toString() + ".", ".tmp");
+        try (var sink = open(temporary, target.getFileName().toString().endsWith(".gz"));
+             var subscriptions = subscriptionDao.streamAll(filter)) {
+            var buffer = sink.buffer();
+            encoder.header(buffer);
+            var iterator = subscriptions.iterator();
+            while (iterator.hasNext()) {
+                var subscription = iterator.next();
+                var maxLength = encoder.maxLength(subscription);
+                if (buffer.remaining() < maxLength) {
+                    sink.flush();
+                    if (buffer.remaining() < maxLength) {
+                        throw new IllegalArgumentException("Subscription " + subscription.getId() + " is too long to export");
+                    }
+                }
+                encoder.encode(subscription, buffer);
+                records++;
+            }
+        } catch (Throwable e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        var summary = new ExportSummary(records, Files.size(target), Duration.ofNanos(System.nanoTime() - start));
+        LOG.log(System.Logger.Level.INFO, "Exported {0} records to {1} in {2} ({3} records/s)",
+                summary.getRecords(), target, summary.getElapsed(), Math.round(summary.getRecordsPerSecond()));
+        return summary;
+    }
+
+    private static Sink open(Path file, boolean compressed) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!compressed) {
+            return new ChannelSink(channel);
+        }
+        try {
+            return new GzipSink(channel, new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Destination owning the buffer records are encoded into. Closing it flushes what is left and forces it to disk.
+     */
+    private interface Sink extends Closeable {
+
+        ByteBuffer buffer();
+
+        /**
+         * Writes the buffered bytes and clears the buffer.
+         */
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes from a direct buffer, so the channel doesn't copy it.
+     */
+    private static class ChannelSink implements Sink {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private ChannelSink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                flush();
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Writes from a heap buffer, as the deflater reads arrays.
+     */
+    private static class GzipSink implements Sink {
+
+        private final FileChannel channel;
+        private final GZIPOutputStream outputStream;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private GzipSink(FileChannel channel, GZIPOutputStream outputStream) {
+            this.channel = channel;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            outputStream.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (outputStream) {
+                flush();
+                // the channel stream doesn't buffer, so the trailer is in the channel once written
+                outputStream.finish();
+                channel.force(false);
+            }
+        }
+    }
+}
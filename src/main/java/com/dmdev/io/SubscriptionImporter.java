@@ -0,0 +1,399 @@
+package com.dmdev.io;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.Error;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk upsert of subscriptions from CSV or NDJSON files, as {@link com.dmdev.service.SubscriptionService#upsert}
+ * would do them one by one.
+ * <p>
+ * The file is read through a {@link FileChannel} in chunks of {@code chunkSize} lines. Chunks are parsed, validated
+ * and mapped by {@code parallelism} workers and written by the calling thread with
+ * {@link SubscriptionDao#upsertAllByUserIdAndName(List)} in batches of {@code batchSize}. Chunks are written
+ * in file order, so a later line for the same user and name wins, as it would sequentially. At most
+ * {@code maxChunksInFlight} chunks exist at a time, so memory use doesn't depend on the file size.
+ * <p>
+ * Every rejected line is reported with the validator's {@link Error} or one of the errors below, chunk by chunk
+ * in line order. A batch that fails is retried one upsert at a time, so only the failing lines are rejected.
+ */
+public class SubscriptionImporter {
+
+    private static final System.Logger LOG = System.getLogger(SubscriptionImporter.class.getName());
+
+    public static final Error MALFORMED_RECORD = Error.of(200, "record is malformed");
+    public static final Error PROVIDER_CONFLICT = Error.of(201, "subscription belongs to another provider");
+    public static final Error WRITE_FAILED = Error.of(202, "subscription could not be written");
+
+    private static final String PARALLELISM_KEY = "subscription.import.parallelism";
+    private static final String CHUNK_SIZE_KEY = "subscription.import.chunk-size";
+    private static final String BATCH_SIZE_KEY = "subscription.import.batch-size";
+    private static final String MAX_CHUNKS_IN_FLIGHT_KEY = "subscription.import.max-chunks-in-flight";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final SubscriptionDao subscriptionDao;
+    private final CreateSubscriptionMapper createSubscriptionMapper;
+    private final CreateSubscriptionValidator createSubscriptionValidator;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxChunksInFlight;
+
+    public SubscriptionImporter(SubscriptionDao subscriptionDao,
+                                CreateSubscriptionMapper createSubscriptionMapper,
+                                CreateSubscriptionValidator createSubscriptionValidator,
+                                int parallelism,
+                                int chunkSize,
+                                int batchSize,
+                                int maxChunksInFlight) {
+        this.subscriptionDao = subscriptionDao;
+        this.createSubscriptionMapper = createSubscriptionMapper;
+        this.createSubscriptionValidator = createSubscriptionValidator;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Creates the importer configured by the {@code subscription.import.*} properties,
+     * with a worker per available processor by default.
+     */
+    public static SubscriptionImporter create(SubscriptionDao subscriptionDao) {
+        var parallelism = PropertiesUtil.getInt(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors());
+        return new SubscriptionImporter(
+                subscriptionDao,
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                parallelism,
+                PropertiesUtil.getInt(CHUNK_SIZE_KEY, 1000),
+                PropertiesUtil.getInt(BATCH_SIZE_KEY, 500),
+                PropertiesUtil.getInt(MAX_CHUNKS_IN_FLIGHT_KEY, parallelism * 4));
+    }
+
+    /**
+     * Imports the file in the format given by its name, see {@link Format#fromFileName(Path)}.
+     * Files ending with {@code .gz} are decompressed.
+     */
+    public ImportSummary importFile(Path source, Consumer<ImportError> errors) {
+        return importFile(source, Format.fromFileName(source), errors);
+    }
+
+    /**
+     * @param errors receives rejected lines on the calling thread
+     */
+    @SneakyThrows
+    public ImportSummary importFile(Path source, Format format, Consumer<ImportError> errors) {
+        try (var channel = open(source)) {
+            var summary = new Run(channel, format, errors).execute();
+            LOG.log(System.Logger.Level.INFO, "Imported {0} of {1} records from {2} in {3} ({4} records/s)",
+                    summary.getImported(), summary.getRecords(), source, summary.getElapsed(),
+                    Math.round(summary.getRecordsPerSecond()));
+            return summary;
+        }
+    }
+
+    private static ReadableByteChannel open(Path source) throws IOException {
+        var channel = FileChannel.open(source, StandardOpenOption.READ);
+        if (!source.getFileName().toString().endsWith(".gz")) {
+            return channel;
+        }
+        try {
+            return Channels.newChannel(new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * State of one import: the reader, the workers and the writer joined by bounded queues.
+     */
+    private class Run {
+
+        private static final Chunk END_OF_INPUT = new Chunk(-1, List.of());
+        private static final ParsedChunk WORKER_DONE = new ParsedChunk(-1, List.of(), List.of());
+        private static final ParsedChunk WORKER_FAILED = new ParsedChunk(-1, List.of(), List.of());
+
+        private final ReadableByteChannel channel;
+        private final Format format;
+        private final Consumer<ImportError> errors;
+        private final Semaphore chunksInFlight = new Semaphore(maxChunksInFlight);
+        private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(maxChunksInFlight + parallelism);
+        private final BlockingQueue<ParsedChunk> parsedChunks = new ArrayBlockingQueue<>(maxChunksInFlight + parallelism);
+        private final AtomicLong records = new AtomicLong();
+        private RecordParser parser;
+        private long imported;
+        private long rejected;
+
+        private Run(ReadableByteChannel channel, Format format, Consumer<ImportError> errors) {
+            this.channel = channel;
+            this.format = format;
+            this.errors = errors;
+        }
+
+        private ImportSummary execute() throws IOException, InterruptedException {
+            var start = System.nanoTime();
+            var executor = newExecutor();
+            try {
+                var reader = executor.submit(this::read);
+                List<Future<Void>> workers = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    workers.add(executor.submit((Callable<Void>) this::parse));
+                }
+                if (!write()) {
+                    // the chunk of the failed worker is never written, so the reader and the other workers stall
+                    executor.shutdownNow();
+                }
+                await(workers);
+                await(reader);
+            } finally {
+                executor.shutdownNow();
+            }
+            return new ImportSummary(records.get(), imported, rejected, Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        /**
+         * Splits the file into chunks of lines. The end of input is always signalled, even after a failure,
+         * so the writer doesn't wait forever.
+         */
+        private Void read() throws IOException, InterruptedException {
+            try {
+                var lineReader = new LineReader(channel, BUFFER_SIZE, MAX_LINE_LENGTH);
+                if (format != Format.CSV) {
+                    parser = RecordParser.of(format, null);
+                }
+                long lineNumber = 0;
+                long sequence = 0;
+                List<Line> lines = new ArrayList<>(chunkSize);
+                String text;
+                while ((text = lineReader.readLine()) != null) {
+                    lineNumber++;
+                    if (parser == null) {
+                        // published to the workers by the queue, as no chunk is submitted before the header
+                        parser = RecordParser.of(format, text);
+                    } else if (!text.isBlank()) {
+                        lines.add(new Line(lineNumber, text, lineReader.isTruncated()));
+                        if (lines.size() == chunkSize) {
+                            submit(new Chunk(sequence++, lines));
+                            lines = new ArrayList<>(chunkSize);
+                        }
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    submit(new Chunk(sequence, lines));
+                }
+                return null;
+            } finally {
+                for (int i = 0; i < parallelism; i++) {
+                    chunks.put(END_OF_INPUT);
+                }
+            }
+        }
+
+        private void submit(Chunk chunk) throws InterruptedException {
+            chunksInFlight.acquire();
+            chunks.put(chunk);
+        }
+
+        /**
+         * Parses chunks until the end of input. Its end is always signalled to the writer, even after a failure,
+         * so the writer doesn't wait forever.
+         */
+        private Void parse() throws InterruptedException {
+            var signal = WORKER_FAILED;
+            try {
+                Chunk chunk;
+                while ((chunk = chunks.take()) != END_OF_INPUT) {
+                    List<ParsedLine> parsedLines = new ArrayList<>(chunk.lines().size());
+                    List<ImportError> lineErrors = new ArrayList<>();
+                    for (var line : chunk.lines()) {
+                        parse(line, parsedLines, lineErrors);
+                    }
+                    records.addAndGet(chunk.lines().size());
+                    parsedChunks.put(new ParsedChunk(chunk.sequence(), parsedLines, lineErrors));
+                }
+                signal = WORKER_DONE;
+                return null;
+            } finally {
+                parsedChunks.put(signal);
+            }
+        }
+
+        private void parse(Line line, List<ParsedLine> parsedLines, List<ImportError> lineErrors) {
+            if (line.truncated()) {
+                lineErrors.add(ImportError.of(line.number(), MALFORMED_RECORD));
+                return;
+            }
+            CreateSubscriptionDto dto;
+            try {
+                dto = parser.parse(line.text());
+            } catch (IllegalArgumentException e) {
+                lineErrors.add(ImportError.of(line.number(), MALFORMED_RECORD));
+                return;
+            }
+            var validationResult = createSubscriptionValidator.validate(dto);
+            if (validationResult.hasErrors()) {
+                validationResult.getErrors().forEach(error -> lineErrors.add(ImportError.of(line.number(), error)));
+                return;
+            }
+            parsedLines.add(new ParsedLine(line.number(), createSubscriptionMapper.map(dto)));
+        }
+
+        /**
+         * Writes parsed chunks in file order, holding back the ones that overtook an earlier chunk.
+         *
+         * @return false if a worker failed, in which case the chunks after its chunk are left unwritten
+         */
+        private boolean write() throws InterruptedException {
+            Map<Long, ParsedChunk> waiting = new HashMap<>();
+            long nextSequence = 0;
+            var runningWorkers = parallelism;
+            while (runningWorkers > 0) {
+                var parsedChunk = parsedChunks.take();
+                if (parsedChunk == WORKER_FAILED) {
+                    return false;
+                }
+                if (parsedChunk == WORKER_DONE) {
+                    runningWorkers--;
+                    continue;
+                }
+                waiting.put(parsedChunk.sequence(), parsedChunk);
+                while ((parsedChunk = waiting.remove(nextSequence)) != null) {
+                    write(parsedChunk);
+                    nextSequence++;
+                    chunksInFlight.release();
+                }
+            }
+            return true;
+        }
+
+        private void write(ParsedChunk parsedChunk) {
+            List<ImportError> chunkErrors = new ArrayList<>(parsedChunk.errors());
+            var lines = parsedChunk.lines();
+            for (int from = 0; from < lines.size(); from += batchSize) {
+                upsert(lines.subList(from, Math.min(from + batchSize, lines.size())), chunkErrors);
+            }
+            chunkErrors.sort(Comparator.comparingLong(ImportError::getLineNumber));
+            chunkErrors.forEach(errors);
+            rejected += chunkErrors.stream().mapToLong(ImportError::getLineNumber).distinct().count();
+        }
+
+        private void upsert(List<ParsedLine> batch, List<ImportError> chunkErrors) {
+            List<Optional<Subscription>> subscriptions;
+            try {
+                subscriptions = subscriptionDao.upsertAllByUserIdAndName(batch.stream()
+                        .map(ParsedLine::subscription)
+                        .toList());
+            } catch (Exception e) {
+                // DAO methods throw SQLException undeclared, so it has to be caught as Exception
+                LOG.log(System.Logger.Level.DEBUG, "Batched upsert failed, retrying one by one", e);
+                batch.forEach(line -> upsertOne(line, chunkErrors));
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), subscriptions.get(i), chunkErrors);
+            }
+        }
+
+        private void upsertOne(ParsedLine line, List<ImportError> chunkErrors) {
+            try {
+                complete(line, subscriptionDao.upsertByUserIdAndName(line.subscription()), chunkErrors);
+            } catch (Exception e) {
+                LOG.log(System.Logger.Level.DEBUG, "Upsert of line " + line.number() + " failed", e);
+                chunkErrors.add(ImportError.of(line.number(), WRITE_FAILED));
+            }
+        }
+
+        private void complete(ParsedLine line, Optional<Subscription> subscription, List<ImportError> chunkErrors) {
+            if (subscription.isPresent()) {
+                imported++;
+            } else {
+                chunkErrors.add(ImportError.of(line.number(), PROVIDER_CONFLICT));
+            }
+        }
+
+        /**
+         * Rethrows the failure of a worker, preferring it to the interruptions of the workers stopped after it.
+         */
+        @SneakyThrows
+        private void await(List<Future<Void>> workers) throws InterruptedException {
+            Throwable failure = null;
+            for (var worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if (failure == null || failure instanceof InterruptedException) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @SneakyThrows
+        private void await(Future<?> reader) throws InterruptedException {
+            try {
+                reader.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        private ExecutorService newExecutor() {
+            var threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(parallelism + 1, runnable -> {
+                var thread = new Thread(runnable, "subscription-import-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private record Line(long number, String text, boolean truncated) {
+    }
+
+    private record Chunk(long sequence, List<Line> lines) {
+    }
+
+    private record ParsedLine(long number, Subscription subscription) {
+    }
+
+    private record ParsedChunk(long sequence, List<ParsedLine> lines, List<ImportError> errors) {
+    }
+}
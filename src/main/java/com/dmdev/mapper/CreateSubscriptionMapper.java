@@ -19,12 +19,11 @@ public class CreateSubscriptionMapper implements Mapper<CreateSubscriptionDto, S
 
     @Override
     public Subscription map(CreateSubscriptionDto object) {
-        return Subscription.builder()
-                .userId(object.getUserId())
-                .name(object.getName())
-                .provider(Provider.findByNameOpt(object.getProvider()).orElse(null))
-                .expirationDate(object.getExpirationDate())
-                .status(Status.ACTIVE)
-                .build();
+        return new Subscription()
+                .setUserId(object.getUserId())
+                .setName(object.getName())
+                .setProvider(Provider.findByNameOpt(object.getProvider()).orElse(null))
+                .setExpirationDate(object.getExpirationDate())
+                .setStatus(Status.ACTIVE);
     }
 }
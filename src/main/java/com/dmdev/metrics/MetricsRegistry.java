@@ -0,0 +1,53 @@
+package com.dmdev.metrics;
+
+import lombok.experimental.UtilityClass;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of {@link OperationMetrics}. Every operation is also exposed as a JMX MBean
+ * named {@code com.dmdev:type=OperationMetrics,name=<operation>}.
+ */
+@UtilityClass
+public class MetricsRegistry {
+
+    private static final System.Logger LOG = System.getLogger(MetricsRegistry.class.getName());
+    private static final String OBJECT_NAME_PATTERN = "com.dmdev:type=OperationMetrics,name=%s";
+
+    private static final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    public static OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, MetricsRegistry::register);
+    }
+
+    public static List<OperationSnapshot> snapshot() {
+        return operations.values().stream()
+                .map(OperationMetrics::snapshot)
+                .sorted(Comparator.comparing(OperationSnapshot::getName))
+                .toList();
+    }
+
+    public static ObjectName objectName(String operationName) throws JMException {
+        return new ObjectName(String.format(OBJECT_NAME_PATTERN, ObjectName.quote(operationName)));
+    }
+
+    private static OperationMetrics register(String name) {
+        var operationMetrics = new OperationMetrics(name);
+        try {
+            var mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            var objectName = objectName(name);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(operationMetrics, objectName);
+            }
+        } catch (JMException e) {
+            LOG.log(System.Logger.Level.WARNING, "Could not register MBean for operation " + name, e);
+        }
+        return operationMetrics;
+    }
+}
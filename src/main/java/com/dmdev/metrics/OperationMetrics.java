@@ -0,0 +1,119 @@
+package com.dmdev.metrics;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Call count, error count by exception type and latency histogram of one operation.
+ * Obtain instances from {@link MetricsRegistry#operation(String)} and keep them in static fields.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    @Getter
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errorCount = new LongAdder();
+    private final Map<String, LongAdder> errorCountByType = new ConcurrentHashMap<>();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records the latency of the operation, and its error if it fails with any exception, including checked ones
+     * such as {@link java.sql.SQLException} thrown undeclared through {@link lombok.SneakyThrows}.
+     */
+    public <T> T record(Supplier<T> operation) {
+        var start = System.nanoTime();
+        try {
+            var result = operation.get();
+            latencies.record(System.nanoTime() - start);
+            return result;
+        } catch (Throwable e) {
+            recordFailure(start, e);
+            throw e;
+        }
+    }
+
+    public void record(Runnable operation) {
+        record(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    private void recordFailure(long start, Throwable throwable) {
+        latencies.record(System.nanoTime() - start);
+        errorCount.increment();
+        errorCountByType.computeIfAbsent(throwable.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    public OperationSnapshot snapshot() {
+        return OperationSnapshot.builder()
+                .name(name)
+                .count(latencies.getCount())
+                .errorCount(errorCount.sum())
+                .errorCountByType(getErrorCountByType())
+                .meanNanos(latencies.getMean())
+                .p50Nanos(latencies.getValueAtPercentile(50))
+                .p90Nanos(latencies.getValueAtPercentile(90))
+                .p99Nanos(latencies.getValueAtPercentile(99))
+                .p999Nanos(latencies.getValueAtPercentile(99.9))
+                .maxNanos(latencies.getMax())
+                .build();
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCountByType() {
+        Map<String, Long> result = new TreeMap<>();
+        errorCountByType.forEach((type, count) -> result.put(type, count.sum()));
+        return result;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latencies.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencies.getValueAtPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return latencies.getValueAtPercentile(90) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencies.getValueAtPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencies.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latencies.getMax() / NANOS_PER_MICRO;
+    }
+}
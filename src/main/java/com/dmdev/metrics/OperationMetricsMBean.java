@@ -0,0 +1,24 @@
+package com.dmdev.metrics;
+
+import java.util.Map;
+
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    Map<String, Long> getErrorCountByType();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,24 @@
+package com.dmdev.metrics;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Point-in-time copy of {@link OperationMetrics}. Latencies are in nanoseconds.
+ */
+@Value
+@Builder
+public class OperationSnapshot {
+    String name;
+    long count;
+    long errorCount;
+    Map<String, Long> errorCountByType;
+    double meanNanos;
+    long p50Nanos;
+    long p90Nanos;
+    long p99Nanos;
+    long p999Nanos;
+    long maxNanos;
+}
@@ -0,0 +1,99 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.PropertiesUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade over {@link SubscriptionService}.
+ * <p>
+ * At most {@code maxInFlight} operations run at the same time, which should match the connection pool size.
+ * Beyond that, calls fail immediately with {@link RejectedExecutionException} instead of queueing,
+ * so callers can shed load while the database is saturated.
+ */
+public class AsyncSubscriptionService implements AutoCloseable {
+
+    private static final String MAX_IN_FLIGHT_KEY = "subscription.async.max-in-flight";
+    private static final String POOL_MAX_SIZE_KEY = "db.pool.max-size";
+
+    private final SubscriptionService subscriptionService;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    public AsyncSubscriptionService(SubscriptionService subscriptionService, ExecutorService executor, int maxInFlight) {
+        this.subscriptionService = subscriptionService;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Creates the facade with {@code subscription.async.max-in-flight} permits (the pool size by default),
+     * running on virtual threads when the JDK has them and on a platform thread per permit otherwise.
+     */
+    public static AsyncSubscriptionService create(SubscriptionService subscriptionService) {
+        var maxInFlight = PropertiesUtil.getInt(MAX_IN_FLIGHT_KEY, PropertiesUtil.getInt(POOL_MAX_SIZE_KEY, 10));
+        return new AsyncSubscriptionService(subscriptionService, newExecutor(maxInFlight), maxInFlight);
+    }
+
+    public CompletableFuture<Subscription> upsertAsync(CreateSubscriptionDto dto) {
+        return submit(() -> subscriptionService.upsert(dto));
+    }
+
+    public CompletableFuture<Void> cancelAsync(Integer subscriptionId) {
+        return submit(() -> {
+            subscriptionService.cancel(subscriptionId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> expireAsync(Integer subscriptionId) {
+        return submit(() -> {
+            subscriptionService.expire(subscriptionId);
+            return null;
+        });
+    }
+
+    public int getAvailablePermits() {
+        return inFlight.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many subscription operations in flight"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(operation, executor)
+                    .whenComplete((result, throwable) -> inFlight.release());
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static ExecutorService newExecutor(int maxInFlight) {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // permits already bound the number of submitted tasks, so the pool queue never grows past maxInFlight
+            return Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                var thread = new Thread(runnable, "subscription-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.util.TimingWheel;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires subscriptions at their expiration date without polling the whole table.
+ * <p>
+ * Active subscriptions expiring before the {@link TimingWheel#horizon() horizon} of a timing wheel are loaded into it
+ * from the database; later ones are only loaded once the wheel's horizon moves past them. Every tick fires the due
+ * subscriptions and expires them in batches with {@link SubscriptionDao#expireDue}, which skips ids whose
+ * subscription has been extended or cancelled in the meantime.
+ * <p>
+ * Registered as a {@link SubscriptionListener}, the scheduler follows upserts, updates and cancellations made through
+ * {@link SubscriptionService}, including those coalesced by {@link UpsertCoalescer}. Writes of other processes are
+ * only seen when their range is loaded, so {@link ExpirationSweepJob} should keep running as a rare safety net.
+ * It also expires the subscriptions that were already overdue when the scheduler started, as the first load only
+ * covers the range from then to the horizon.
+ */
+public class ExpirationScheduler implements SubscriptionListener, AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(ExpirationScheduler.class.getName());
+
+    private static final String TICK_KEY = "subscription.expiration.tick-ms";
+    private static final String WHEEL_SIZE_KEY = "subscription.expiration.wheel-size";
+    private static final String WHEEL_LEVELS_KEY = "subscription.expiration.wheel-levels";
+    private static final String BATCH_SIZE_KEY = "subscription.expiration.batch-size";
+
+    private final SubscriptionDao subscriptionDao;
+    private final Clock clock;
+    private final Duration tick;
+    private final int batchSize;
+    private final TimingWheel timingWheel;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "expiration-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Instant loadedUntil;
+
+    public ExpirationScheduler(SubscriptionDao subscriptionDao,
+                               Clock clock,
+                               Duration tick,
+                               int wheelSize,
+                               int wheelLevels,
+                               int batchSize) {
+        this.subscriptionDao = subscriptionDao;
+        this.clock = clock;
+        this.tick = tick;
+        this.batchSize = batchSize;
+        var now = Instant.now(clock);
+        this.timingWheel = new TimingWheel(tick, wheelSize, wheelLevels, now);
+        // subscriptions already overdue at startup are left to the overdue sweep instead of being loaded from 1970
+        this.loadedUntil = now;
+    }
+
+    /**
+     * Creates the scheduler configured by the {@code subscription.expiration.*} properties.
+     * With the defaults, a second-long tick and three levels of 64 buckets keep about three days in memory.
+     */
+    public static ExpirationScheduler create(SubscriptionDao subscriptionDao, Clock clock) {
+        return new ExpirationScheduler(
+                subscriptionDao,
+                clock,
+                Duration.ofMillis(PropertiesUtil.getInt(TICK_KEY, 1000)),
+                PropertiesUtil.getInt(WHEEL_SIZE_KEY, 64),
+                PropertiesUtil.getInt(WHEEL_LEVELS_KEY, 3),
+                PropertiesUtil.getInt(BATCH_SIZE_KEY, 500));
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::run, 0, tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Expires the subscriptions that are due and loads the ones that came within the horizon.
+     * Overdue subscriptions found by a load, as well as batches that failed, are expired on the next tick.
+     *
+     * @return the number of expired subscriptions
+     */
+    public int tick() {
+        var now = Instant.now(clock);
+        List<Integer> dueIds = new ArrayList<>();
+        synchronized (this) {
+            timingWheel.advance(now, dueIds::add);
+        }
+        var expired = 0;
+        for (int from = 0; from < dueIds.size(); from += batchSize) {
+            var batch = dueIds.subList(from, Math.min(from + batchSize, dueIds.size()));
+            try {
+                expired += subscriptionDao.expireDue(batch, now);
+            } catch (Exception e) {
+                // SQLException is thrown undeclared by the DAO, and the batch is no longer in the wheel
+                LOG.log(System.Logger.Level.WARNING, "Failed to expire " + batch.size() + " subscriptions", e);
+                reschedule(batch, now);
+            }
+        }
+        loadUpcoming();
+        return expired;
+    }
+
+    @Override
+    public synchronized void onSaved(Subscription subscription) {
+        if (subscription.getStatus() == Status.ACTIVE && subscription.getExpirationDate().isBefore(loadedUntil)) {
+            timingWheel.schedule(subscription.getId(), subscription.getExpirationDate());
+        } else {
+            timingWheel.cancel(subscription.getId());
+        }
+    }
+
+    @Override
+    public synchronized void onCanceled(Integer subscriptionId) {
+        timingWheel.cancel(subscriptionId);
+    }
+
+    @Override
+    public synchronized void onExpired(Integer subscriptionId) {
+        timingWheel.cancel(subscriptionId);
+    }
+
+    public synchronized int getScheduledCount() {
+        return timingWheel.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            var expired = tick();
+            if (expired > 0) {
+                LOG.log(System.Logger.Level.DEBUG, "Expired {0} subscriptions", expired);
+            }
+        } catch (Exception e) {
+            // an exception escaping run() would silently cancel every later tick
+            LOG.log(System.Logger.Level.WARNING, "Expiration tick failed", e);
+        }
+    }
+
+    /**
+     * Loads the range between the last loaded instant and the current horizon, which only moves once per
+     * top-level bucket. Listeners are blocked meanwhile, so a change committed while the range is read
+     * can't be overwritten by its outdated row.
+     */
+    private synchronized void loadUpcoming() {
+        var until = timingWheel.horizon();
+        if (!until.isAfter(loadedUntil)) {
+            return;
+        }
+        try (var subscriptions = subscriptionDao.streamActiveExpiringBetween(loadedUntil, until)) {
+            subscriptions.forEach(subscription -> timingWheel.schedule(subscription.getId(), subscription.getExpirationDate()));
+        }
+        loadedUntil = until;
+    }
+
+    private synchronized void reschedule(List<Integer> ids, Instant now) {
+        ids.forEach(id -> timingWheel.schedule(id, now));
+    }
+}
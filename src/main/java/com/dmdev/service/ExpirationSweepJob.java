@@ -0,0 +1,45 @@
+package com.dmdev.service;
+
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically runs {@link SubscriptionService#expireOverdue()}.
+ * A failed sweep is logged and retried on the next run instead of cancelling the schedule.
+ */
+@RequiredArgsConstructor
+public class ExpirationSweepJob implements Runnable, AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(ExpirationSweepJob.class.getName());
+
+    private final SubscriptionService subscriptionService;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "expiration-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void start(Duration period) {
+        executor.scheduleWithFixedDelay(this, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        try {
+            var expired = subscriptionService.expireOverdue();
+            LOG.log(System.Logger.Level.INFO, "Expired {0} overdue subscriptions", expired);
+        } catch (Exception e) {
+            // an exception escaping run() would silently cancel every later run, SQLException included
+            LOG.log(System.Logger.Level.WARNING, "Expiration sweep failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,70 @@
+package com.dmdev.service;
+
+import com.dmdev.exception.OptimisticLockException;
+import com.dmdev.util.PropertiesUtil;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries an action that lost an optimistic locking race, up to {@code maxAttempts} attempts in total.
+ * Attempts are separated by a random delay of up to {@code backoff} times the attempt number,
+ * so competing writers don't collide again in lockstep.
+ */
+public class RetryPolicy {
+
+    private static final String MAX_ATTEMPTS_KEY = "subscription.retry.max-attempts";
+    private static final String BACKOFF_KEY = "subscription.retry.backoff-ms";
+
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    public RetryPolicy(int maxAttempts, Duration backoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = backoff.toNanos();
+    }
+
+    /**
+     * Creates the policy configured by the {@code subscription.retry.*} properties.
+     */
+    public static RetryPolicy create() {
+        return new RetryPolicy(
+                PropertiesUtil.getInt(MAX_ATTEMPTS_KEY, 3),
+                Duration.ofMillis(PropertiesUtil.getInt(BACKOFF_KEY, 10)));
+    }
+
+    /**
+     * Runs the action, repeating it while it throws {@link OptimisticLockException}.
+     *
+     * @throws OptimisticLockException from the last attempt if every attempt conflicted
+     */
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockException e) {
+                if (attempt == maxAttempts) {
+                    throw e;
+                }
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private void backOff(int attempt, OptimisticLockException conflict) {
+        if (backoffNanos == 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoffNanos * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dmdev.service;
+
+import com.dmdev.entity.Subscription;
+
+/**
+ * Callbacks of {@link SubscriptionService}, invoked on the calling thread after each successful write.
+ */
+public interface SubscriptionListener {
+
+    default void onSaved(Subscription subscription) {
+    }
+
+    default void onCanceled(Integer subscriptionId) {
+    }
+
+    default void onExpired(Integer subscriptionId) {
+    }
+}
@@ -2,62 +2,162 @@ package com.dmdev.service;
 
 import com.dmdev.dao.SubscriptionDao;
 import com.dmdev.dto.CreateSubscriptionDto;
-import com.dmdev.entity.Provider;
-import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
 import com.dmdev.exception.SubscriptionException;
 import com.dmdev.exception.ValidationException;
 import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.OperationMetrics;
+import com.dmdev.util.PropertiesUtil;
 import com.dmdev.validator.CreateSubscriptionValidator;
 import lombok.RequiredArgsConstructor;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 public class SubscriptionService {
 
+    private static final String EXPIRATION_CHUNK_SIZE_KEY = "subscription.expiration.chunk-size";
+
+    private static final OperationMetrics UPSERT_METRICS = MetricsRegistry.operation("SubscriptionService.upsert");
+    private static final OperationMetrics UPSERT_ALL_METRICS = MetricsRegistry.operation("SubscriptionService.upsertAll");
+    private static final OperationMetrics UPDATE_METRICS = MetricsRegistry.operation("SubscriptionService.update");
+    private static final OperationMetrics CANCEL_METRICS = MetricsRegistry.operation("SubscriptionService.cancel");
+    private static final OperationMetrics EXPIRE_METRICS = MetricsRegistry.operation("SubscriptionService.expire");
+    private static final OperationMetrics EXPIRE_OVERDUE_METRICS = MetricsRegistry.operation("SubscriptionService.expireOverdue");
+
     private final SubscriptionDao subscriptionDao;
     private final CreateSubscriptionMapper createSubscriptionMapper;
     private final CreateSubscriptionValidator createSubscriptionValidator;
     private final Clock clock;
+    private final int expirationChunkSize = PropertiesUtil.getInt(EXPIRATION_CHUNK_SIZE_KEY, 1000);
+    private final RetryPolicy retryPolicy = RetryPolicy.create();
+    private final List<SubscriptionListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(SubscriptionListener listener) {
+        listeners.add(listener);
+    }
 
     public Subscription upsert(CreateSubscriptionDto dto) {
+        return UPSERT_METRICS.record(() -> save(toSubscription(dto))
+                .orElseThrow(() -> providerConflict(dto)));
+    }
+
+    /**
+     * Validates the request and maps it to the subscription {@link #upsert(CreateSubscriptionDto)} writes.
+     *
+     * @throws ValidationException if the request is invalid
+     */
+    Subscription toSubscription(CreateSubscriptionDto dto) {
         var validationResult = createSubscriptionValidator.validate(dto);
         if (validationResult.hasErrors()) {
             throw new ValidationException(validationResult.getErrors());
         }
+        return createSubscriptionMapper.map(dto);
+    }
 
-        Subscription subscription = subscriptionDao.findByUserId(dto.getUserId()).stream()
-                .filter(existingSubscription -> existingSubscription.getName().equals(dto.getName()))
-                .filter(existingSubscription -> existingSubscription.getProvider() == Provider.findByName(dto.getProvider()))
-                .findFirst()
-                .map(existingSubscription -> existingSubscription
-                        .setExpirationDate(dto.getExpirationDate())
-                        .setStatus(Status.ACTIVE))
-                .orElseGet(() -> createSubscriptionMapper.map(dto));
+    /**
+     * Same as {@link #upsert(CreateSubscriptionDto)} for a request already mapped by {@link #toSubscription}.
+     *
+     * @return the resulting row, or an empty optional if the user's subscription with the same name
+     * belongs to another provider
+     */
+    Optional<Subscription> upsertMapped(Subscription subscription) {
+        return UPSERT_METRICS.record(() -> save(subscription));
+    }
 
-        return subscriptionDao.upsert(subscription);
+    /**
+     * Upserts subscriptions mapped by {@link #toSubscription} in one transaction, through
+     * {@link SubscriptionDao#upsertAllByUserIdAndName(List)}. Listeners are told about every saved subscription
+     * once the transaction has committed.
+     *
+     * @return resulting rows in the order of the given subscriptions, empty where the user's subscription with
+     * the same name belongs to another provider
+     */
+    List<Optional<Subscription>> upsertAllMapped(List<Subscription> subscriptions) {
+        return UPSERT_ALL_METRICS.record(() -> {
+            var upserted = subscriptionDao.upsertAllByUserIdAndName(subscriptions);
+            upserted.forEach(subscription -> subscription.ifPresent(this::notifySaved));
+            return upserted;
+        });
+    }
+
+    /**
+     * Applies {@code change} to the current state of the subscription and saves it. If another write wins the
+     * version check in between, the change is re-applied to fresh state as allowed by the retry policy.
+     * The state is read from the primary, as a lagging replica would make every attempt lose the version check.
+     *
+     * @throws com.dmdev.exception.OptimisticLockException if every attempt lost to a concurrent write
+     */
+    public Subscription update(Integer subscriptionId, Consumer<Subscription> change) {
+        return UPDATE_METRICS.record(() -> {
+            var updated = retryPolicy.execute(() -> {
+                var subscription = subscriptionDao.findByIdOnPrimary(subscriptionId)
+                        .orElseThrow(IllegalArgumentException::new);
+                change.accept(subscription);
+                return subscriptionDao.update(subscription);
+            });
+            notifySaved(updated);
+            return updated;
+        });
     }
 
     public void cancel(Integer subscriptionId) {
-        var subscription = subscriptionDao.findById(subscriptionId)
-                .orElseThrow(IllegalArgumentException::new);
-        if (subscription.getStatus() != Status.ACTIVE) {
-            throw new SubscriptionException(String.format("Only active subscription %d can be canceled", subscriptionId));
-        }
-        subscription.setStatus(Status.CANCELED);
-        subscriptionDao.update(subscription);
+        CANCEL_METRICS.record(() -> {
+            if (!subscriptionDao.cancel(subscriptionId)) {
+                throw transitionFailure(subscriptionId,
+                        String.format("Only active subscription %d can be canceled", subscriptionId));
+            }
+            listeners.forEach(listener -> listener.onCanceled(subscriptionId));
+        });
     }
 
     public void expire(Integer subscriptionId) {
-        var subscription = subscriptionDao.findById(subscriptionId)
-                .orElseThrow(IllegalArgumentException::new);
-        if (subscription.getStatus() == Status.EXPIRED) {
-            throw new SubscriptionException(String.format("Subscription %d has already expired", subscriptionId));
-        }
-        subscription.setStatus(Status.EXPIRED);
-        subscription.setExpirationDate(Instant.now(clock));
-        subscriptionDao.update(subscription);
+        EXPIRE_METRICS.record(() -> {
+            if (!subscriptionDao.expire(subscriptionId, Instant.now(clock))) {
+                throw transitionFailure(subscriptionId,
+                        String.format("Subscription %d has already expired", subscriptionId));
+            }
+            listeners.forEach(listener -> listener.onExpired(subscriptionId));
+        });
+    }
+
+    /**
+     * Expires all active subscriptions that are past their expiration date.
+     *
+     * @return the number of expired subscriptions
+     */
+    public int expireOverdue() {
+        return EXPIRE_OVERDUE_METRICS.record(() -> subscriptionDao.expireOverdue(Instant.now(clock), expirationChunkSize));
+    }
+
+    /**
+     * Tells a missing subscription from one in the wrong state after a conditional update changed nothing.
+     * Reads the primary, where the update ran, so a subscription just created isn't reported as missing.
+     */
+    private RuntimeException transitionFailure(Integer subscriptionId, String wrongStateMessage) {
+        return subscriptionDao.existsByIdOnPrimary(subscriptionId)
+                ? new SubscriptionException(wrongStateMessage)
+                : new IllegalArgumentException();
+    }
+
+    private Optional<Subscription> save(Subscription subscription) {
+        var upserted = subscriptionDao.upsertByUserIdAndName(subscription);
+        upserted.ifPresent(this::notifySaved);
+        return upserted;
+    }
+
+    private void notifySaved(Subscription subscription) {
+        listeners.forEach(listener -> listener.onSaved(subscription));
+    }
+
+    static SubscriptionException providerConflict(CreateSubscriptionDto dto) {
+        return new SubscriptionException(String.format(
+                "Subscription %s of user %d belongs to another provider", dto.getName(), dto.getUserId()));
     }
 }
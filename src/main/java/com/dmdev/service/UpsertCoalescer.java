@@ -0,0 +1,179 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.ValidationException;
+import com.dmdev.util.PropertiesUtil;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for {@link SubscriptionService#upsert(CreateSubscriptionDto)}.
+ * <p>
+ * Upserts submitted concurrently are collected for up to {@code window} or {@code maxBatchSize} requests and
+ * written in one transaction through {@link SubscriptionService#upsertAllMapped(List)}. If that transaction
+ * fails, the batch is retried one upsert at a time, so every caller gets its own result or error.
+ * Validation runs on the calling thread, so invalid requests never wait for a flush. Writes go through the service,
+ * so its listeners and metrics see coalesced upserts like any other.
+ */
+public class UpsertCoalescer implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(UpsertCoalescer.class.getName());
+
+    private static final String WINDOW_KEY = "subscription.coalescing.window-ms";
+    private static final String MAX_BATCH_SIZE_KEY = "subscription.coalescing.max-batch-size";
+    private static final String QUEUE_CAPACITY_KEY = "subscription.coalescing.queue-capacity";
+
+    private final SubscriptionService subscriptionService;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingUpsert> pendingUpserts;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public UpsertCoalescer(SubscriptionService subscriptionService,
+                           Duration window,
+                           int maxBatchSize,
+                           int queueCapacity) {
+        this.subscriptionService = subscriptionService;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.pendingUpserts = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "upsert-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Creates the coalescer configured by the {@code subscription.coalescing.*} properties.
+     */
+    public static UpsertCoalescer create(SubscriptionService subscriptionService) {
+        var maxBatchSize = PropertiesUtil.getInt(MAX_BATCH_SIZE_KEY, 100);
+        return new UpsertCoalescer(
+                subscriptionService,
+                Duration.ofMillis(PropertiesUtil.getInt(WINDOW_KEY, 2)),
+                maxBatchSize,
+                PropertiesUtil.getInt(QUEUE_CAPACITY_KEY, maxBatchSize * 16));
+    }
+
+    public CompletableFuture<Subscription> upsert(CreateSubscriptionDto dto) {
+        Subscription subscription;
+        try {
+            subscription = subscriptionService.toSubscription(dto);
+        } catch (ValidationException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var pendingUpsert = new PendingUpsert(dto, subscription, new CompletableFuture<>());
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Upsert coalescer is closed"));
+        }
+        if (!pendingUpserts.offer(pendingUpsert)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Upsert queue is full"));
+        }
+        // close() may have drained the queue between the check above and the offer; if nobody took the upsert,
+        // it would never complete
+        if (closed && pendingUpserts.remove(pendingUpsert)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Upsert coalescer is closed"));
+        }
+        return pendingUpsert.result();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingUpsert pendingUpsert;
+        while ((pendingUpsert = pendingUpserts.poll()) != null) {
+            reject(pendingUpsert);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingUpsert> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(UpsertCoalescer::reject);
+                return;
+            }
+            try {
+                flush(batch);
+            } catch (Throwable e) {
+                LOG.log(System.Logger.Level.ERROR, "Flushing upserts failed", e);
+                batch.forEach(pendingUpsert -> pendingUpsert.result().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void collectBatch(List<PendingUpsert> batch) throws InterruptedException {
+        batch.add(pendingUpserts.take());
+        var deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            pendingUpserts.drainTo(batch, maxBatchSize - batch.size());
+            var remaining = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || remaining <= 0) {
+                return;
+            }
+            var next = pendingUpserts.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingUpsert> batch) {
+        List<Optional<Subscription>> subscriptions;
+        try {
+            subscriptions = subscriptionService.upsertAllMapped(batch.stream()
+                    .map(PendingUpsert::subscription)
+                    .toList());
+        } catch (Exception e) {
+            // DAO methods throw SQLException undeclared, so it has to be caught as Exception
+            LOG.log(System.Logger.Level.DEBUG, "Batched upsert failed, retrying one by one", e);
+            batch.forEach(this::flushOne);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), subscriptions.get(i));
+        }
+    }
+
+    private void flushOne(PendingUpsert pendingUpsert) {
+        try {
+            complete(pendingUpsert, subscriptionService.upsertMapped(pendingUpsert.subscription()));
+        } catch (Exception e) {
+            pendingUpsert.result().completeExceptionally(e);
+        }
+    }
+
+    private static void complete(PendingUpsert pendingUpsert, Optional<Subscription> subscription) {
+        subscription.ifPresentOrElse(
+                pendingUpsert.result()::complete,
+                () -> pendingUpsert.result().completeExceptionally(SubscriptionService.providerConflict(pendingUpsert.dto())));
+    }
+
+    private static void reject(PendingUpsert pendingUpsert) {
+        pendingUpsert.result().completeExceptionally(new RejectedExecutionException("Upsert coalescer is closed"));
+    }
+
+    private record PendingUpsert(CreateSubscriptionDto dto,
+                                 Subscription subscription,
+                                 CompletableFuture<Subscription> result) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.dmdev.util;
+
+import lombok.Value;
+
+@Value
+public class CacheStats {
+    long hitCount;
+    long missCount;
+    long evictionCount;
+
+    public double hitRate() {
+        var requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
@@ -5,6 +5,9 @@ import lombok.experimental.UtilityClass;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
 
 @UtilityClass
 public class ConnectionManager {
@@ -13,9 +16,30 @@ public class ConnectionManager {
     private static final String USER_KEY = "db.user";
     private static final String PASSWORD_KEY = "db.password";
     private static final String DRIVER_KEY = "db.driver";
+    private static final String POOL_MIN_SIZE_KEY = "db.pool.min-size";
+    private static final String POOL_MAX_SIZE_KEY = "db.pool.max-size";
+    private static final String POOL_ACQUIRE_TIMEOUT_KEY = "db.pool.acquire-timeout-ms";
+    private static final String POOL_IDLE_TIMEOUT_KEY = "db.pool.idle-timeout-ms";
+    private static final String POOL_LEAK_DETECTION_THRESHOLD_KEY = "db.pool.leak-detection-threshold-ms";
+    private static final String POOL_VALIDATION_TIMEOUT_KEY = "db.pool.validation-timeout-s";
+    private static final String POOL_STATEMENT_CACHE_SIZE_KEY = "db.pool.statement-cache-size";
+    private static final String REPLICA_URLS_KEY = "db.replica.urls";
+    private static final String REPLICA_SELECTION_KEY = "db.replica.selection";
+    private static final String REPLICA_HEALTH_CHECK_INTERVAL_KEY = "db.replica.health-check-interval-ms";
+
+    private static final ConnectionPool pool;
+    private static final ReplicaRouter replicaRouter;
 
     static {
         loadDriver();
+        pool = createPool(PropertiesUtil.get(URL_KEY));
+        replicaRouter = createReplicaRouter();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pool.close();
+            if (replicaRouter != null) {
+                replicaRouter.close();
+            }
+        }, "connection-pool-shutdown"));
     }
 
     @SneakyThrows
@@ -23,11 +47,84 @@ public class ConnectionManager {
         Class.forName(PropertiesUtil.get(DRIVER_KEY));
     }
 
-    @SneakyThrows
-    public static Connection get() {
+    /**
+     * Creates a pool of connections to the given database, configured and authenticated like the primary one.
+     */
+    public static ConnectionPool createPool(String url) {
+        return ConnectionPool.builder()
+                .connectionFactory(() -> open(url))
+                .minSize(PropertiesUtil.getInt(POOL_MIN_SIZE_KEY, 2))
+                .maxSize(PropertiesUtil.getInt(POOL_MAX_SIZE_KEY, 10))
+                .acquireTimeout(Duration.ofMillis(PropertiesUtil.getInt(POOL_ACQUIRE_TIMEOUT_KEY, 30_000)))
+                .idleTimeout(Duration.ofMillis(PropertiesUtil.getInt(POOL_IDLE_TIMEOUT_KEY, 600_000)))
+                .leakDetectionThreshold(Duration.ofMillis(PropertiesUtil.getInt(POOL_LEAK_DETECTION_THRESHOLD_KEY, 0)))
+                .validationTimeoutSeconds(PropertiesUtil.getInt(POOL_VALIDATION_TIMEOUT_KEY, 5))
+                .statementCacheSize(PropertiesUtil.getInt(POOL_STATEMENT_CACHE_SIZE_KEY, 64))
+                .build();
+    }
+
+    /**
+     * Creates a pool per URL of {@code db.replica.urls}, configured like the primary one.
+     *
+     * @return the router over the replica pools, or {@code null} if no replica is configured
+     */
+    private static ReplicaRouter createReplicaRouter() {
+        var urls = PropertiesUtil.get(REPLICA_URLS_KEY);
+        if (urls == null || urls.isBlank()) {
+            return null;
+        }
+        var pools = Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(ConnectionManager::createPool)
+                .toList();
+        var selection = PropertiesUtil.get(REPLICA_SELECTION_KEY);
+        return ReplicaRouter.builder()
+                .primary(ConnectionManager::get)
+                .pools(pools)
+                .selection(selection == null || selection.isBlank()
+                        ? ReplicaRouter.Selection.ROUND_ROBIN
+                        : ReplicaRouter.Selection.findByName(selection)
+                                .orElseThrow(() -> new IllegalArgumentException("Unknown replica selection: " + selection)))
+                .healthCheckInterval(Duration.ofMillis(PropertiesUtil.getInt(REPLICA_HEALTH_CHECK_INTERVAL_KEY, 5000)))
+                .validationTimeoutSeconds(PropertiesUtil.getInt(POOL_VALIDATION_TIMEOUT_KEY, 5))
+                .build();
+    }
+
+    private static Connection open(String url) throws SQLException {
         return DriverManager.getConnection(
-                PropertiesUtil.get(URL_KEY),
+                url,
                 PropertiesUtil.get(USER_KEY),
                 PropertiesUtil.get(PASSWORD_KEY));
     }
+
+    /**
+     * Returns the connection of the current {@link TransactionManager} transaction, if there is one,
+     * or borrows a connection from the pool otherwise.
+     */
+    public static Connection get() {
+        return get(pool);
+    }
+
+    /**
+     * Same as {@link #get()} for another pool, such as the one of a shard.
+     */
+    @SneakyThrows
+    public static Connection get(ConnectionPool connectionPool) {
+        var transactionConnection = TransactionManager.currentConnection(connectionPool);
+        return transactionConnection != null ? transactionConnection : connectionPool.borrow();
+    }
+
+    /**
+     * Same as {@link #get()}, but outside of a transaction the connection goes to a read replica, if one is configured
+     * and healthy. Replicas may lag behind, so only reads that tolerate slightly stale data should use it.
+     */
+    @SneakyThrows
+    public static Connection getForRead() {
+        return replicaRouter != null ? replicaRouter.borrow() : get();
+    }
+
+    public static ConnectionPool getPool() {
+        return pool;
+    }
 }
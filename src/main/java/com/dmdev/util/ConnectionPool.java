@@ -0,0 +1,558 @@
+package com.dmdev.util;
+
+import lombok.Builder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.sql.ResultSet.CONCUR_READ_ONLY;
+import static java.sql.ResultSet.TYPE_FORWARD_ONLY;
+import static java.sql.Statement.NO_GENERATED_KEYS;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ * <p>
+ * Borrowed connections are proxies: {@link Connection#close()} returns the physical connection to the pool
+ * instead of closing it. Idle connections above {@code minSize} are evicted after {@code idleTimeout},
+ * and connections held longer than {@code leakDetectionThreshold} are reported with the borrowing stack trace.
+ * Returned connections have uncommitted work rolled back, and auto-commit, read-only, transaction isolation, catalog
+ * and schema restored to what they were when the connection was opened.
+ * <p>
+ * With a positive {@code statementCacheSize}, every physical connection keeps up to that many prepared statements
+ * in an LRU cache keyed by SQL. Closing a cached statement returns it to the cache with its parameters and batch
+ * cleared; other settings such as the fetch size stay as the last user left them.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(ConnectionPool.class.getName());
+
+    private static final Set<String> SESSION_SETTERS = Set.of("setReadOnly", "setTransactionIsolation", "setCatalog", "setSchema");
+    /**
+     * Connections returned to the pool more recently than this are handed out without a validation round trip.
+     */
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final ConnectionFactory connectionFactory;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long leakDetectionThresholdNanos;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private volatile boolean closed;
+
+    @Builder
+    private ConnectionPool(ConnectionFactory connectionFactory,
+                           int minSize,
+                           int maxSize,
+                           Duration acquireTimeout,
+                           Duration idleTimeout,
+                           Duration leakDetectionThreshold,
+                           Duration housekeepingPeriod,
+                           int validationTimeoutSeconds,
+                           int statementCacheSize) {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException(String.format("Invalid pool size: min %d, max %d", minSize, maxSize));
+        }
+        this.connectionFactory = connectionFactory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout == null ? 0 : idleTimeout.toNanos();
+        this.leakDetectionThresholdNanos = leakDetectionThreshold == null ? 0 : leakDetectionThreshold.toNanos();
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinSize();
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = housekeepingPeriod == null ? Duration.ofSeconds(1) : housekeepingPeriod;
+        housekeeper.scheduleAtFixedRate(this::housekeep, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        acquirePermit();
+        try {
+            var pooledConnection = pollValidIdleConnection();
+            if (pooledConnection == null) {
+                pooledConnection = openConnection();
+            }
+            pooledConnection.borrowedAt = System.nanoTime();
+            pooledConnection.borrowSite = leakDetectionThresholdNanos > 0 ? new Throwable("Connection borrowed here") : null;
+            pooledConnection.leakReported = false;
+            borrowedConnections.add(pooledConnection);
+            return pooledConnection.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return borrowedConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Prepared statement cache statistics summed over all connections this pool has opened.
+     */
+    public CacheStats getStatementCacheStats() {
+        return new CacheStats(statementCacheHits.sum(), statementCacheMisses.sum(), statementCacheEvictions.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            closeQuietly(pooledConnection);
+        }
+    }
+
+    private void acquirePermit() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ConnectionUnavailableException(String.format(
+                        "Timed out after %d ms waiting for a connection (active %d, max %d)",
+                        TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos), getActiveCount(), maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionUnavailableException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    private PooledConnection pollValidIdleConnection() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            if (isValid(pooledConnection)) {
+                return pooledConnection;
+            }
+            closeQuietly(pooledConnection);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooledConnection) {
+        if (System.nanoTime() - pooledConnection.lastReturnedAt < VALIDATION_BYPASS_NANOS) {
+            return true;
+        }
+        try {
+            return pooledConnection.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        borrowedConnections.remove(pooledConnection);
+        try {
+            if (closed || !reset(pooledConnection)) {
+                closeQuietly(pooledConnection);
+            } else {
+                pooledConnection.lastReturnedAt = System.nanoTime();
+                idleConnections.offerFirst(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection pooledConnection) {
+        try {
+            var physical = pooledConnection.physical;
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (pooledConnection.sessionChanged) {
+                physical.setReadOnly(pooledConnection.defaultReadOnly);
+                physical.setTransactionIsolation(pooledConnection.defaultTransactionIsolation);
+                physical.setCatalog(pooledConnection.defaultCatalog);
+                physical.setSchema(pooledConnection.defaultSchema);
+                pooledConnection.sessionChanged = false;
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        var physical = connectionFactory.create();
+        try {
+            return new PooledConnection(physical);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                physical.close();
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            detectLeaks();
+            fillToMinSize();
+        } catch (RuntimeException e) {
+            LOG.log(System.Logger.Level.WARNING, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    private void evictIdleConnections() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        var now = System.nanoTime();
+        while (idleConnections.size() + borrowedConnections.size() > minSize) {
+            var oldest = idleConnections.pollLast();
+            if (oldest == null) {
+                return;
+            }
+            if (now - oldest.lastReturnedAt < idleTimeoutNanos) {
+                idleConnections.offerLast(oldest);
+                return;
+            }
+            closeQuietly(oldest);
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdNanos <= 0) {
+            return;
+        }
+        var now = System.nanoTime();
+        for (var pooledConnection : borrowedConnections) {
+            if (!pooledConnection.leakReported && now - pooledConnection.borrowedAt > leakDetectionThresholdNanos) {
+                pooledConnection.leakReported = true;
+                LOG.log(System.Logger.Level.WARNING, String.format(
+                        "Connection held for more than %d ms, possible leak",
+                        TimeUnit.NANOSECONDS.toMillis(leakDetectionThresholdNanos)), pooledConnection.borrowSite);
+            }
+        }
+    }
+
+    private void fillToMinSize() {
+        while (!closed && idleConnections.size() + borrowedConnections.size() < minSize) {
+            try {
+                var pooledConnection = openConnection();
+                pooledConnection.lastReturnedAt = System.nanoTime();
+                idleConnections.offerLast(pooledConnection);
+            } catch (SQLException e) {
+                LOG.log(System.Logger.Level.WARNING, "Could not open a connection to fill the pool", e);
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(PooledConnection pooledConnection) {
+        try {
+            if (pooledConnection.statements != null) {
+                pooledConnection.statements.evictAll();
+            }
+            pooledConnection.physical.close();
+        } catch (SQLException e) {
+            LOG.log(System.Logger.Level.DEBUG, "Failed to close a pooled connection", e);
+        }
+    }
+
+    /**
+     * Thrown by {@link #borrow()} when every connection stays borrowed for the whole acquire timeout, or the wait
+     * is interrupted. It says nothing about the health of the database itself.
+     */
+    public static class ConnectionUnavailableException extends SQLTransientConnectionException {
+
+        private ConnectionUnavailableException(String reason) {
+            super(reason);
+        }
+
+        private ConnectionUnavailableException(String reason, Throwable cause) {
+            super(reason, cause);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+
+        Connection create() throws SQLException;
+    }
+
+    private class PooledConnection {
+
+        private final Connection physical;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private final LruCache<StatementKey, CachedStatement> statements;
+        /**
+         * Session state the connection was opened with, restored on return if a borrower changed it.
+         */
+        private final boolean defaultReadOnly;
+        private final int defaultTransactionIsolation;
+        private final String defaultCatalog;
+        private final String defaultSchema;
+        private volatile boolean sessionChanged;
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultReadOnly = physical.isReadOnly();
+            this.defaultTransactionIsolation = physical.getTransactionIsolation();
+            this.defaultCatalog = physical.getCatalog();
+            this.defaultSchema = physical.getSchema();
+            this.statements = statementCacheSize > 0
+                    ? new LruCache<>(statementCacheSize, null, Clock.systemUTC(), (key, statement) -> statement.evict())
+                    : null;
+        }
+
+        /**
+         * Returns a free cached statement for the SQL or prepares a new one. A statement still open by the
+         * current borrower isn't shared; a second one is prepared and closed normally instead.
+         */
+        private PreparedStatement prepareStatement(Connection lease, Method method, Object[] args) throws Throwable {
+            var key = StatementKey.of(method, args);
+            if (key == null) {
+                return (PreparedStatement) delegate(physical, method, args);
+            }
+            var cachedStatement = statements.get(key);
+            if (cachedStatement != null) {
+                var checkedOut = cachedStatement.tryCheckOut(lease);
+                if (checkedOut != null) {
+                    statementCacheHits.increment();
+                    return checkedOut;
+                }
+            }
+            statementCacheMisses.increment();
+            var preparedStatement = (PreparedStatement) delegate(physical, method, args);
+            if (cachedStatement != null) {
+                return preparedStatement;
+            }
+            cachedStatement = new CachedStatement(preparedStatement);
+            var checkedOut = cachedStatement.tryCheckOut(lease);
+            statements.put(key, cachedStatement);
+            return checkedOut;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    private class LeaseHandler implements InvocationHandler {
+
+        private final PooledConnection pooledConnection;
+        private boolean released;
+
+        private LeaseHandler(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(pooledConnection);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || pooledConnection.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + pooledConnection.physical;
+                }
+                default -> {
+                    if (released) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (pooledConnection.statements != null && method.getName().equals("prepareStatement")) {
+                        return pooledConnection.prepareStatement((Connection) proxy, method, args);
+                    }
+                    if (SESSION_SETTERS.contains(method.getName())) {
+                        pooledConnection.sessionChanged = true;
+                    }
+                    return delegate(pooledConnection.physical, method, args);
+                }
+            }
+        }
+    }
+
+    private class CachedStatement {
+
+        private final PreparedStatement physical;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        private synchronized PreparedStatement tryCheckOut(Connection lease) {
+            if (inUse || evicted) {
+                return null;
+            }
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CheckoutHandler(this, lease));
+        }
+
+        private synchronized void checkIn() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                physical.close();
+                return;
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+        }
+
+        /**
+         * Statements evicted while checked out are closed when their borrower closes them.
+         */
+        private synchronized void evict() {
+            statementCacheEvictions.increment();
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException e) {
+                    LOG.log(System.Logger.Level.DEBUG, "Failed to close a cached statement", e);
+                }
+            }
+        }
+    }
+
+    private static class CheckoutHandler implements InvocationHandler {
+
+        private final CachedStatement cachedStatement;
+        private final Connection lease;
+        private boolean closed;
+
+        private CheckoutHandler(CachedStatement cachedStatement, Connection lease) {
+            this.cachedStatement = cachedStatement;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        cachedStatement.checkIn();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed;
+                }
+                case "getConnection" -> {
+                    return lease;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached" + cachedStatement.physical;
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    return delegate(cachedStatement.physical, method, args);
+                }
+            }
+        }
+    }
+
+    private record StatementKey(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency) {
+
+        /**
+         * @return the key of a {@code prepareStatement} overload that can be cached, or {@code null}
+         */
+        private static StatementKey of(Method method, Object[] args) {
+            var parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length == 1) {
+                return new StatementKey((String) args[0], NO_GENERATED_KEYS, TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            }
+            if (parameterTypes.length == 2 && parameterTypes[1] == int.class) {
+                return new StatementKey((String) args[0], (int) args[1], TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            }
+            if (parameterTypes.length == 3) {
+                return new StatementKey((String) args[0], NO_GENERATED_KEYS, (int) args[1], (int) args[2]);
+            }
+            return null;
+        }
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.dmdev.util;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Consistent hash ring mapping {@code int} keys to shard indexes.
+ * <p>
+ * Every shard owns {@code virtualNodes} pseudo-random points of the ring, and a key belongs to the shard owning the
+ * first point at or after the key's hash. Adding or removing a shard only moves the keys next to the points it gains
+ * or loses, about {@code 1/N} of them, while the virtual nodes keep the shares of the shards close to each other.
+ * Lookups are a binary search over a sorted array. Rings are immutable, and rings over the same shards with the same
+ * number of virtual nodes are equal.
+ */
+@EqualsAndHashCode(of = {"shards", "virtualNodes"})
+public class ConsistentHashRing {
+
+    private final List<Integer> shards;
+    private final int virtualNodes;
+    private final int[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(Collection<Integer> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid ring: shards=" + shards + ", virtualNodes=" + virtualNodes);
+        }
+        this.shards = shards.stream().distinct().sorted().toList();
+        this.virtualNodes = virtualNodes;
+        // point in the high half and owner in the low half, so sorting orders by point and breaks ties by owner
+        var packed = new long[this.shards.size() * virtualNodes];
+        var i = 0;
+        for (var shard : this.shards) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // keys are hashed with the high half cleared, so no point shares its hash input with a key
+                var point = (int) mix((long) (shard + 1) << 32 | node);
+                packed[i++] = (long) point << 32 | shard & 0xFFFF_FFFFL;
+            }
+        }
+        Arrays.sort(packed);
+        this.points = new int[packed.length];
+        this.owners = new int[packed.length];
+        for (i = 0; i < packed.length; i++) {
+            points[i] = (int) (packed[i] >> 32);
+            owners[i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * Ring over shards {@code 0} to {@code shardCount - 1}.
+     */
+    public static ConsistentHashRing of(int shardCount, int virtualNodes) {
+        return new ConsistentHashRing(IntStream.range(0, shardCount).boxed().toList(), virtualNodes);
+    }
+
+    public int shardFor(int key) {
+        var hash = (int) mix(key & 0xFFFF_FFFFL);
+        // first point at or after the hash, wrapping around past the last one
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * @return the shard indexes of the ring in ascending order
+     */
+    public List<Integer> getShards() {
+        return shards;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreading consecutive keys over the whole ring.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
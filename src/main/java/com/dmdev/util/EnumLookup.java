@@ -0,0 +1,35 @@
+package com.dmdev.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive lookup of enum constants by name, built once per enum.
+ * Lookups neither allocate nor copy {@code values()}, unlike streaming over the constants.
+ * Exact names, such as values read back from the database, are found by hash before falling back
+ * to the case-insensitive comparison.
+ */
+public class EnumLookup<E extends Enum<E>> {
+
+    private final Map<String, Optional<E>> constantsByExactName = new HashMap<>();
+    private final Map<String, Optional<E>> constantsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public EnumLookup(E[] constants) {
+        for (var constant : constants) {
+            constantsByExactName.put(constant.name(), Optional.of(constant));
+            constantsByName.put(constant.name(), Optional.of(constant));
+        }
+    }
+
+    public Optional<E> find(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        var constant = constantsByExactName.get(name);
+        return constant != null
+                ? constant
+                : constantsByName.getOrDefault(name, Optional.empty());
+    }
+}
@@ -0,0 +1,163 @@
+package com.dmdev.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from primitive {@code int} keys to non-null values.
+ * <p>
+ * Keys are stored unboxed in a flat array and probed linearly, and removals shift following entries back
+ * instead of leaving tombstones, so lookups stay short under churn. The map is not thread-safe.
+ */
+public class IntObjectHashMap<V> {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public IntObjectHashMap() {
+        this(16);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            var value = values[slot];
+            if (value == null || keys[slot] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            var previous = values[slot];
+            if (previous == null) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeThreshold) {
+                    resize();
+                }
+                return null;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) previous;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            var value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return (V) value;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (var value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    public void clear() {
+        allocate(keys.length);
+    }
+
+    /**
+     * Fills the freed slot with the next entry of the probe sequence that would no longer be reachable,
+     * repeating until the sequence ends.
+     */
+    private void shiftBack(int freedSlot) {
+        var slot = freedSlot;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+            var home = slot(keys[slot]);
+            // distance from the entry's home slot, compared cyclically
+            if (((slot - home) & mask) >= ((slot - freedSlot) & mask)) {
+                keys[freedSlot] = keys[slot];
+                values[freedSlot] = values[slot];
+                freedSlot = slot;
+            }
+        }
+        values[freedSlot] = null;
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(int key) {
+        var hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        var capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+}
@@ -0,0 +1,20 @@
+package com.dmdev.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.Connection;
+
+@Getter
+@RequiredArgsConstructor
+public enum Isolation {
+    /**
+     * Keeps the isolation level the connection already has.
+     */
+    DEFAULT(-1),
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    private final int level;
+}
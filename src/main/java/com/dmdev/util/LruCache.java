@@ -0,0 +1,133 @@
+package com.dmdev.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Size-bounded cache evicting the least recently used entry, with an optional time to live.
+ * All operations are synchronized, so the cache is meant for small values that are cheap to copy.
+ */
+public class LruCache<K, V> {
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+    private final BiConsumer<K, V> evictionListener;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public LruCache(int maximumSize) {
+        this(maximumSize, null, Clock.systemUTC(), (key, value) -> {
+        });
+    }
+
+    public LruCache(int maximumSize, Duration timeToLive, Clock clock) {
+        this(maximumSize, timeToLive, clock, (key, value) -> {
+        });
+    }
+
+    /**
+     * @param timeToLive       how long an entry stays readable after it is put, or {@code null} for no expiry
+     * @param evictionListener called outside of the cache lock for every entry removed by size or expiry
+     */
+    public LruCache(int maximumSize, Duration timeToLive, Clock clock, BiConsumer<K, V> evictionListener) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLive == null ? 0 : timeToLive.toMillis();
+        this.clock = clock;
+        this.evictionListener = evictionListener;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public V get(K key) {
+        Entry<V> expired;
+        synchronized (this) {
+            var entry = entries.get(key);
+            if (entry == null) {
+                missCount.increment();
+                return null;
+            }
+            if (!isExpired(entry)) {
+                hitCount.increment();
+                return entry.value;
+            }
+            entries.remove(key);
+            missCount.increment();
+            expired = entry;
+        }
+        evict(key, expired);
+        return null;
+    }
+
+    public void put(K key, V value) {
+        Map.Entry<K, Entry<V>> eldest = null;
+        synchronized (this) {
+            entries.put(key, new Entry<>(value, timeToLiveMillis > 0 ? clock.millis() + timeToLiveMillis : 0));
+            if (entries.size() > maximumSize) {
+                var iterator = entries.entrySet().iterator();
+                eldest = iterator.next();
+                iterator.remove();
+            }
+        }
+        if (eldest != null) {
+            evict(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    public synchronized V invalidate(K key) {
+        var entry = entries.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value));
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Removes every entry, passing each one to the eviction listener, e.g. to release resources held by the values.
+     */
+    public void evictAll() {
+        List<Map.Entry<K, Entry<V>>> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(entries.entrySet());
+            entries.clear();
+        }
+        evicted.forEach(entry -> evict(entry.getKey(), entry.getValue()));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return entry.expiresAt > 0 && clock.millis() >= entry.expiresAt;
+    }
+
+    private void evict(K key, Entry<V> entry) {
+        evictionCount.increment();
+        evictionListener.accept(key, entry.value);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
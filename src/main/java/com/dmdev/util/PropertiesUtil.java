@@ -24,4 +24,11 @@ public class PropertiesUtil {
     public static String get(String key) {
         return properties.getProperty(key);
     }
+
+    public static int getInt(String key, int defaultValue) {
+        var value = properties.getProperty(key);
+        return value == null || value.isBlank()
+                ? defaultValue
+                : Integer.parseInt(value.trim());
+    }
 }
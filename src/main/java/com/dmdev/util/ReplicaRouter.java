@@ -0,0 +1,186 @@
+package com.dmdev.util;
+
+import lombok.Builder;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads read-only work over the connection pools of read replicas.
+ * <p>
+ * A replica is picked round-robin or as the one with the fewest borrowed connections. Replicas failing to open or
+ * validate a connection are marked unhealthy and skipped until a periodic health check finds them valid again;
+ * a replica whose pool is merely exhausted stays healthy, and the next one is tried instead. Inside a
+ * {@link TransactionManager} transaction, and when no replica is healthy, connections come from the primary.
+ * <p>
+ * Replicas may lag behind the primary, so work that has to see its own writes should use the primary instead.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(ReplicaRouter.class.getName());
+
+    private static final EnumLookup<Selection> SELECTIONS = new EnumLookup<>(Selection.values());
+
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_BUSY;
+
+        /**
+         * Accepts names such as {@code round-robin} or {@code LEAST_BUSY}.
+         */
+        public static Optional<Selection> findByName(String name) {
+            return SELECTIONS.find(name == null ? null : name.trim().replace('-', '_'));
+        }
+    }
+
+    private final ConnectionPool.ConnectionFactory primary;
+    private final Replica[] replicas;
+    private final Selection selection;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    @Builder
+    private ReplicaRouter(ConnectionPool.ConnectionFactory primary,
+                          List<ConnectionPool> pools,
+                          Selection selection,
+                          Duration healthCheckInterval,
+                          int validationTimeoutSeconds) {
+        if (pools.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = primary;
+        this.replicas = new Replica[pools.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(i, pools.get(i));
+        }
+        this.selection = selection == null ? Selection.ROUND_ROBIN : selection;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "replica-health-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var interval = healthCheckInterval == null ? Duration.ofSeconds(5) : healthCheckInterval;
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from a healthy replica, trying the others if the selected one fails.
+     * Falls back to the primary inside a transaction or if no replica could provide a connection.
+     */
+    public Connection borrow() throws SQLException {
+        if (TransactionManager.isActive()) {
+            return primary.create();
+        }
+        var replicaConnection = borrowFromReplica();
+        return replicaConnection != null ? replicaConnection : primary.create();
+    }
+
+    public int getHealthyCount() {
+        var healthy = 0;
+        for (var replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    /**
+     * Validates a connection of every replica, bringing back the ones that recovered.
+     */
+    void checkHealth() {
+        for (var replica : replicas) {
+            try (var connection = replica.pool.borrow()) {
+                if (connection.isValid(validationTimeoutSeconds)) {
+                    if (!replica.healthy) {
+                        LOG.log(System.Logger.Level.INFO, "Replica {0} is healthy again", replica.index);
+                    }
+                    replica.healthy = true;
+                } else {
+                    markUnhealthy(replica, null);
+                }
+            } catch (ConnectionPool.ConnectionUnavailableException e) {
+                // a busy pool is no sign of a failing replica
+                LOG.log(System.Logger.Level.DEBUG, "Skipped health check of busy replica {0}", replica.index);
+            } catch (SQLException | RuntimeException e) {
+                markUnhealthy(replica, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (var replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    /**
+     * @return a connection to the selected replica or the next healthy one, or {@code null} if none could provide one
+     */
+    private Connection borrowFromReplica() {
+        var start = selection == Selection.LEAST_BUSY ? leastBusy() : Math.floorMod(next.getAndIncrement(), replicas.length);
+        for (int i = 0; i < replicas.length; i++) {
+            var replica = replicas[(start + i) % replicas.length];
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.pool.borrow();
+            } catch (ConnectionPool.ConnectionUnavailableException e) {
+                LOG.log(System.Logger.Level.DEBUG, "Replica {0} has no connection available", replica.index);
+            } catch (SQLException e) {
+                markUnhealthy(replica, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the healthy replica with the fewest borrowed connections, ties going round-robin
+     */
+    private int leastBusy() {
+        var offset = Math.floorMod(next.getAndIncrement(), replicas.length);
+        var best = offset;
+        var bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.length; i++) {
+            var index = (offset + i) % replicas.length;
+            var replica = replicas[index];
+            var active = replica.pool.getActiveCount();
+            if (replica.healthy && active < bestActive) {
+                best = index;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    private void markUnhealthy(Replica replica, Exception cause) {
+        if (replica.healthy) {
+            LOG.log(System.Logger.Level.WARNING, "Replica " + replica.index + " is unhealthy", cause);
+        }
+        replica.healthy = false;
+    }
+
+    private static class Replica {
+
+        private final int index;
+        private final ConnectionPool pool;
+        private volatile boolean healthy = true;
+
+        private Replica(int index, ConnectionPool pool) {
+            this.index = index;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.dmdev.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel of {@code int} ids due at given instants.
+ * <p>
+ * Level 0 has one bucket per tick, every next level has buckets {@code wheelSize} times wider. An id is kept in
+ * the lowest level able to hold its deadline and moves down a level whenever its bucket is reached, so scheduling,
+ * cancelling and firing are constant time regardless of how many ids are pending. Deadlines are rounded up to whole
+ * ticks, so ids never fire early and fire at most one tick late. Deadlines at or past {@link #horizon()} aren't
+ * accepted. The wheel is not thread-safe.
+ */
+public class TimingWheel {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] bucketTicks;
+    private final Bucket[][] buckets;
+    private final Bucket due = new Bucket();
+    private final IntObjectHashMap<Entry> entries = new IntObjectHashMap<>();
+    private long currentTick;
+
+    public TimingWheel(Duration tick, int wheelSize, int levels, Instant start) {
+        if (tick.toMillis() <= 0 || wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick=" + tick + ", wheelSize=" + wheelSize
+                                               + ", levels=" + levels);
+        }
+        this.tickMillis = tick.toMillis();
+        this.wheelSize = wheelSize;
+        this.bucketTicks = new long[levels];
+        this.buckets = new Bucket[levels][wheelSize];
+        for (int level = 0; level < levels; level++) {
+            bucketTicks[level] = level == 0 ? 1 : Math.multiplyExact(bucketTicks[level - 1], wheelSize);
+            for (int slot = 0; slot < wheelSize; slot++) {
+                buckets[level][slot] = new Bucket();
+            }
+        }
+        this.currentTick = Math.floorDiv(start.toEpochMilli(), tickMillis);
+    }
+
+    /**
+     * Schedules the id, replacing its previous deadline. Deadlines that have already passed fire on the next advance.
+     *
+     * @return {@code false} if the deadline is at or past the horizon, in which case the id is no longer scheduled
+     */
+    public boolean schedule(int id, Instant deadline) {
+        cancel(id);
+        if (!deadline.isBefore(horizon())) {
+            return false;
+        }
+        var entry = new Entry(id, -Math.floorDiv(-deadline.toEpochMilli(), tickMillis));
+        entries.put(id, entry);
+        place(entry);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the id was scheduled
+     */
+    public boolean cancel(int id) {
+        var entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        entry.unlink();
+        return true;
+    }
+
+    public boolean isScheduled(int id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Moves the wheel forward to {@code now}, passing every id that became due to {@code expired}.
+     */
+    public void advance(Instant now, IntConsumer expired) {
+        var nowTick = Math.floorDiv(now.toEpochMilli(), tickMillis);
+        if (entries.isEmpty()) {
+            currentTick = Math.max(currentTick, nowTick);
+        }
+        while (currentTick < nowTick) {
+            currentTick++;
+            for (int level = bucketTicks.length - 1; level > 0; level--) {
+                if (currentTick % bucketTicks[level] == 0) {
+                    cascade(buckets[level][slot(level, currentTick)]);
+                }
+            }
+            fire(buckets[0][slot(0, currentTick)], expired);
+        }
+        fire(due, expired);
+    }
+
+    /**
+     * @return the instant from which deadlines no longer fit into the wheel. It moves once per top-level bucket.
+     */
+    public Instant horizon() {
+        // deadlines are rounded up to whole ticks, so ones within the last tick would round up past the wheel
+        return Instant.ofEpochMilli((horizonTick() - 1) * tickMillis);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private long horizonTick() {
+        var topBucketTicks = bucketTicks[bucketTicks.length - 1];
+        return (Math.floorDiv(currentTick, topBucketTicks) + wheelSize) * topBucketTicks;
+    }
+
+    /**
+     * Puts the entry into the lowest level whose buckets, counted from the current one, reach its deadline.
+     */
+    private void place(Entry entry) {
+        if (entry.deadlineTick <= currentTick) {
+            entry.linkTo(due);
+            return;
+        }
+        for (int level = 0; level < bucketTicks.length; level++) {
+            var distance = Math.floorDiv(entry.deadlineTick, bucketTicks[level]) - Math.floorDiv(currentTick, bucketTicks[level]);
+            if (distance < wheelSize) {
+                entry.linkTo(buckets[level][slot(level, entry.deadlineTick)]);
+                return;
+            }
+        }
+        throw new IllegalStateException("Deadline tick " + entry.deadlineTick + " is beyond the horizon");
+    }
+
+    private void cascade(Bucket bucket) {
+        var entry = bucket.head;
+        while (entry != null) {
+            var next = entry.next;
+            entry.unlink();
+            place(entry);
+            entry = next;
+        }
+    }
+
+    private void fire(Bucket bucket, IntConsumer expired) {
+        while (bucket.head != null) {
+            var entry = bucket.head;
+            entry.unlink();
+            entries.remove(entry.id);
+            expired.accept(entry.id);
+        }
+    }
+
+    private int slot(int level, long tick) {
+        return (int) Math.floorMod(Math.floorDiv(tick, bucketTicks[level]), (long) wheelSize);
+    }
+
+    private static class Bucket {
+
+        private Entry head;
+    }
+
+    /**
+     * Node of the doubly linked list of its bucket, so it can be unlinked without a search.
+     */
+    private static class Entry {
+
+        private final int id;
+        private final long deadlineTick;
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(int id, long deadlineTick) {
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+        }
+
+        private void linkTo(Bucket bucket) {
+            this.bucket = bucket;
+            previous = null;
+            next = bucket.head;
+            if (next != null) {
+                next.previous = this;
+            }
+            bucket.head = this;
+        }
+
+        private void unlink() {
+            if (previous != null) {
+                previous.next = next;
+            } else {
+                bucket.head = next;
+            }
+            if (next != null) {
+                next.previous = previous;
+            }
+            bucket = null;
+            previous = null;
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.dmdev.util;
+
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs a unit of work in a database transaction bound to the current thread.
+ * <p>
+ * Inside {@link #inTransaction} every {@link ConnectionManager#get()} returns the same connection. It is borrowed
+ * from the pool on first use, so work that never reaches the database doesn't hold one. The transaction commits
+ * when the work returns and rolls back when it throws; nested calls join the outer transaction.
+ * <p>
+ * Work reaching other pools through {@link ConnectionManager#get(ConnectionPool)}, such as the shards of
+ * {@link com.dmdev.dao.ShardedSubscriptionDao}, gets one connection per pool, all committed or rolled back together.
+ * They are committed one after another, not atomically: if a commit fails, the databases committed before keep
+ * the work.
+ * The transaction owns its connection: {@code close}, {@code commit}, {@code rollback} and {@code setAutoCommit}
+ * called by DAOs on it are ignored.
+ */
+@UtilityClass
+public class TransactionManager {
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    public static <T> T inTransaction(Supplier<T> work) {
+        return inTransaction(Isolation.DEFAULT, work);
+    }
+
+    public static void inTransaction(Runnable work) {
+        inTransaction(Isolation.DEFAULT, work);
+    }
+
+    public static void inTransaction(Isolation isolation, Runnable work) {
+        inTransaction(isolation, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @SneakyThrows
+    public static <T> T inTransaction(Isolation isolation, Supplier<T> work) {
+        if (CURRENT.get() != null) {
+            return work.get();
+        }
+        var transaction = new Transaction(isolation);
+        CURRENT.set(transaction);
+        try {
+            var result = work.get();
+            transaction.commit();
+            return result;
+        } catch (Throwable e) {
+            transaction.rollback(e);
+            throw e;
+        } finally {
+            CURRENT.remove();
+            transaction.release();
+        }
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * @return the connection of the current thread's transaction to the pool, or {@code null} outside of a transaction
+     */
+    static Connection currentConnection(ConnectionPool pool) throws SQLException {
+        var transaction = CURRENT.get();
+        return transaction == null ? null : transaction.connection(pool);
+    }
+
+    private static class Transaction {
+
+        private final Isolation isolation;
+        private final Map<ConnectionPool, Enlisted> connections = new LinkedHashMap<>();
+
+        private Transaction(Isolation isolation) {
+            this.isolation = isolation;
+        }
+
+        private Connection connection(ConnectionPool pool) throws SQLException {
+            var enlisted = connections.get(pool);
+            if (enlisted == null) {
+                var borrowed = pool.borrow();
+                try {
+                    var previousIsolationLevel = borrowed.getTransactionIsolation();
+                    if (isolation != Isolation.DEFAULT) {
+                        borrowed.setTransactionIsolation(isolation.getLevel());
+                    }
+                    borrowed.setAutoCommit(false);
+                    enlisted = new Enlisted(borrowed, (Connection) Proxy.newProxyInstance(
+                            TransactionManager.class.getClassLoader(),
+                            new Class<?>[]{Connection.class},
+                            new SharedConnectionHandler(borrowed)), previousIsolationLevel);
+                } catch (SQLException | RuntimeException e) {
+                    borrowed.close();
+                    throw e;
+                }
+                connections.put(pool, enlisted);
+            }
+            return enlisted.shared();
+        }
+
+        /**
+         * Commits the connections in the order they were enlisted. Once one fails, the rest are rolled back,
+         * but those committed before stay committed.
+         */
+        private void commit() throws SQLException {
+            var remaining = connections.values().iterator();
+            while (remaining.hasNext()) {
+                var enlisted = remaining.next();
+                try {
+                    enlisted.connection().commit();
+                } catch (SQLException | RuntimeException e) {
+                    remaining.forEachRemaining(rest -> rollback(rest, e));
+                    throw e;
+                }
+            }
+        }
+
+        private void rollback(Throwable cause) {
+            connections.values().forEach(enlisted -> rollback(enlisted, cause));
+        }
+
+        private static void rollback(Enlisted enlisted, Throwable cause) {
+            try {
+                enlisted.connection().rollback();
+            } catch (SQLException e) {
+                cause.addSuppressed(e);
+            }
+        }
+
+        private void release() throws SQLException {
+            SQLException failure = null;
+            for (var enlisted : connections.values()) {
+                try (var borrowed = enlisted.connection()) {
+                    if (borrowed.getTransactionIsolation() != enlisted.previousIsolationLevel()) {
+                        borrowed.setTransactionIsolation(enlisted.previousIsolationLevel());
+                    }
+                } catch (SQLException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private record Enlisted(Connection connection, Connection shared, int previousIsolationLevel) {
+    }
+
+    private static class SharedConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private SharedConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close", "commit", "setAutoCommit" -> {
+                    return null;
+                }
+                case "rollback" -> {
+                    // rolling back to a savepoint stays inside the transaction
+                    if (args == null) {
+                        return null;
+                    }
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Transactional" + connection;
+                }
+                default -> {
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
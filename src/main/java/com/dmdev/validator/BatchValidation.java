@@ -0,0 +1,95 @@
+package com.dmdev.validator;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Implementation of {@link Validator#validateAll(List)}.
+ * <p>
+ * Batches below {@link #PARALLEL_THRESHOLD} are validated on the calling thread, as forking costs more than it saves
+ * there. Larger ones are split into ranges validated in the common fork-join pool, each writing the results of its
+ * own indices. Both ways run the same per-range code and collect the results in index order afterwards,
+ * so they produce equal results.
+ */
+@UtilityClass
+class BatchValidation {
+
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final int MIN_RANGE_SIZE = 512;
+
+    static <T> BatchValidationResult validateAll(Validator<T> validator, List<T> objects) {
+        return validateAll(validator, objects, PARALLEL_THRESHOLD);
+    }
+
+    static <T> BatchValidationResult validateAll(Validator<T> validator, List<T> batch, int parallelThreshold) {
+        var objects = batch instanceof RandomAccess ? batch : new ArrayList<>(batch);
+        var results = new ValidationResult[objects.size()];
+        if (objects.size() < parallelThreshold) {
+            validateRange(validator, objects, results, 0, objects.size());
+        } else {
+            var pool = ForkJoinPool.commonPool();
+            var rangeSize = Math.max(MIN_RANGE_SIZE, objects.size() / (pool.getParallelism() * 4));
+            pool.invoke(new ValidateRange<>(validator, objects, results, 0, objects.size(), rangeSize));
+        }
+        return collect(results);
+    }
+
+    private static <T> void validateRange(Validator<T> validator, List<T> objects, ValidationResult[] results,
+                                          int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = validator.validate(objects.get(i));
+        }
+    }
+
+    private static BatchValidationResult collect(ValidationResult[] results) {
+        var failed = new BitSet(results.length);
+        Map<Integer, List<Error>> errors = new HashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].hasErrors()) {
+                failed.set(i);
+                errors.put(i, List.copyOf(results[i].getErrors()));
+            }
+        }
+        return new BatchValidationResult(results.length, failed, errors);
+    }
+
+    private static class ValidateRange<T> extends RecursiveAction {
+
+        private final Validator<T> validator;
+        private final List<T> objects;
+        private final ValidationResult[] results;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        private ValidateRange(Validator<T> validator, List<T> objects, ValidationResult[] results,
+                              int from, int to, int rangeSize) {
+            this.validator = validator;
+            this.objects = objects;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= rangeSize) {
+                validateRange(validator, objects, results, from, to);
+                return;
+            }
+            var middle = (from + to) >>> 1;
+            invokeAll(new ValidateRange<>(validator, objects, results, from, middle, rangeSize),
+                    new ValidateRange<>(validator, objects, results, middle, to, rangeSize));
+        }
+    }
+}
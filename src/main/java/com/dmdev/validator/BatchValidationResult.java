@@ -0,0 +1,68 @@
+package com.dmdev.validator;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Outcome of {@link Validator#validateAll(List)}: a bit per failed index and the errors of failed indices only,
+ * so a batch of valid objects costs a few words regardless of its size.
+ */
+@EqualsAndHashCode
+@ToString
+public class BatchValidationResult {
+
+    private final int size;
+    private final BitSet failed;
+    private final Map<Integer, List<Error>> errors;
+
+    BatchValidationResult(int size, BitSet failed, Map<Integer, List<Error>> errors) {
+        this.size = size;
+        this.failed = failed;
+        this.errors = errors;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasErrors() {
+        return !failed.isEmpty();
+    }
+
+    public int getFailureCount() {
+        return failed.cardinality();
+    }
+
+    public boolean isValid(int index) {
+        return !failed.get(index);
+    }
+
+    /**
+     * @return errors of the object at the index, empty if it is valid
+     */
+    public List<Error> getErrors(int index) {
+        return errors.getOrDefault(index, Collections.emptyList());
+    }
+
+    /**
+     * @return a copy of the set of failed indices
+     */
+    public BitSet getFailedIndices() {
+        return (BitSet) failed.clone();
+    }
+
+    /**
+     * Passes every failed index with its errors, in index order.
+     */
+    public void forEachFailure(BiConsumer<Integer, List<Error>> action) {
+        for (int index = failed.nextSetBit(0); index >= 0; index = failed.nextSetBit(index + 1)) {
+            action.accept(index, errors.get(index));
+        }
+    }
+}
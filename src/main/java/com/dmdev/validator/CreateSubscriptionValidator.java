@@ -2,10 +2,12 @@ package com.dmdev.validator;
 
 import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.entity.Provider;
+import com.dmdev.validator.Rule.Cost;
 import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 
 import java.time.Instant;
+import java.util.Objects;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -14,25 +16,44 @@ public class CreateSubscriptionValidator implements Validator<CreateSubscription
 
     private static final CreateSubscriptionValidator INSTANCE = new CreateSubscriptionValidator();
 
+    private static final Error INVALID_USER_ID = Error.of(100, "userId is invalid");
+    private static final Error INVALID_NAME = Error.of(101, "name is invalid");
+    private static final Error INVALID_PROVIDER = Error.of(102, "provider is invalid");
+    private static final Error INVALID_EXPIRATION_DATE = Error.of(103, "expirationDate is invalid");
+
+    private static final RuleValidator<CreateSubscriptionDto> RULES = RuleValidator.<CreateSubscriptionDto>builder()
+            .rule(Rule.field(CreateSubscriptionDto::getUserId, Objects::nonNull, INVALID_USER_ID, Cost.CHEAP))
+            .rule(Rule.field(CreateSubscriptionDto::getName, StringUtils::isNotBlank, INVALID_NAME, Cost.CHEAP))
+            .rule(Rule.field(CreateSubscriptionDto::getProvider, provider -> Provider.findByNameOpt(provider).isPresent(),
+                    INVALID_PROVIDER, Cost.MODERATE))
+            .rule(Rule.field(CreateSubscriptionDto::getExpirationDate, date -> date != null && !isInPast(date),
+                    INVALID_EXPIRATION_DATE, Cost.MODERATE))
+            .build();
+
     public static CreateSubscriptionValidator getInstance() {
         return INSTANCE;
     }
 
     @Override
     public ValidationResult validate(CreateSubscriptionDto object) {
-        var validationResult = new ValidationResult();
-        if (object.getUserId() == null) {
-            validationResult.add(Error.of(100, "userId is invalid"));
-        }
-        if (StringUtils.isBlank(object.getName())) {
-            validationResult.add(Error.of(101, "name is invalid"));
-        }
-        if (Provider.findByNameOpt(object.getProvider()).isEmpty()) {
-            validationResult.add(Error.of(102, "provider is invalid"));
-        }
-        if (object.getExpirationDate() == null || object.getExpirationDate().isBefore(Instant.now())) {
-            validationResult.add(Error.of(103, "expirationDate is invalid"));
-        }
-        return validationResult;
+        return RULES.validate(object);
+    }
+
+    /**
+     * Validates in the given mode; {@link RuleValidator.Mode#FAIL_FAST} reports only the first error found.
+     */
+    public ValidationResult validate(CreateSubscriptionDto object, RuleValidator.Mode mode) {
+        return RULES.validate(object, mode);
+    }
+
+    /**
+     * Same as {@code instant.isBefore(Instant.now())} without allocating the current instant.
+     */
+    private static boolean isInPast(Instant instant) {
+        var nowMillis = System.currentTimeMillis();
+        var nowSeconds = Math.floorDiv(nowMillis, 1000L);
+        var nowNanos = Math.floorMod(nowMillis, 1000L) * 1_000_000L;
+        return instant.getEpochSecond() < nowSeconds
+               || instant.getEpochSecond() == nowSeconds && instant.getNano() < nowNanos;
     }
 }
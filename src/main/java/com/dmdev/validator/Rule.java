@@ -0,0 +1,54 @@
+package com.dmdev.validator;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Single check of a {@link RuleValidator}: the {@link Error} reported when the object doesn't pass it,
+ * and a rough cost used to run cheap checks first.
+ */
+public final class Rule<T> {
+
+    public enum Cost {
+        /**
+         * Null checks and comparisons of fields.
+         */
+        CHEAP,
+        /**
+         * Lookups, parsing, reading the clock.
+         */
+        MODERATE,
+        /**
+         * Anything doing I/O or scanning large values.
+         */
+        EXPENSIVE
+    }
+
+    final Predicate<? super T> validWhen;
+    final Error error;
+    final Cost cost;
+
+    private Rule(Predicate<? super T> validWhen, Error error, Cost cost) {
+        this.validWhen = validWhen;
+        this.error = error;
+        this.cost = cost;
+    }
+
+    public static <T> Rule<T> of(Predicate<? super T> validWhen, Error error) {
+        return of(validWhen, error, Cost.CHEAP);
+    }
+
+    public static <T> Rule<T> of(Predicate<? super T> validWhen, Error error, Cost cost) {
+        return new Rule<>(validWhen, error, cost);
+    }
+
+    /**
+     * Rule checking one field of the object.
+     */
+    public static <T, F> Rule<T> field(Function<? super T, ? extends F> getter,
+                                       Predicate<? super F> validWhen,
+                                       Error error,
+                                       Cost cost) {
+        return new Rule<>(object -> validWhen.test(getter.apply(object)), error, cost);
+    }
+}
@@ -0,0 +1,112 @@
+package com.dmdev.validator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Validator made of {@link Rule}s.
+ * <p>
+ * Rules are compiled once into flat arrays, ordered by {@link Rule.Cost} and then by declaration, and checked in a
+ * single pass. In {@link Mode#FAIL_FAST} mode the pass stops at the first failing rule, so invalid objects are
+ * rejected after the cheapest check that catches them. A valid object allocates nothing in either mode.
+ */
+public class RuleValidator<T> implements Validator<T> {
+
+    public enum Mode {
+        FAIL_FAST,
+        COLLECT_ALL
+    }
+
+    private final List<Rule<T>> rules;
+    private final Predicate<? super T>[] checks;
+    private final Error[] errors;
+    private final Mode mode;
+
+    @SuppressWarnings("unchecked")
+    private RuleValidator(List<Rule<T>> rules, Mode mode) {
+        this.rules = rules;
+        this.checks = new Predicate[rules.size()];
+        this.errors = new Error[rules.size()];
+        this.mode = mode;
+        for (int i = 0; i < rules.size(); i++) {
+            checks[i] = rules.get(i).validWhen;
+            errors[i] = rules.get(i).error;
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public ValidationResult validate(T object) {
+        return validate(object, mode);
+    }
+
+    public ValidationResult validate(T object, Mode mode) {
+        ValidationResult validationResult = null;
+        for (int i = 0; i < checks.length; i++) {
+            if (!checks[i].test(object)) {
+                if (validationResult == null) {
+                    validationResult = new ValidationResult();
+                }
+                validationResult.add(errors[i]);
+                if (mode == Mode.FAIL_FAST) {
+                    break;
+                }
+            }
+        }
+        return validationResult == null
+                ? ValidationResult.success()
+                : validationResult;
+    }
+
+    /**
+     * @return a validator with the same rules running in the given mode by default
+     */
+    public RuleValidator<T> withMode(Mode mode) {
+        return mode == this.mode ? this : new RuleValidator<>(rules, mode);
+    }
+
+    public static class Builder<T> {
+
+        private final List<Rule<T>> rules = new ArrayList<>();
+        private Mode mode = Mode.COLLECT_ALL;
+
+        public Builder<T> rule(Rule<T> rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * Adds all rules of another validator.
+         */
+        public Builder<T> include(RuleValidator<T> validator) {
+            rules.addAll(validator.rules);
+            return this;
+        }
+
+        /**
+         * Adds all rules of a validator of a field, applied to the field's value.
+         */
+        public <F> Builder<T> field(Function<? super T, ? extends F> getter, RuleValidator<F> validator) {
+            validator.rules.forEach(rule -> rules.add(Rule.field(getter, rule.validWhen, rule.error, rule.cost)));
+            return this;
+        }
+
+        public Builder<T> mode(Mode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public RuleValidator<T> build() {
+            var compiled = new ArrayList<>(rules);
+            // stable, so rules of the same cost keep their declaration order
+            compiled.sort(Comparator.comparing(rule -> rule.cost));
+            return new RuleValidator<>(List.copyOf(compiled), mode);
+        }
+    }
+}
@@ -3,12 +3,30 @@ package com.dmdev.validator;
 import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ValidationResult {
 
+    private static final ValidationResult SUCCESS = new ValidationResult(Collections.emptyList());
+
     @Getter
-    private final List<Error> errors = new ArrayList<>();
+    private final List<Error> errors;
+
+    public ValidationResult() {
+        this(new ArrayList<>());
+    }
+
+    private ValidationResult(List<Error> errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Shared immutable result without errors, so that a successful validation allocates nothing.
+     */
+    public static ValidationResult success() {
+        return SUCCESS;
+    }
 
     public void add(Error error) {
         this.errors.add(error);
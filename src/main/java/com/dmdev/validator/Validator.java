@@ -1,6 +1,16 @@
 package com.dmdev.validator;
 
+import java.util.List;
+
 public interface Validator<T> {
 
     ValidationResult validate(T object);
+
+    /**
+     * Validates every object, in parallel for large batches, so that only the failing ones need to be rejected.
+     * Implementations of {@link #validate} must be thread-safe.
+     */
+    default BatchValidationResult validateAll(List<T> objects) {
+        return BatchValidation.validateAll(this, objects);
+    }
 }
@@ -0,0 +1,166 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.TransactionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CachingSubscriptionDaoTest {
+
+    @Mock
+    private SubscriptionDao delegate;
+    private CachingSubscriptionDao cachingSubscriptionDao;
+
+    @BeforeEach
+    void init() {
+        cachingSubscriptionDao = new CachingSubscriptionDao(delegate, 100, Duration.ofMinutes(1), Clock.systemUTC());
+    }
+
+    @Test
+    @DisplayName("Second findById is served from cache")
+    void findByIdHit() {
+        var subscription = getSubscription();
+        doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        cachingSubscriptionDao.findById(subscription.getId());
+        var actualResult = cachingSubscriptionDao.findById(subscription.getId());
+
+        assertThat(actualResult).contains(subscription);
+        verify(delegate).findByIdOnPrimary(subscription.getId());
+        assertThat(cachingSubscriptionDao.getByIdStats().getHitCount()).isEqualTo(1);
+        assertThat(cachingSubscriptionDao.getByIdStats().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Cached subscription can't be modified by caller")
+    void findByIdReturnsCopy() {
+        var subscription = getSubscription();
+        doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        cachingSubscriptionDao.findById(subscription.getId()).get().setStatus(Status.CANCELED);
+        var actualResult = cachingSubscriptionDao.findById(subscription.getId());
+
+        assertThat(actualResult.get().getStatus()).isEqualTo(Status.ACTIVE);
+    }
+
+    @Test
+    @DisplayName("Update invalidates cached subscription and user subscriptions")
+    void updateInvalidates() {
+        var subscription = getSubscription();
+        doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+        doReturn(List.of(subscription)).when(delegate).findByUserIdOnPrimary(subscription.getUserId());
+        cachingSubscriptionDao.findById(subscription.getId());
+        cachingSubscriptionDao.findByUserId(subscription.getUserId());
+
+        cachingSubscriptionDao.update(subscription);
+        cachingSubscriptionDao.findById(subscription.getId());
+        cachingSubscriptionDao.findByUserId(subscription.getUserId());
+
+        verify(delegate, times(2)).findByIdOnPrimary(subscription.getId());
+        verify(delegate, times(2)).findByUserIdOnPrimary(subscription.getUserId());
+    }
+
+    @Test
+    @DisplayName("Delete invalidates user subscriptions containing deleted one")
+    void deleteInvalidates() {
+        var subscription = getSubscription();
+        doReturn(List.of(subscription)).when(delegate).findByUserIdOnPrimary(subscription.getUserId());
+        cachingSubscriptionDao.findByUserId(subscription.getUserId());
+
+        cachingSubscriptionDao.delete(subscription.getId());
+        cachingSubscriptionDao.findByUserId(subscription.getUserId());
+
+        verify(delegate, times(2)).findByUserIdOnPrimary(subscription.getUserId());
+    }
+
+    @Test
+    @DisplayName("Row read before a concurrent invalidation isn't cached")
+    void findByIdSkipsFillRacingInvalidation() {
+        var subscription = getSubscription();
+        doAnswer(invocation -> {
+            cachingSubscriptionDao.cancel(subscription.getId());
+            return Optional.of(subscription);
+        }).doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        cachingSubscriptionDao.findById(subscription.getId());
+        cachingSubscriptionDao.findById(subscription.getId());
+        cachingSubscriptionDao.findById(subscription.getId());
+
+        verify(delegate, times(2)).findByIdOnPrimary(subscription.getId());
+    }
+
+    @Test
+    @DisplayName("Row upserted while another write invalidated it isn't cached")
+    void upsertSkipsFillRacingInvalidation() {
+        var subscription = getSubscription();
+        doAnswer(invocation -> {
+            cachingSubscriptionDao.cancel(subscription.getId());
+            return Optional.of(subscription);
+        }).when(delegate).upsertByUserIdAndName(subscription);
+        doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        cachingSubscriptionDao.upsertByUserIdAndName(subscription);
+        cachingSubscriptionDao.findById(subscription.getId());
+
+        verify(delegate).findByIdOnPrimary(subscription.getId());
+    }
+
+    @Test
+    @DisplayName("Row read in a transaction isn't cached")
+    void findByIdInTransactionIsNotCached() {
+        var subscription = getSubscription();
+        doReturn(Optional.of(subscription)).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        TransactionManager.inTransaction(() -> cachingSubscriptionDao.findById(subscription.getId()));
+        cachingSubscriptionDao.findById(subscription.getId());
+
+        verify(delegate, times(2)).findByIdOnPrimary(subscription.getId());
+    }
+
+    @Test
+    @DisplayName("Row upserted in a rolled back transaction isn't served from cache")
+    void upsertInRolledBackTransactionIsNotCached() {
+        var subscription = getSubscription();
+        doReturn(Optional.of(subscription)).when(delegate).upsertByUserIdAndName(subscription);
+        doReturn(Optional.empty()).when(delegate).findByIdOnPrimary(subscription.getId());
+
+        assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            cachingSubscriptionDao.upsertByUserIdAndName(subscription);
+            throw new IllegalStateException("rolled back");
+        }));
+        var actualResult = cachingSubscriptionDao.findById(subscription.getId());
+
+        assertThat(actualResult).isEmpty();
+    }
+
+    private static Subscription getSubscription() {
+        return Subscription.builder()
+                .id(1)
+                .userId(22)
+                .name("Andrey")
+                .provider(Provider.GOOGLE)
+                .status(Status.ACTIVE)
+                .expirationDate(Instant.parse("2030-01-01T00:00:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static com.dmdev.dao.SubscriptionDaoContract.getSubscription;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemorySubscriptionDaoTest implements SubscriptionDaoContract {
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+
+    @Override
+    public SubscriptionDao subscriptionDao() {
+        return subscriptionDao;
+    }
+
+    @Test
+    void returnsCopiesOfStoredSubscriptions() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        subscription.setStatus(Status.CANCELED);
+        subscriptionDao.findById(subscription.getId()).orElseThrow().setName("Anna");
+
+        assertThat(subscriptionDao.findById(subscription.getId()))
+                .hasValueSatisfying(actual -> {
+                    assertThat(actual.getStatus()).isEqualTo(Status.ACTIVE);
+                    assertThat(actual.getName()).isEqualTo("Andrey");
+                });
+    }
+
+    @Test
+    void updateMovesSubscriptionBetweenUserIndexes() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        subscriptionDao.update(subscription.setUserId(2));
+
+        assertThat(subscriptionDao.findByUserId(1)).isEmpty();
+        assertThat(subscriptionDao.findByUserId(2)).containsExactly(subscription);
+    }
+
+    @Test
+    void concurrentUpsertsKeepIndexesConsistent() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            futures.add(CompletableFuture.runAsync(() -> IntStream.range(0, 500)
+                    .forEach(userId -> subscriptionDao.upsertByUserIdAndName(getSubscription(userId, "Andrey")))));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertThat(subscriptionDao.findAll()).hasSize(500);
+        assertThat(subscriptionDao.findByUserId(42)).hasSize(1);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dmdev.dao;
+
+import com.dmdev.integration.IntegrationTestBase;
+import com.dmdev.util.ConnectionManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JdbcTemplateIT extends IntegrationTestBase {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO subscription (user_id, name, provider, expiration_date, status)
+            VALUES (?, ?, 'GOOGLE', CURRENT_TIMESTAMP, 'ACTIVE')
+            """;
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate();
+
+    @Test
+    void queryCreatesRowMapperOncePerResultSet() {
+        var userIds = List.of(1, 2, 3);
+        jdbcTemplate.batchUpdate(INSERT_SQL, userIds, 2, (preparedStatement, userId) -> {
+            preparedStatement.setInt(1, userId);
+            preparedStatement.setString(2, "name-" + userId);
+        }, (batch, updateCounts, generatedKeys) -> {
+        });
+        var createdMappers = new AtomicInteger();
+
+        var actualResult = jdbcTemplate.query("SELECT user_id FROM subscription ORDER BY user_id", resultSet -> {
+            createdMappers.incrementAndGet();
+            var userIdIndex = resultSet.findColumn("user_id");
+            return row -> row.getInt(userIdIndex);
+        });
+
+        assertThat(actualResult).isEqualTo(userIds);
+        assertThat(createdMappers).hasValue(1);
+    }
+
+    @Test
+    void batchHandlerFailureRollsBackBatch() {
+        assertThrows(IllegalStateException.class, () -> jdbcTemplate.batchInsert(INSERT_SQL, List.of(1, 2), 2,
+                (preparedStatement, userId) -> {
+                    preparedStatement.setInt(1, userId);
+                    preparedStatement.setString(2, "name-" + userId);
+                }, (batch, updateCounts, generatedKeys) -> {
+                    throw new IllegalStateException("rejected");
+                }));
+
+        assertThat(jdbcTemplate.exists("SELECT 1 FROM subscription", JdbcTemplate.ParameterBinder.NONE)).isFalse();
+    }
+
+    @Test
+    void streamReturnsConnectionOnClose() {
+        jdbcTemplate.insert(INSERT_SQL, "id", preparedStatement -> {
+            preparedStatement.setInt(1, 1);
+            preparedStatement.setString(2, "Andrey");
+        });
+
+        try (var names = jdbcTemplate.stream("SELECT name FROM subscription", resultSet -> row -> row.getString(1), 1,
+                JdbcTemplate.ParameterBinder.NONE)) {
+            assertThat(ConnectionManager.getPool().getActiveCount()).isEqualTo(1);
+            assertThat(names.toList()).containsExactly("Andrey");
+        }
+
+        assertThat(ConnectionManager.getPool().getActiveCount()).isZero();
+    }
+}
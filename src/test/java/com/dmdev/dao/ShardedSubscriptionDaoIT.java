@@ -0,0 +1,90 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.DatabaseSchema;
+import com.dmdev.util.ConnectionPool;
+import com.dmdev.util.TransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.dmdev.dao.SubscriptionDaoContract.getSubscription;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs a {@link ShardedSubscriptionDao} over two H2 databases standing in for the shards.
+ */
+class ShardedSubscriptionDaoIT {
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private ShardedSubscriptionDao subscriptionDao;
+
+    @BeforeEach
+    void createShards() throws SQLException {
+        for (int shard = 0; shard < 2; shard++) {
+            var url = "jdbc:h2:mem:shard" + shard + ";DB_CLOSE_DELAY=-1";
+            var pool = ConnectionPool.builder()
+                    .connectionFactory(() -> DriverManager.getConnection(url, "sa", ""))
+                    .minSize(0)
+                    .maxSize(2)
+                    .acquireTimeout(Duration.ofSeconds(1))
+                    .validationTimeoutSeconds(1)
+                    .build();
+            try (var connection = pool.borrow()) {
+                DatabaseSchema.create(connection);
+                DatabaseSchema.clean(connection);
+            }
+            pools.add(pool);
+        }
+        subscriptionDao = ShardedSubscriptionDao.create(pools, 64, null);
+    }
+
+    @AfterEach
+    void closeShards() {
+        subscriptionDao.close();
+        pools.forEach(ConnectionPool::close);
+    }
+
+    @Test
+    void transactionCommitsAllShards() {
+        var subscriptions = TransactionManager.inTransaction(() -> {
+            var inserted = subscriptionDao.insertAll(getSubscriptions());
+            assertThat(pools).allSatisfy(pool -> assertThat(pool.getActiveCount()).isEqualTo(1));
+            return inserted;
+        });
+
+        assertThat(subscriptions)
+                .extracting(subscription -> subscriptionDao.shardOfId(subscription.getId()))
+                .contains(0, 1);
+        assertThat(subscriptionDao.findAll()).containsExactlyInAnyOrderElementsOf(subscriptions);
+        assertThat(pools).allSatisfy(pool -> assertThat(pool.getActiveCount()).isZero());
+    }
+
+    @Test
+    void transactionRollsBackAllShards() {
+        var exception = new IllegalStateException("failed");
+
+        var actualException = assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            subscriptionDao.insertAll(getSubscriptions());
+            throw exception;
+        }));
+
+        assertThat(actualException).isSameAs(exception);
+        assertThat(subscriptionDao.findAll()).isEmpty();
+        assertThat(pools).allSatisfy(pool -> assertThat(pool.getActiveCount()).isZero());
+    }
+
+    private static List<Subscription> getSubscriptions() {
+        return IntStream.rangeClosed(1, 20)
+                .mapToObj(userId -> getSubscription(userId, "Andrey"))
+                .toList();
+    }
+}
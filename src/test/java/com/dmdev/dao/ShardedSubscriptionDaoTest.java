@@ -0,0 +1,351 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.ConsistentHashRing;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.dmdev.dao.SubscriptionDaoContract.getSubscription;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedSubscriptionDaoTest implements SubscriptionDaoContract {
+
+    private static final Comparator<Subscription> BY_ID = Comparator.comparing(Subscription::getId);
+
+    private final ConsistentHashRing ring = ConsistentHashRing.of(3, 64);
+    private final List<InMemorySubscriptionDao> shards = List.of(
+            new InMemorySubscriptionDao(),
+            new InMemorySubscriptionDao(),
+            new InMemorySubscriptionDao(),
+            new InMemorySubscriptionDao());
+    @TempDir
+    private Path journalDirectory;
+    private ReshardingJournal journal;
+    private ShardedSubscriptionDao subscriptionDao;
+
+    @Override
+    public SubscriptionDao subscriptionDao() {
+        return subscriptionDao;
+    }
+
+    @BeforeEach
+    void createDao() {
+        journal = new ReshardingJournal(journalDirectory.resolve("resharding.journal"));
+        subscriptionDao = new ShardedSubscriptionDao(shards, ring, journal);
+    }
+
+    @AfterEach
+    void closeDao() {
+        subscriptionDao.close();
+    }
+
+    @Test
+    void storesUsersOnTheirShards() {
+        var subscriptions = subscriptionDao.insertAll(IntStream.rangeClosed(1, 5)
+                .mapToObj(userId -> getSubscription(userId, "Andrey"))
+                .toList());
+
+        for (var subscription : subscriptions) {
+            var shard = ring.shardFor(subscription.getUserId());
+            assertThat(subscription.getId() % ShardedSubscriptionDao.MAX_SHARDS).isEqualTo(shard);
+            assertThat(shards.get(shard).findByUserId(subscription.getUserId())).hasSize(1);
+        }
+        assertThat(subscriptions.stream().map(subscription -> ring.shardFor(subscription.getUserId())).distinct())
+                .as("users of the contract tests should span several shards")
+                .hasSizeGreaterThan(1);
+    }
+
+    /**
+     * Ids don't follow insertion order across shards, so the pages are checked against the subscriptions sorted by id.
+     */
+    @Test
+    @Override
+    public void findPage() {
+        var subscriptions = sortedById(subscriptionDao.insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira"))));
+
+        var firstPage = subscriptionDao.findPage(null, 2);
+        var secondPage = subscriptionDao.findPage(firstPage.getNextCursor(), 2);
+
+        assertThat(firstPage.getContent()).containsExactly(subscriptions.get(0), subscriptions.get(1));
+        assertThat(secondPage.getContent()).containsExactly(subscriptions.get(2));
+        assertThat(secondPage.hasNext()).isFalse();
+    }
+
+    @Test
+    @Override
+    public void streamAllWithFilter() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var subscriptions = subscriptionDao.insertAll(List.of(
+                getSubscription(1, "Andrey").setExpirationDate(now),
+                getSubscription(2, "Anna").setExpirationDate(now).setStatus(Status.CANCELED),
+                getSubscription(3, "Kira").setExpirationDate(now).setStatus(Status.EXPIRED)));
+        var filter = SubscriptionFilter.builder()
+                .statuses(List.of(Status.ACTIVE, Status.CANCELED))
+                .build();
+
+        try (var actualResult = subscriptionDao.streamAll(filter)) {
+            assertThat(actualResult).containsExactlyElementsOf(sortedById(subscriptions.subList(0, 2)));
+        }
+        try (var actualResult = subscriptionDao.streamAll(SubscriptionFilter.all())) {
+            assertThat(actualResult).containsExactlyElementsOf(sortedById(subscriptions));
+        }
+    }
+
+    @Test
+    void cancelsOnlyOnOwningShard() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+        var shard = ring.shardFor(1);
+
+        assertThat(subscriptionDao.cancel(subscription.getId())).isTrue();
+
+        assertThat(shards.get(shard).findByUserId(1)).extracting(Subscription::getStatus).containsExactly(Status.CANCELED);
+        assertThat(subscriptionDao.findById(subscription.getId())).hasValueSatisfying(actual ->
+                assertThat(actual.getStatus()).isEqualTo(Status.CANCELED));
+    }
+
+    @Test
+    void mergesShardsInIdOrder() {
+        var subscriptions = subscriptionDao.insertAll(IntStream.range(0, 50)
+                .mapToObj(userId -> getSubscription(userId, "Andrey"))
+                .toList());
+        List<Subscription> paged = new ArrayList<>();
+        Integer cursor = null;
+        do {
+            var page = subscriptionDao.findPage(cursor, 7);
+            paged.addAll(page.getContent());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(subscriptionDao.findAll())
+                .isSortedAccordingTo(BY_ID)
+                .containsExactlyInAnyOrderElementsOf(subscriptions);
+        assertThat(paged).containsExactlyElementsOf(subscriptionDao.findAll());
+        try (var stream = subscriptionDao.streamAll(SubscriptionFilter.all())) {
+            assertThat(stream).containsExactlyElementsOf(subscriptionDao.findAll());
+        }
+    }
+
+    @Test
+    void reshardMovesUsersToAddedShard() {
+        IntStream.range(0, 300).forEach(userId -> subscriptionDao.insertAll(List.of(
+                getSubscription(userId, "Andrey"),
+                getSubscription(userId, "Anna"))));
+        var grownRing = ConsistentHashRing.of(4, 64);
+
+        var actualResult = new Resharder(subscriptionDao, 16).reshard(grownRing);
+
+        assertThat(actualResult.getSubscriptions()).isEqualTo(actualResult.getUsers() * 2).isPositive();
+        assertThat(shards.get(3).findAll()).hasSize((int) actualResult.getSubscriptions());
+        assertThat(subscriptionDao.findAll()).hasSize(600);
+        for (int userId = 0; userId < 300; userId++) {
+            assertThat(subscriptionDao.findByUserId(userId))
+                    .extracting(Subscription::getName)
+                    .containsExactlyInAnyOrder("Andrey", "Anna");
+            assertThat(shards.get(grownRing.shardFor(userId)).findByUserId(userId)).hasSize(2);
+        }
+    }
+
+    @Test
+    void reshardKeepsWritesMadeMeanwhile() {
+        IntStream.range(0, 300).forEach(userId -> subscriptionDao.insert(getSubscription(userId, "Andrey")));
+        var writes = CompletableFuture.runAsync(() -> IntStream.range(0, 600)
+                .forEach(userId -> subscriptionDao.upsertByUserIdAndName(getSubscription(userId, "Anna"))));
+
+        new Resharder(subscriptionDao, 8).reshard(ConsistentHashRing.of(4, 64));
+        writes.join();
+
+        assertThat(subscriptionDao.findAll()).hasSize(900);
+        for (int userId = 0; userId < 600; userId++) {
+            assertThat(subscriptionDao.findByUserId(userId)).hasSize(userId < 300 ? 2 : 1);
+        }
+    }
+
+    @Test
+    void restartResumesResharding() {
+        IntStream.range(0, 300).forEach(userId -> subscriptionDao.insert(getSubscription(userId, "Andrey")));
+        var grownRing = ConsistentHashRing.of(4, 64);
+        subscriptionDao.beginResharding(grownRing);
+        var movedUserIds = subscriptionDao.findUsersToMove(0, grownRing);
+        subscriptionDao.moveUsers(0, movedUserIds);
+        subscriptionDao.close();
+
+        subscriptionDao = new ShardedSubscriptionDao(shards, ring, journal);
+
+        for (var userId : movedUserIds) {
+            assertThat(subscriptionDao.findByUserId(userId)).singleElement().satisfies(subscription ->
+                    assertThat(subscriptionDao.shardOfId(subscription.getId())).isEqualTo(grownRing.shardFor(userId)));
+        }
+        var actualResult = new Resharder(subscriptionDao, 16).reshard(grownRing);
+
+        var movingUsers = IntStream.range(0, 300)
+                .filter(userId -> grownRing.shardFor(userId) != ring.shardFor(userId))
+                .count();
+        assertThat(actualResult.getUsers()).isEqualTo(movingUsers - movedUserIds.size());
+        assertThat(subscriptionDao.findAll()).hasSize(300);
+        assertThat(journalDirectory.resolve("resharding.journal")).doesNotExist();
+        for (int userId = 0; userId < 300; userId++) {
+            assertThat(shards.get(grownRing.shardFor(userId)).findByUserId(userId)).hasSize(1);
+        }
+    }
+
+    @Test
+    void usersAlreadyOnTargetShardAreNotCountedAsMoved() {
+        IntStream.range(0, 50).forEach(userId -> subscriptionDao.insert(getSubscription(userId, "Andrey")));
+        var grownRing = ConsistentHashRing.of(4, 64);
+        subscriptionDao.beginResharding(grownRing);
+        var userIds = IntStream.range(0, 50)
+                .filter(userId -> ring.shardFor(userId) == 0)
+                .boxed()
+                .toList();
+        var movingUsers = userIds.stream()
+                .filter(userId -> grownRing.shardFor(userId) != 0)
+                .count();
+
+        var actualResult = subscriptionDao.moveUsers(0, userIds);
+
+        assertThat(movingUsers).isPositive().isLessThan(userIds.size());
+        assertThat(actualResult.users()).isEqualTo(movingUsers);
+        assertThat(actualResult.subscriptions()).isEqualTo(movingUsers);
+    }
+
+    @Test
+    void reshardReplacesCopiesOfMoveCutShort() {
+        IntStream.range(0, 300).forEach(userId -> subscriptionDao.insert(getSubscription(userId, "Andrey")));
+        var grownRing = ConsistentHashRing.of(4, 64);
+        var failingJournal = new ReshardingJournal(journalDirectory.resolve("resharding.journal")) {
+            @Override
+            void recordMoved(List<Move> moves) {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        var failingDao = new ShardedSubscriptionDao(shards, ring, failingJournal);
+        failingDao.beginResharding(grownRing);
+        assertThrows(IllegalStateException.class, () -> failingDao.moveUsers(0, failingDao.findUsersToMove(0, grownRing)));
+        failingDao.close();
+        subscriptionDao.close();
+
+        subscriptionDao = new ShardedSubscriptionDao(shards, ring, journal);
+        new Resharder(subscriptionDao, 16).reshard(grownRing);
+
+        assertThat(subscriptionDao.findAll()).hasSize(300);
+        for (int userId = 0; userId < 300; userId++) {
+            assertThat(shards.get(grownRing.shardFor(userId)).findByUserId(userId)).hasSize(1);
+        }
+    }
+
+    @Test
+    void oldIdsOfMovedSubscriptionsAreRejectedDuringResharding() {
+        var subscriptions = subscriptionDao.insertAll(IntStream.range(0, 50)
+                .mapToObj(userId -> getSubscription(userId, "Andrey"))
+                .toList());
+        var grownRing = ConsistentHashRing.of(4, 64);
+        subscriptionDao.beginResharding(grownRing);
+        for (int shard = 0; shard < 3; shard++) {
+            subscriptionDao.moveUsers(shard, subscriptionDao.findUsersToMove(shard, grownRing));
+        }
+        var moved = subscriptions.stream()
+                .filter(subscription -> grownRing.shardFor(subscription.getUserId()) == 3)
+                .findFirst()
+                .orElseThrow();
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> subscriptionDao.findById(moved.getId()));
+        assertThat(exception).hasMessageContaining(subscriptionDao.findByUserId(moved.getUserId()).get(0).getId().toString());
+        assertThrows(IllegalArgumentException.class, () -> subscriptionDao.cancel(moved.getId()));
+        assertThat(subscriptionDao.expireDue(List.of(moved.getId()), Instant.now())).isZero();
+    }
+
+    @Test
+    void lastPassDoesNotRescanShards() {
+        var streamedShards = new AtomicInteger();
+        var countingShards = IntStream.range(0, 4)
+                .mapToObj(shard -> new InMemorySubscriptionDao() {
+                    @Override
+                    public Stream<Subscription> streamAll() {
+                        streamedShards.incrementAndGet();
+                        return super.streamAll();
+                    }
+                })
+                .toList();
+        try (var countingDao = new ShardedSubscriptionDao(countingShards, ring, journal)) {
+            IntStream.range(0, 300).forEach(userId -> countingDao.insert(getSubscription(userId, "Andrey")));
+
+            new Resharder(countingDao, 16).reshard(ConsistentHashRing.of(4, 64));
+
+            assertThat(streamedShards).hasValue(4);
+            assertThat(countingDao.findAll()).hasSize(300);
+        }
+    }
+
+    @Test
+    void streamAllClosesOpenedCursorsOnSqlException() {
+        var closedStreams = new AtomicInteger();
+        var failingShards = IntStream.range(0, 4)
+                .mapToObj(shard -> new InMemorySubscriptionDao() {
+                    @Override
+                    @SneakyThrows
+                    public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+                        if (shard == 2) {
+                            throw new SQLException("connection lost", "08006");
+                        }
+                        return super.streamAll(filter).onClose(closedStreams::incrementAndGet);
+                    }
+                })
+                .toList();
+        try (var failingDao = new ShardedSubscriptionDao(failingShards, ring)) {
+            assertThrows(SQLException.class, () -> failingDao.streamAll(SubscriptionFilter.all()));
+        }
+
+        assertThat(closedStreams).hasValue(2);
+    }
+
+    @Test
+    void reshardingWithoutJournalIsRejected() {
+        try (var withoutJournal = new ShardedSubscriptionDao(shards, ring)) {
+            assertThrows(IllegalStateException.class, () -> new Resharder(withoutJournal, 16).reshard(ConsistentHashRing.of(4, 64)));
+        }
+    }
+
+    @Test
+    void shardCloseToRunningOutOfIdsIsRejected() {
+        var exhaustedShards = IntStream.range(0, 4)
+                .mapToObj(shard -> new InMemorySubscriptionDao() {
+                    @Override
+                    public Page<Subscription> findPage(Integer afterId, int limit) {
+                        return shard == 1
+                                ? new Page<>(List.of(getSubscription(1, "Andrey").setId(afterId + 1)), null)
+                                : super.findPage(afterId, limit);
+                    }
+                })
+                .toList();
+
+        var exception = assertThrows(IllegalStateException.class, () -> new ShardedSubscriptionDao(exhaustedShards, ring));
+
+        assertThat(exception).hasMessageStartingWith("Shard 1 ");
+    }
+
+    private static List<Subscription> sortedById(List<Subscription> subscriptions) {
+        return subscriptions.stream()
+                .sorted(BY_ID)
+                .toList();
+    }
+}
@@ -0,0 +1,456 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.OptimisticLockException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every {@link SubscriptionDao} implementation must share. Implementations start each test empty.
+ */
+interface SubscriptionDaoContract {
+
+    SubscriptionDao subscriptionDao();
+
+    @Test
+    default void findAll() {
+        var subscription1 = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var subscription2 = subscriptionDao().insert(getSubscription(2, "Anna"));
+        var subscription3 = subscriptionDao().insert(getSubscription(3, "Kira"));
+
+        var actualResult = subscriptionDao().findAll();
+
+        assertThat(actualResult).hasSize(3);
+        var subscriptions = actualResult.stream()
+                .map(Subscription::getId)
+                .toList();
+        assertThat(subscriptions).contains(subscription1.getId(), subscription2.getId(), subscription3.getId());
+    }
+
+    @Test
+    default void findById() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        var actualResult = subscriptionDao().findById(subscription.getId());
+
+        assertThat(actualResult).isPresent();
+        assertThat(actualResult.get()).isEqualTo(subscription);
+    }
+
+    @Test
+    default void nullIdsNameNoSubscription() {
+        subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        assertThat(subscriptionDao().findById(null)).isEmpty();
+        assertThat(subscriptionDao().findByIdOnPrimary(null)).isEmpty();
+        assertFalse(subscriptionDao().existsById(null));
+        assertFalse(subscriptionDao().existsByIdOnPrimary(null));
+        assertFalse(subscriptionDao().cancel(null));
+        assertFalse(subscriptionDao().expire(null, Instant.now()));
+        assertFalse(subscriptionDao().delete(null));
+        assertThat(subscriptionDao().expireDue(Arrays.asList(null, null), Instant.now())).isZero();
+        assertThat(subscriptionDao().findByUserId(null)).isEmpty();
+        assertThat(subscriptionDao().findByUserIdPage(null, null, 10).getContent()).isEmpty();
+        try (var actualResult = subscriptionDao().streamByUserId(null)) {
+            assertThat(actualResult).isEmpty();
+        }
+        assertThat(subscriptionDao().findAll()).hasSize(1);
+    }
+
+    @Test
+    default void update() {
+        var subscription = getSubscription(1, "Andrey");
+        subscriptionDao().insert(subscription);
+        subscription.setName("Ivan");
+        subscription.setStatus(Status.CANCELED);
+
+        subscriptionDao().update(subscription);
+
+        var updatedSubscription = subscriptionDao().findById(subscription.getId()).get();
+        assertThat(updatedSubscription).isEqualTo(subscription);
+    }
+
+    @Test
+    default void insert() {
+        var subscription = getSubscription(1, "Andrey");
+
+        var actualResult = subscriptionDao().insert(subscription);
+
+        assertNotNull(actualResult.getId());
+    }
+
+    @Test
+    default void findByUserId() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        var actualResult = subscriptionDao().findByUserId(subscription.getUserId());
+
+        assertThat(actualResult).hasSize(1);
+        assertThat(actualResult).contains(subscription);
+    }
+
+    @Test
+    default void shouldNotFindByUserIdIfSubscriptionDoesNotExist() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var actualResult = subscriptionDao().findByUserId(0);
+
+        assertThat(actualResult).isEmpty();
+    }
+
+    @Test
+    default void upsertByUserIdAndNameInsertsNewSubscription() {
+        var subscription = getSubscription(1, "Andrey");
+
+        var actualResult = subscriptionDao().upsertByUserIdAndName(subscription);
+
+        assertThat(actualResult).isPresent();
+        assertNotNull(actualResult.get().getId());
+        assertThat(subscriptionDao().findAll()).containsExactly(actualResult.get());
+    }
+
+    @Test
+    default void upsertByUserIdAndNameReactivatesExistingSubscription() {
+        var existingSubscription = getSubscription(1, "Andrey").setStatus(Status.CANCELED);
+        subscriptionDao().insert(existingSubscription);
+        var subscription = getSubscription(1, "Andrey")
+                .setExpirationDate(existingSubscription.getExpirationDate().plus(Duration.ofDays(30)));
+
+        var actualResult = subscriptionDao().upsertByUserIdAndName(subscription);
+
+        assertThat(actualResult).isPresent();
+        assertThat(actualResult.get().getId()).isEqualTo(existingSubscription.getId());
+        assertThat(actualResult.get().getStatus()).isEqualTo(Status.ACTIVE);
+        assertThat(actualResult.get().getExpirationDate()).isEqualTo(subscription.getExpirationDate());
+    }
+
+    @Test
+    default void upsertByUserIdAndNameSkipsSubscriptionOfAnotherProvider() {
+        var existingSubscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var subscription = getSubscription(1, "Andrey").setProvider(Provider.APPLE);
+
+        var actualResult = subscriptionDao().upsertByUserIdAndName(subscription);
+
+        assertThat(actualResult).isEmpty();
+        assertThat(subscriptionDao().findAll()).containsExactly(existingSubscription);
+    }
+
+    @Test
+    default void cancelOnlyActiveSubscription() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        assertThat(subscriptionDao().cancel(subscription.getId())).isTrue();
+        assertThat(subscriptionDao().cancel(subscription.getId())).isFalse();
+        assertThat(subscriptionDao().cancel(Integer.MAX_VALUE)).isFalse();
+        assertThat(subscriptionDao().findById(subscription.getId()))
+                .hasValueSatisfying(actual -> assertThat(actual.getStatus()).isEqualTo(Status.CANCELED));
+    }
+
+    @Test
+    default void expireSetsExpirationDateOnce() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var expiredAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        assertThat(subscriptionDao().expire(subscription.getId(), expiredAt)).isTrue();
+        assertThat(subscriptionDao().expire(subscription.getId(), expiredAt.plusSeconds(1))).isFalse();
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(subscription
+                .setStatus(Status.EXPIRED)
+                .setExpirationDate(expiredAt)
+                .setVersion(1));
+    }
+
+    @Test
+    default void updateIncrementsVersion() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        subscriptionDao().update(subscription.setStatus(Status.CANCELED));
+
+        assertThat(subscription.getVersion()).isEqualTo(1);
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(subscription);
+    }
+
+    @Test
+    default void updateWithStaleVersionThrowsOptimisticLockException() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var concurrentCopy = subscription.toBuilder().build();
+        subscriptionDao().update(concurrentCopy.setStatus(Status.CANCELED));
+
+        assertThrows(OptimisticLockException.class, () -> subscriptionDao().update(subscription.setName("Anna")));
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(concurrentCopy);
+    }
+
+    @Test
+    default void updateAllRollsBackBatchOnVersionConflict() {
+        var subscriptions = subscriptionDao().insertAll(List.of(getSubscription(1, "Andrey"), getSubscription(2, "Anna")));
+        subscriptionDao().update(subscriptions.get(1).toBuilder().build());
+        subscriptions.forEach(subscription -> subscription.setStatus(Status.CANCELED));
+
+        assertThrows(OptimisticLockException.class, () -> subscriptionDao().updateAll(subscriptions));
+        assertThat(subscriptionDao().findAll())
+                .extracting(Subscription::getStatus)
+                .containsOnly(Status.ACTIVE);
+    }
+
+    @Test
+    default void existsById() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        assertThat(subscriptionDao().existsById(subscription.getId())).isTrue();
+        assertThat(subscriptionDao().existsById(Integer.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    default void upsertAllByUserIdAndName() {
+        var existingSubscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        var subscriptions = List.of(
+                getSubscription(1, "Andrey").setProvider(Provider.APPLE),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira"));
+
+        var actualResult = subscriptionDao().upsertAllByUserIdAndName(subscriptions);
+
+        assertThat(actualResult).hasSize(3);
+        assertThat(actualResult.get(0)).isEmpty();
+        assertThat(actualResult.get(1)).isPresent();
+        assertThat(actualResult.get(2)).isPresent();
+        assertThat(subscriptionDao().findAll())
+                .containsExactlyInAnyOrder(existingSubscription, actualResult.get(1).get(), actualResult.get(2).get());
+    }
+
+    @Test
+    default void expireOverdue() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var overdueSubscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey").setExpirationDate(now.minus(Duration.ofDays(1))),
+                getSubscription(2, "Anna").setExpirationDate(now.minus(Duration.ofDays(2))),
+                getSubscription(3, "Kira").setExpirationDate(now.minus(Duration.ofDays(3)))));
+        var canceledSubscription = subscriptionDao().insert(getSubscription(4, "Ivan")
+                .setExpirationDate(now.minus(Duration.ofDays(1)))
+                .setStatus(Status.CANCELED));
+        var activeSubscription = subscriptionDao().insert(getSubscription(5, "Petr"));
+
+        var actualResult = subscriptionDao().expireOverdue(now, 2);
+
+        assertThat(actualResult).isEqualTo(3);
+        overdueSubscriptions.forEach(subscription -> subscription.setStatus(Status.EXPIRED).setVersion(1));
+        assertThat(subscriptionDao().findAll())
+                .containsAll(overdueSubscriptions)
+                .contains(canceledSubscription, activeSubscription);
+    }
+
+    @Test
+    default void expireOverdueRejectsNonPositiveChunkSize() {
+        var now = Instant.now();
+
+        assertThrows(IllegalArgumentException.class, () -> subscriptionDao().expireOverdue(now, 0));
+    }
+
+    @Test
+    default void expireDueExpiresOnlyActiveSubscriptionsThatAreDue() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var dueSubscription = subscriptionDao().insert(getSubscription(1, "Andrey").setExpirationDate(now));
+        var extendedSubscription = subscriptionDao().insert(getSubscription(2, "Anna"));
+        var canceledSubscription = subscriptionDao().insert(getSubscription(3, "Kira")
+                .setExpirationDate(now.minus(Duration.ofDays(1)))
+                .setStatus(Status.CANCELED));
+
+        var actualResult = subscriptionDao().expireDue(
+                List.of(dueSubscription.getId(), extendedSubscription.getId(), canceledSubscription.getId()), now);
+
+        assertThat(actualResult).isEqualTo(1);
+        assertThat(subscriptionDao().findAll()).containsExactlyInAnyOrder(
+                dueSubscription.setStatus(Status.EXPIRED).setVersion(1), extendedSubscription, canceledSubscription);
+    }
+
+    @Test
+    default void streamActiveExpiringBetween() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey").setExpirationDate(now));
+        subscriptionDao().insert(getSubscription(2, "Anna").setExpirationDate(now.plus(Duration.ofDays(1))));
+        subscriptionDao().insert(getSubscription(3, "Kira").setExpirationDate(now).setStatus(Status.CANCELED));
+
+        try (var actualResult = subscriptionDao().streamActiveExpiringBetween(now, now.plus(Duration.ofDays(1)))) {
+            assertThat(actualResult).containsExactly(subscription);
+        }
+    }
+
+    @Test
+    default void insertAll() {
+        var subscriptions = List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira"));
+
+        var actualResult = subscriptionDao().insertAll(subscriptions);
+
+        assertThat(actualResult).extracting(Subscription::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(subscriptionDao().findAll()).containsExactlyInAnyOrderElementsOf(subscriptions);
+    }
+
+    @Test
+    default void updateAll() {
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira")));
+        subscriptions.forEach(subscription -> subscription.setStatus(Status.CANCELED));
+
+        subscriptionDao().updateAll(subscriptions);
+
+        assertThat(subscriptionDao().findAll()).extracting(Subscription::getStatus).containsOnly(Status.CANCELED);
+    }
+
+    @Test
+    default void upsertAll() {
+        var existingSubscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        existingSubscription.setStatus(Status.EXPIRED);
+        var newSubscription = getSubscription(2, "Anna");
+
+        var actualResult = subscriptionDao().upsertAll(List.of(existingSubscription, newSubscription));
+
+        assertThat(actualResult).containsExactly(existingSubscription, newSubscription);
+        assertNotNull(newSubscription.getId());
+        assertThat(subscriptionDao().findAll()).containsExactlyInAnyOrder(existingSubscription, newSubscription);
+    }
+
+    @Test
+    default void findPage() {
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira")));
+
+        var firstPage = subscriptionDao().findPage(null, 2);
+        var secondPage = subscriptionDao().findPage(firstPage.getNextCursor(), 2);
+
+        assertThat(firstPage.getContent()).containsExactly(subscriptions.get(0), subscriptions.get(1));
+        assertTrue(firstPage.hasNext());
+        assertThat(secondPage.getContent()).containsExactly(subscriptions.get(2));
+        assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    default void findPageWithMaximumLimit() {
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(1, "Anna")));
+
+        var actualResult = subscriptionDao().findPage(null, Integer.MAX_VALUE);
+        var actualUserPage = subscriptionDao().findByUserIdPage(1, null, Integer.MAX_VALUE);
+
+        assertThat(actualResult.getContent()).containsExactlyElementsOf(subscriptions);
+        assertFalse(actualResult.hasNext());
+        assertThat(actualUserPage.getContent()).containsExactlyElementsOf(subscriptions);
+        assertFalse(actualUserPage.hasNext());
+    }
+
+    @Test
+    default void findByUserIdPage() {
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(1, "Anna"),
+                getSubscription(2, "Kira")));
+
+        var actualResult = subscriptionDao().findByUserIdPage(1, subscriptions.get(0).getId(), 2);
+
+        assertThat(actualResult.getContent()).containsExactly(subscriptions.get(1));
+        assertFalse(actualResult.hasNext());
+    }
+
+    @Test
+    default void streamAll() {
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(2, "Anna"),
+                getSubscription(3, "Kira")));
+
+        try (var actualResult = subscriptionDao().streamAll()) {
+            assertThat(actualResult).containsExactlyInAnyOrderElementsOf(subscriptions);
+        }
+    }
+
+    @Test
+    default void streamAllWithFilter() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var subscriptions = subscriptionDao().insertAll(List.of(
+                getSubscription(1, "Andrey").setExpirationDate(now),
+                getSubscription(2, "Anna").setExpirationDate(now).setProvider(Provider.APPLE),
+                getSubscription(3, "Kira").setExpirationDate(now).setStatus(Status.CANCELED),
+                getSubscription(4, "Ivan").setExpirationDate(now).setStatus(Status.EXPIRED),
+                getSubscription(5, "Petr").setExpirationDate(now.plus(Duration.ofDays(1)))));
+        var filter = SubscriptionFilter.builder()
+                .statuses(List.of(Status.ACTIVE, Status.CANCELED))
+                .providers(List.of(Provider.GOOGLE))
+                .expiresFrom(now)
+                .expiresBefore(now.plus(Duration.ofDays(1)))
+                .build();
+
+        try (var actualResult = subscriptionDao().streamAll(filter)) {
+            assertThat(actualResult).containsExactly(subscriptions.get(0), subscriptions.get(2));
+        }
+        try (var actualResult = subscriptionDao().streamAll(SubscriptionFilter.all())) {
+            assertThat(actualResult).containsExactlyElementsOf(subscriptions);
+        }
+    }
+
+    @Test
+    default void streamByUserId() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+        subscriptionDao().insert(getSubscription(2, "Anna"));
+
+        try (var actualResult = subscriptionDao().streamByUserId(subscription.getUserId())) {
+            assertThat(actualResult).containsExactly(subscription);
+        }
+    }
+
+    @Test
+    default void shouldRollbackBatchIfInsertFails() {
+        var subscriptions = List.of(
+                getSubscription(1, "Andrey"),
+                getSubscription(1, "Andrey"));
+
+        assertThrows(SQLException.class, () -> subscriptionDao().insertAll(subscriptions));
+        assertThat(subscriptionDao().findAll()).isEmpty();
+    }
+
+    @Test
+    default void deleteExistingSubscription() {
+        var subscription = subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        var actualResult = subscriptionDao().delete(subscription.getId());
+
+        assertTrue(actualResult);
+    }
+
+    @Test
+    default void deleteNotExistingSubscription() {
+        subscriptionDao().insert(getSubscription(1, "Andrey"));
+
+        var actualResult = subscriptionDao().delete(9999999);
+
+        assertFalse(actualResult);
+    }
+
+    static Subscription getSubscription(Integer userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.GOOGLE)
+                .status(Status.ACTIVE)
+                .expirationDate(Instant.now().plus(Duration.ofDays(10)).truncatedTo(ChronoUnit.DAYS))
+                .build();
+    }
+}
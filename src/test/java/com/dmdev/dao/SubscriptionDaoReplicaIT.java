@@ -0,0 +1,125 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.DatabaseSchema;
+import com.dmdev.integration.IntegrationTestBase;
+import com.dmdev.util.ConnectionManager;
+import com.dmdev.util.ConnectionPool;
+import com.dmdev.util.ReplicaRouter;
+import com.dmdev.util.TransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+import static com.dmdev.dao.SubscriptionDaoContract.getSubscription;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a {@link SubscriptionDao} against the primary test database and a second H2 database standing in for
+ * a replica that is only updated when {@link #replicate} is called.
+ */
+class SubscriptionDaoReplicaIT extends IntegrationTestBase {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+    private static final String REPLICATE_SQL = """
+            INSERT INTO subscription (id, user_id, name, provider, expiration_date, status, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private ConnectionPool replicaPool;
+    private ReplicaRouter replicaRouter;
+    private SubscriptionDao subscriptionDao;
+
+    @BeforeEach
+    void createReplica() throws SQLException {
+        replicaPool = ConnectionPool.builder()
+                .connectionFactory(() -> DriverManager.getConnection(REPLICA_URL, "sa", ""))
+                .minSize(0)
+                .maxSize(2)
+                .acquireTimeout(Duration.ofSeconds(1))
+                .validationTimeoutSeconds(1)
+                .build();
+        try (var connection = replicaPool.borrow()) {
+            DatabaseSchema.create(connection);
+            DatabaseSchema.clean(connection);
+        }
+        replicaRouter = ReplicaRouter.builder()
+                .primary(ConnectionManager::get)
+                .pools(List.of(replicaPool))
+                .healthCheckInterval(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .build();
+        subscriptionDao = new JdbcSubscriptionDao(new JdbcTemplate(ConnectionManager::get, replicaRouter::borrow));
+    }
+
+    @AfterEach
+    void closeReplica() {
+        replicaRouter.close();
+    }
+
+    @Test
+    void readsGoToReplica() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        assertThat(subscriptionDao.findById(subscription.getId())).isEmpty();
+        assertThat(subscriptionDao.findByUserId(1)).isEmpty();
+
+        replicate(subscription);
+
+        assertThat(subscriptionDao.findById(subscription.getId())).contains(subscription);
+        assertThat(subscriptionDao.findByUserId(1)).containsExactly(subscription);
+        try (var actualResult = subscriptionDao.streamAll()) {
+            assertThat(actualResult).containsExactly(subscription);
+        }
+        assertThat(replicaPool.getActiveCount()).isZero();
+    }
+
+    @Test
+    void readsInTransactionGoToPrimary() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        var actualResult = TransactionManager.inTransaction(() -> subscriptionDao.findById(subscription.getId()));
+
+        assertThat(actualResult).contains(subscription);
+    }
+
+    @Test
+    void readsFeedingWritesGoToPrimary() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        assertThat(subscriptionDao.findByIdOnPrimary(subscription.getId())).contains(subscription);
+        assertThat(subscriptionDao.existsByIdOnPrimary(subscription.getId())).isTrue();
+        assertThat(subscriptionDao.findByUserIdOnPrimary(1)).containsExactly(subscription);
+        assertThat(subscriptionDao.existsById(subscription.getId())).isFalse();
+    }
+
+    @Test
+    void writesAndLockingReadsGoToPrimary() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+        replicate(subscription);
+
+        assertThat(subscriptionDao.cancel(subscription.getId())).isTrue();
+        assertThat(TransactionManager.inTransaction(() -> subscriptionDao.findByIdForUpdate(subscription.getId())))
+                .hasValueSatisfying(actual -> assertThat(actual.getVersion()).isEqualTo(subscription.getVersion() + 1));
+        assertThat(subscriptionDao.upsertByUserIdAndName(getSubscription(1, "Anna"))).isPresent();
+        assertThat(subscriptionDao.findByUserId(1)).containsExactly(subscription);
+    }
+
+    private void replicate(Subscription subscription) {
+        new JdbcTemplate(replicaPool::borrow).update(REPLICATE_SQL, preparedStatement -> {
+            preparedStatement.setInt(1, subscription.getId());
+            preparedStatement.setInt(2, subscription.getUserId());
+            preparedStatement.setString(3, subscription.getName());
+            preparedStatement.setString(4, subscription.getProvider().name());
+            preparedStatement.setTimestamp(5, Timestamp.from(subscription.getExpirationDate()));
+            preparedStatement.setString(6, subscription.getStatus().name());
+            preparedStatement.setInt(7, subscription.getVersion());
+        });
+    }
+}
@@ -2,6 +2,8 @@ package com.dmdev.entity;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.NoSuchElementException;
 
@@ -27,4 +29,21 @@ class ProviderTest {
 
         assertThrows(NoSuchElementException.class, () -> Provider.findByName(provider));
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @ValueSource(strings = {"GOOGLE", "google", "GoOgLe"})
+    @DisplayName("Provider name is matched ignoring case")
+    void providerNameIgnoresCase(String provider) {
+        var actualResult = Provider.findByNameOpt(provider);
+
+        assertThat(actualResult).contains(Provider.GOOGLE);
+    }
+
+    @Test
+    @DisplayName("Empty optional if provider name is null")
+    void providerNameIsNull() {
+        var actualResult = Provider.findByNameOpt(null);
+
+        assertThat(actualResult).isEmpty();
+    }
+}
@@ -0,0 +1,26 @@
+package com.dmdev.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatusTest {
+
+    @Test
+    @DisplayName("Status name is known")
+    void statusNameIsValid() {
+        var actualResult = Status.findByName("canceled");
+
+        assertThat(actualResult).isEqualTo(Status.CANCELED);
+    }
+
+    @Test
+    @DisplayName("Throws NSE exception if status name is unknown")
+    void statusNameIsNotValid() {
+        assertThrows(NoSuchElementException.class, () -> Status.findByName("dummy"));
+    }
+}
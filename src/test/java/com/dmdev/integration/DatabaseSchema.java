@@ -0,0 +1,38 @@
+package com.dmdev.integration;
+
+import lombok.experimental.UtilityClass;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@UtilityClass
+public class DatabaseSchema {
+
+    private static final String CREATE_SQL = """
+            CREATE TABLE IF NOT EXISTS subscription
+            (
+                id INT AUTO_INCREMENT PRIMARY KEY ,
+                user_id INT NOT NULL ,
+                name VARCHAR(64) NOT NULL ,
+                provider VARCHAR(16) NOT NULL ,
+                expiration_date DATETIME NOT NULL ,
+                status VARCHAR(16) NOT NULL ,
+                version INT NOT NULL DEFAULT 0 ,
+                UNIQUE (user_id, name)
+            );
+            CREATE INDEX IF NOT EXISTS subscription_status_expiration_date_idx ON subscription (status, expiration_date);
+            """;
+    private static final String CLEAN_SQL = "DELETE FROM subscription;";
+
+    public static void create(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(CREATE_SQL);
+        }
+    }
+
+    public static void clean(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(CLEAN_SQL);
+        }
+    }
+}
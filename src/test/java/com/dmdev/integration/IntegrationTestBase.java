@@ -8,33 +8,17 @@ import java.sql.SQLException;
 
 public abstract class IntegrationTestBase {
 
-    private static final String CLEAN_SQL = "DELETE FROM subscription;";
-    private static final String CREATE_SQL = """
-            CREATE TABLE IF NOT EXISTS subscription
-            (
-                id INT AUTO_INCREMENT PRIMARY KEY ,
-                user_id INT NOT NULL ,
-                name VARCHAR(64) NOT NULL ,
-                provider VARCHAR(16) NOT NULL ,
-                expiration_date DATETIME NOT NULL ,
-                status VARCHAR(16) NOT NULL ,
-                UNIQUE (user_id, name)
-            );
-            """;
-
     @BeforeAll
     static void prepareDatabase() throws SQLException {
-        try (var connection = ConnectionManager.get();
-             var statement = connection.createStatement()) {
-            statement.execute(CREATE_SQL);
+        try (var connection = ConnectionManager.get()) {
+            DatabaseSchema.create(connection);
         }
     }
 
     @BeforeEach
     void cleanData() throws SQLException {
-        try (var connection = ConnectionManager.get();
-             var statement = connection.createStatement()) {
-            statement.execute(CLEAN_SQL);
+        try (var connection = ConnectionManager.get()) {
+            DatabaseSchema.clean(connection);
         }
     }
 }
@@ -0,0 +1,79 @@
+package com.dmdev.io;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordEncoderTest {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 7, -7, 10, 1_234_567, Integer.MAX_VALUE, Integer.MIN_VALUE})
+    void putInt(int value) {
+        assertThat(encode(buffer -> RecordEncoder.putInt(value, buffer))).isEqualTo(Integer.toString(value));
+    }
+
+    @Test
+    void putInstantAsInstantToString() {
+        var random = new Random(42);
+        var min = Instant.parse("0000-01-01T00:00:00Z").getEpochSecond();
+        var max = Instant.parse("9999-12-31T23:59:59Z").getEpochSecond();
+        for (int i = 0; i < 10_000; i++) {
+            var nano = switch (i % 4) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(1000) * 1_000_000;
+                case 2 -> random.nextInt(1_000_000) * 1000;
+                default -> random.nextInt(1_000_000_000);
+            };
+            var instant = Instant.ofEpochSecond(min + (long) (random.nextDouble() * (max - min)), nano);
+
+            assertThat(encode(buffer -> RecordEncoder.putInstant(instant, buffer))).isEqualTo(instant.toString());
+        }
+        var farFuture = Instant.parse("+10000-01-01T00:00:00Z");
+        assertThat(encode(buffer -> RecordEncoder.putInstant(farFuture, buffer))).isEqualTo(farFuture.toString());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Format.class)
+    void encodedRecordsParseBack(Format format) {
+        var subscription = Subscription.builder()
+                .id(1)
+                .userId(-2)
+                .name("Андрей, \"A\"\t\\ 😀")
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.parse("2030-01-01T10:15:30.123Z"))
+                .status(Status.ACTIVE)
+                .build();
+        var encoder = RecordEncoder.of(format);
+
+        var header = encode(encoder::header);
+        var line = encode(buffer -> encoder.encode(subscription, buffer));
+
+        var parser = RecordParser.of(format, header.strip());
+        var actualResult = parser.parse(line.substring(0, line.length() - 1));
+        assertThat(actualResult.getUserId()).isEqualTo(subscription.getUserId());
+        assertThat(actualResult.getName()).isEqualTo(subscription.getName());
+        assertThat(actualResult.getProvider()).isEqualTo(subscription.getProvider().name());
+        assertThat(actualResult.getExpirationDate()).isEqualTo(subscription.getExpirationDate());
+        assertThat(line.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(encoder.maxLength(subscription));
+    }
+
+    private String encode(Consumer<ByteBuffer> encoding) {
+        buffer.clear();
+        encoding.accept(buffer);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+}
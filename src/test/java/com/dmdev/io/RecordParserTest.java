@@ -0,0 +1,57 @@
+package com.dmdev.io;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordParserTest {
+
+    private static final CreateSubscriptionDto DTO = CreateSubscriptionDto.builder()
+            .userId(1)
+            .name("Andrey \"A\", \u00e9")
+            .provider("GOOGLE")
+            .expirationDate(Instant.parse("2030-01-01T00:00:00Z"))
+            .build();
+
+    @Test
+    void parseCsvByHeaderColumns() {
+        var parser = RecordParser.of(Format.CSV, "\uFEFFprovider, comment ,userId,name,expirationDate");
+
+        var actualResult = parser.parse("GOOGLE,,1,\"Andrey \"\"A\"\", \u00e9\",2030-01-01T00:00:00Z");
+
+        assertThat(actualResult).isEqualTo(DTO);
+    }
+
+    @Test
+    void parseNdjsonSkippingUnknownKeys() {
+        var parser = RecordParser.of(Format.NDJSON, null);
+
+        var actualResult = parser.parse(" { \"comment\": null, \"userId\": 1, \"name\": \"Andrey \\\"A\\\", \\u00e9\","
+                                        + " \"provider\": \"GOOGLE\", \"expirationDate\": \"2030-01-01T00:00:00Z\", \"active\": true }");
+
+        assertThat(actualResult).isEqualTo(DTO);
+    }
+
+    @Test
+    void leaveUnparsableValuesForValidator() {
+        var parser = RecordParser.of(Format.NDJSON, null);
+
+        var actualResult = parser.parse("{\"userId\": \"one\", \"expirationDate\": \"soon\"}");
+
+        assertThat(actualResult).isEqualTo(CreateSubscriptionDto.builder().build());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "{", "{\"userId\": 1", "{\"userId\": {}}", "{\"name\": \"Andrey}", "{} {}"})
+    void rejectMalformedNdjson(String line) {
+        var parser = RecordParser.of(Format.NDJSON, null);
+
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(line));
+    }
+}
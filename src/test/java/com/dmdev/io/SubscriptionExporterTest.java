@@ -0,0 +1,119 @@
+package com.dmdev.io;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.dao.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubscriptionExporterTest {
+
+    private static final Instant EXPIRATION_DATE = Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+    private final SubscriptionExporter subscriptionExporter = new SubscriptionExporter(subscriptionDao);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Only subscriptions matching the filter are exported, ordered by id")
+    void exportFilteredCsv() {
+        var first = subscriptionDao.insert(getSubscription(1, "Andrey"));
+        subscriptionDao.insert(getSubscription(2, "Anna").setStatus(Status.CANCELED));
+        subscriptionDao.insert(getSubscription(3, "Kira").setProvider(Provider.APPLE));
+        subscriptionDao.insert(getSubscription(4, "Ivan").setExpirationDate(EXPIRATION_DATE.plus(1, ChronoUnit.DAYS)));
+        var filter = SubscriptionFilter.builder()
+                .status(Status.ACTIVE)
+                .provider(Provider.GOOGLE)
+                .expiresBefore(EXPIRATION_DATE.plus(1, ChronoUnit.DAYS))
+                .build();
+        var target = directory.resolve("subscriptions.csv");
+
+        var actualResult = subscriptionExporter.export(target, filter);
+
+        assertThat(actualResult.getRecords()).isEqualTo(1);
+        assertThat(readAllLines(target)).containsExactly(
+                "id,userId,name,provider,expirationDate,status",
+                first.getId() + ",1,Andrey,GOOGLE," + EXPIRATION_DATE + ",ACTIVE");
+    }
+
+    @Test
+    @DisplayName("Gzipped NDJSON export larger than the buffer imports back unchanged")
+    void exportGzippedNdjsonRoundTrip() {
+        var subscriptions = subscriptionDao.insertAll(IntStream.range(0, 5000)
+                .mapToObj(i -> getSubscription(i, "Andrey \"" + i + "\""))
+                .toList());
+        var target = directory.resolve("subscriptions.ndjson.gz");
+
+        var actualResult = subscriptionExporter.export(target, SubscriptionFilter.all());
+
+        assertThat(actualResult.getRecords()).isEqualTo(5000);
+        var importedDao = new InMemorySubscriptionDao();
+        var importer = new SubscriptionImporter(importedDao, CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(), 2, 100, 100, 4);
+        assertThat(importer.importFile(target, error -> {
+        }).getImported()).isEqualTo(5000);
+        assertThat(importedDao.findAll()).isEqualTo(subscriptions);
+    }
+
+    @Test
+    @DisplayName("Failed export leaves the previous file in place and no temporary file behind")
+    @SneakyThrows
+    void failedExportKeepsPreviousFile() {
+        var target = directory.resolve("subscriptions.csv");
+        Files.writeString(target, "previous export\n");
+        var failingDao = new InMemorySubscriptionDao() {
+            @Override
+            public Stream<Subscription> streamAll(SubscriptionFilter filter) {
+                return super.streamAll(filter).map(subscription -> {
+                    if (subscription.getUserId() == 2) {
+                        throw new IllegalStateException("connection lost");
+                    }
+                    return subscription;
+                });
+            }
+        };
+        failingDao.insertAll(List.of(getSubscription(1, "Andrey"), getSubscription(2, "Anna")));
+
+        assertThrows(IllegalStateException.class,
+                () -> new SubscriptionExporter(failingDao).export(target, SubscriptionFilter.all()));
+
+        assertThat(readAllLines(target)).containsExactly("previous export");
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(target);
+        }
+    }
+
+    @SneakyThrows
+    private static List<String> readAllLines(Path path) {
+        return Files.readAllLines(path);
+    }
+
+    private static Subscription getSubscription(Integer userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.GOOGLE)
+                .expirationDate(EXPIRATION_DATE)
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,211 @@
+package com.dmdev.io;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.Error;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SubscriptionImporterTest {
+
+    private static final Instant EXPIRATION_DATE = Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+    private final SubscriptionImporter subscriptionImporter = new SubscriptionImporter(
+            subscriptionDao,
+            CreateSubscriptionMapper.getInstance(),
+            CreateSubscriptionValidator.getInstance(),
+            3,
+            2,
+            2,
+            2);
+    private final List<ImportError> errors = new ArrayList<>();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Rejected CSV lines are reported with their error codes and the rest is imported")
+    void importCsv() {
+        subscriptionDao.insert(getSubscription(4, "Kira").setProvider(Provider.APPLE));
+        var source = write("subscriptions.csv",
+                "name,userId,provider,expirationDate",
+                "Andrey,1,GOOGLE," + EXPIRATION_DATE,
+                "\"Anna, \"\"Jr\"\"\",2,APPLE," + EXPIRATION_DATE,
+                ",3,GOOGLE,tomorrow",
+                "Kira,4,GOOGLE," + EXPIRATION_DATE,
+                "",
+                "Ivan,5,GOOGLE",
+                "Petr,6,GOOGLE," + EXPIRATION_DATE);
+
+        var actualResult = subscriptionImporter.importFile(source, errors::add);
+
+        assertThat(actualResult.getRecords()).isEqualTo(6);
+        assertThat(actualResult.getImported()).isEqualTo(3);
+        assertThat(actualResult.getRejected()).isEqualTo(3);
+        assertThat(errors).containsExactly(
+                ImportError.of(4, Error.of(101, "name is invalid")),
+                ImportError.of(4, Error.of(103, "expirationDate is invalid")),
+                ImportError.of(5, SubscriptionImporter.PROVIDER_CONFLICT),
+                ImportError.of(7, SubscriptionImporter.MALFORMED_RECORD));
+        assertThat(subscriptionDao.findByUserId(2)).extracting(Subscription::getName).containsExactly("Anna, \"Jr\"");
+    }
+
+    @Test
+    @DisplayName("Gzipped NDJSON is imported in file order, so the last line for a subscription wins")
+    void importGzippedNdjsonInFileOrder() {
+        var lines = IntStream.rangeClosed(1, 50)
+                .mapToObj(i -> String.format("{\"userId\": %d, \"name\": \"Andrey\", \"provider\": \"GOOGLE\", \"expirationDate\": \"%s\"}",
+                        i % 5, EXPIRATION_DATE.plus(i, ChronoUnit.DAYS)))
+                .collect(Collectors.toList());
+        lines.add("{\"userId\": 1, \"name\": [\"Andrey\"]}");
+        var source = writeGzip("subscriptions.ndjson.gz", lines);
+
+        var actualResult = subscriptionImporter.importFile(source, errors::add);
+
+        assertThat(actualResult.getImported()).isEqualTo(50);
+        assertThat(errors).containsExactly(ImportError.of(51, SubscriptionImporter.MALFORMED_RECORD));
+        assertThat(subscriptionDao.findAll())
+                .extracting(Subscription::getExpirationDate)
+                .containsExactlyInAnyOrderElementsOf(IntStream.rangeClosed(46, 50)
+                        .mapToObj(i -> EXPIRATION_DATE.plus(i, ChronoUnit.DAYS))
+                        .toList());
+    }
+
+    @Test
+    @DisplayName("Failed batch is retried one line at a time, so only the failing line is rejected")
+    void failedBatchRejectsOnlyFailingLine() {
+        var failingImporter = new SubscriptionImporter(
+                new FailingSubscriptionDao(3),
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                1,
+                10,
+                10,
+                1);
+        var source = write("subscriptions.csv",
+                "name,userId,provider,expirationDate",
+                "Andrey,1,GOOGLE," + EXPIRATION_DATE,
+                "Anna,2,GOOGLE," + EXPIRATION_DATE,
+                "Kira,3,GOOGLE," + EXPIRATION_DATE,
+                "Petr,4,GOOGLE," + EXPIRATION_DATE);
+
+        var actualResult = failingImporter.importFile(source, errors::add);
+
+        assertThat(actualResult.getImported()).isEqualTo(3);
+        assertThat(actualResult.getRejected()).isEqualTo(1);
+        assertThat(errors).containsExactly(ImportError.of(4, SubscriptionImporter.WRITE_FAILED));
+    }
+
+    @Test
+    @DisplayName("Unexpected failure of a worker fails the import instead of leaving it waiting")
+    void failedWorkerFailsImport() {
+        var createSubscriptionMapper = mock(CreateSubscriptionMapper.class);
+        doAnswer(invocation -> {
+            CreateSubscriptionDto dto = invocation.getArgument(0);
+            if (dto.getUserId() == 3) {
+                throw new IllegalStateException("mapper failed");
+            }
+            return CreateSubscriptionMapper.getInstance().map(dto);
+        }).when(createSubscriptionMapper).map(any());
+        var failingImporter = new SubscriptionImporter(
+                subscriptionDao,
+                createSubscriptionMapper,
+                CreateSubscriptionValidator.getInstance(),
+                3,
+                2,
+                2,
+                2);
+        var source = write("subscriptions.csv", IntStream.rangeClosed(0, 50)
+                .mapToObj(i -> i == 0 ? "name,userId,provider,expirationDate" : "Andrey," + i + ",GOOGLE," + EXPIRATION_DATE)
+                .toArray(String[]::new));
+
+        var exception = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> failingImporter.importFile(source, errors::add)));
+
+        assertThat(exception).hasMessage("mapper failed");
+    }
+
+    @SneakyThrows
+    private Path write(String fileName, String... lines) {
+        return Files.write(directory.resolve(fileName), List.of(lines));
+    }
+
+    @SneakyThrows
+    private Path writeGzip(String fileName, List<String> lines) {
+        var path = directory.resolve(fileName);
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(path))) {
+            outputStream.write(String.join("\n", lines).getBytes());
+        }
+        return path;
+    }
+
+    private static Subscription getSubscription(Integer userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.GOOGLE)
+                .expirationDate(EXPIRATION_DATE)
+                .status(Status.ACTIVE)
+                .build();
+    }
+
+    /**
+     * Fails upserts of the given user with an SQLException, as a constraint violation would.
+     */
+    private static class FailingSubscriptionDao extends InMemorySubscriptionDao {
+
+        private final int failingUserId;
+
+        private FailingSubscriptionDao(int failingUserId) {
+            this.failingUserId = failingUserId;
+        }
+
+        @Override
+        public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+            checkUser(entity);
+            return super.upsertByUserIdAndName(entity);
+        }
+
+        @Override
+        public List<Optional<Subscription>> upsertAllByUserIdAndName(List<Subscription> entities) {
+            entities.forEach(this::checkUser);
+            return super.upsertAllByUserIdAndName(entities);
+        }
+
+        @SneakyThrows
+        private void checkUser(Subscription entity) {
+            if (entity.getUserId() == failingUserId) {
+                throw new SQLException("unique constraint violated", "23505");
+            }
+        }
+    }
+}
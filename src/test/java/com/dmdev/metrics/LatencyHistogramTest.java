@@ -0,0 +1,46 @@
+package com.dmdev.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Every value falls into a bucket whose upper bound is within 12.5%")
+    void bucketPrecision() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            var upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+
+            assertThat(upperBound).isGreaterThanOrEqualTo(value);
+            assertThat((double) upperBound).isCloseTo(value, within(value * 0.125 + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Percentiles of uniform values")
+    void percentiles() {
+        var histogram = new LatencyHistogram();
+        for (int value = 1; value <= 1_000; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1_000);
+        assertThat(histogram.getMean()).isEqualTo(500.5);
+        assertThat(histogram.getMax()).isEqualTo(1_000);
+        assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(500, within(63.0));
+        assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(990, within(124.0));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1_000);
+    }
+
+    @Test
+    @DisplayName("Empty histogram reports zeros")
+    void emptyHistogram() {
+        var histogram = new LatencyHistogram();
+
+        assertThat(histogram.getValueAtPercentile(99)).isZero();
+        assertThat(histogram.getMean()).isZero();
+    }
+}
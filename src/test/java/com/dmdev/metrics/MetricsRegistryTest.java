@@ -0,0 +1,55 @@
+package com.dmdev.metrics;
+
+import com.dmdev.exception.SubscriptionException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("Successful and failed calls are counted by exception type")
+    void recordCallsAndErrors() {
+        var operation = MetricsRegistry.operation("MetricsRegistryTest.recordCallsAndErrors");
+
+        operation.record(() -> "ok");
+        assertThrows(SubscriptionException.class, () -> operation.record(() -> {
+            throw new SubscriptionException("failed");
+        }));
+        assertThrows(SQLException.class, () -> operation.record(MetricsRegistryTest::failWithSqlException));
+
+        var actualResult = operation.snapshot();
+        assertThat(actualResult.getCount()).isEqualTo(3);
+        assertThat(actualResult.getErrorCount()).isEqualTo(2);
+        assertThat(actualResult.getErrorCountByType()).isEqualTo(Map.of("SubscriptionException", 1L, "SQLException", 1L));
+        assertThat(actualResult.getMaxNanos()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Same operation name returns same metrics registered as MBean")
+    void registerMBean() throws JMException {
+        var name = "MetricsRegistryTest.registerMBean";
+
+        var operation = MetricsRegistry.operation(name);
+
+        assertThat(MetricsRegistry.operation(name)).isSameAs(operation);
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(MetricsRegistry.objectName(name))).isTrue();
+        assertThat(MetricsRegistry.snapshot()).extracting(OperationSnapshot::getName).contains(name);
+    }
+
+    /**
+     * Throws a checked exception undeclared, as DAO methods do.
+     */
+    @SneakyThrows
+    private static String failWithSqlException() {
+        throw new SQLException("failed");
+    }
+}
@@ -0,0 +1,86 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.SubscriptionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncSubscriptionServiceTest {
+
+    @Mock
+    private SubscriptionService subscriptionService;
+    private AsyncSubscriptionService asyncSubscriptionService;
+
+    @BeforeEach
+    void init() {
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService, Executors.newCachedThreadPool(), 1);
+    }
+
+    @AfterEach
+    void close() {
+        asyncSubscriptionService.close();
+    }
+
+    @Test
+    @DisplayName("Upsert completes with subscription and releases permit")
+    void upsertAsync() {
+        var dto = CreateSubscriptionDto.builder().userId(22).build();
+        var subscription = Subscription.builder().id(1).build();
+        doReturn(subscription).when(subscriptionService).upsert(dto);
+
+        var actualResult = asyncSubscriptionService.upsertAsync(dto).join();
+
+        assertThat(actualResult).isEqualTo(subscription);
+        assertThat(asyncSubscriptionService.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Service exception completes future exceptionally")
+    void cancelAsyncFails() {
+        doThrow(new SubscriptionException("not active")).when(subscriptionService).cancel(1);
+
+        var actualResult = asyncSubscriptionService.cancelAsync(1);
+
+        var exception = assertThrows(CompletionException.class, actualResult::join);
+        assertThat(exception).hasCauseInstanceOf(SubscriptionException.class);
+    }
+
+    @Test
+    @DisplayName("Rejects immediately when all permits are in flight")
+    void rejectWhenOverloaded() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(subscriptionService).expire(1);
+
+        var running = asyncSubscriptionService.expireAsync(1);
+        started.await();
+        var rejected = asyncSubscriptionService.expireAsync(2);
+        release.countDown();
+
+        var exception = assertThrows(CompletionException.class, rejected::join);
+        assertThat(exception).hasCauseInstanceOf(RejectedExecutionException.class);
+        running.join();
+    }
+}
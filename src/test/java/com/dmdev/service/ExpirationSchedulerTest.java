@@ -0,0 +1,167 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpirationSchedulerTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+    private final MutableClock clock = new MutableClock();
+    private final ExpirationScheduler expirationScheduler =
+            new ExpirationScheduler(subscriptionDao, clock, Duration.ofSeconds(1), 4, 2, 2);
+
+    @AfterEach
+    void close() {
+        expirationScheduler.close();
+    }
+
+    @Test
+    @DisplayName("Due subscriptions are expired in batches once their expiration date passes")
+    void expireDueSubscriptions() {
+        subscriptionDao.insertAll(List.of(
+                getSubscription(1, START.plusSeconds(5)),
+                getSubscription(2, START.plusSeconds(5)),
+                getSubscription(3, START.plusSeconds(5)),
+                getSubscription(4, START.plusSeconds(8))));
+
+        assertThat(expirationScheduler.tick()).isZero();
+        clock.now = START.plusSeconds(5);
+
+        assertThat(expirationScheduler.tick()).isEqualTo(3);
+        assertThat(subscriptionDao.findAll())
+                .extracting(Subscription::getStatus)
+                .containsExactly(Status.EXPIRED, Status.EXPIRED, Status.EXPIRED, Status.ACTIVE);
+        assertThat(expirationScheduler.getScheduledCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Subscriptions beyond the horizon are loaded once the horizon reaches them")
+    void loadFarTermSubscriptionsLazily() {
+        var subscription = subscriptionDao.insert(getSubscription(1, START.plusSeconds(40)));
+
+        expirationScheduler.tick();
+        assertThat(expirationScheduler.getScheduledCount()).isZero();
+
+        clock.now = START.plusSeconds(32);
+        expirationScheduler.tick();
+        assertThat(expirationScheduler.getScheduledCount()).isEqualTo(1);
+
+        clock.now = START.plusSeconds(40);
+        assertThat(expirationScheduler.tick()).isEqualTo(1);
+        assertThat(subscriptionDao.findById(subscription.getId()))
+                .hasValueSatisfying(actual -> assertThat(actual.getStatus()).isEqualTo(Status.EXPIRED));
+    }
+
+    @Test
+    @DisplayName("Extended subscriptions are rescheduled and canceled ones are unscheduled")
+    void followSavedAndCanceledSubscriptions() {
+        var extended = subscriptionDao.insert(getSubscription(1, START.plusSeconds(5)));
+        var canceled = subscriptionDao.insert(getSubscription(2, START.plusSeconds(5)));
+        expirationScheduler.tick();
+
+        extended.setExpirationDate(START.plusSeconds(10));
+        subscriptionDao.update(extended);
+        expirationScheduler.onSaved(extended);
+        subscriptionDao.cancel(canceled.getId());
+        expirationScheduler.onCanceled(canceled.getId());
+        clock.now = START.plusSeconds(5);
+
+        assertThat(expirationScheduler.tick()).isZero();
+        assertThat(expirationScheduler.getScheduledCount()).isEqualTo(1);
+        clock.now = START.plusSeconds(10);
+        assertThat(expirationScheduler.tick()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Batch failing with SQLException is put back into the wheel and expired on a later tick")
+    void failedBatchIsRescheduled() {
+        var failingSubscriptionDao = new FailingSubscriptionDao();
+        var scheduler = new ExpirationScheduler(failingSubscriptionDao, clock, Duration.ofSeconds(1), 4, 2, 2);
+        failingSubscriptionDao.insert(getSubscription(1, START.plusSeconds(5)));
+        scheduler.tick();
+        clock.now = START.plusSeconds(5);
+        failingSubscriptionDao.failing = true;
+
+        assertThat(scheduler.tick()).isZero();
+        assertThat(scheduler.getScheduledCount()).isEqualTo(1);
+
+        failingSubscriptionDao.failing = false;
+        clock.now = START.plusSeconds(6);
+        assertThat(scheduler.tick()).isEqualTo(1);
+        scheduler.close();
+    }
+
+    @Test
+    @DisplayName("Subscriptions overdue at startup are left to the overdue sweep")
+    void firstLoadStartsAtStartup() {
+        subscriptionDao.insert(getSubscription(1, START.minusSeconds(5)));
+        subscriptionDao.insert(getSubscription(2, START.plusSeconds(5)));
+
+        expirationScheduler.tick();
+
+        assertThat(expirationScheduler.getScheduledCount()).isEqualTo(1);
+    }
+
+    private static Subscription getSubscription(Integer userId, Instant expirationDate) {
+        return Subscription.builder()
+                .userId(userId)
+                .name("Andrey")
+                .provider(Provider.GOOGLE)
+                .expirationDate(expirationDate)
+                .status(Status.ACTIVE)
+                .build();
+    }
+
+    private static class FailingSubscriptionDao extends InMemorySubscriptionDao {
+
+        private boolean failing;
+
+        @Override
+        @SneakyThrows
+        public int expireDue(Collection<Integer> ids, Instant now) {
+            if (failing) {
+                throw new SQLException("connection lost", "08006");
+            }
+            return super.expireDue(ids, now);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = START;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
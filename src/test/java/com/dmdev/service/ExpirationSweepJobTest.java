@@ -0,0 +1,35 @@
+package com.dmdev.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ExpirationSweepJobTest {
+
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    @Test
+    @DisplayName("SQLException of a sweep is logged instead of escaping, so the next run still happens")
+    void failedSweepDoesNotEscape() {
+        doAnswer(invocation -> {
+            throw new SQLException("table not found");
+        }).when(subscriptionService).expireOverdue();
+        var expirationSweepJob = new ExpirationSweepJob(subscriptionService);
+
+        assertDoesNotThrow(expirationSweepJob::run);
+        assertDoesNotThrow(expirationSweepJob::run);
+
+        verify(subscriptionService, times(2)).expireOverdue();
+    }
+}
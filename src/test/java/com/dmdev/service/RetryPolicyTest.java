@@ -0,0 +1,62 @@
+package com.dmdev.service;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.OptimisticLockException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(1));
+
+    @Test
+    void retriesUntilActionSucceeds() {
+        var attempts = new AtomicInteger();
+
+        var actualResult = retryPolicy.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw conflict();
+            }
+            return "saved";
+        });
+
+        assertThat(actualResult).isEqualTo("saved");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void rethrowsConflictAfterMaxAttempts() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockException.class, () -> retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            throw conflict();
+        }));
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void doesNotRetryOtherExceptions() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(IllegalArgumentException.class, () -> retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException();
+        }));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void rejectsNonPositiveMaxAttempts() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, Duration.ZERO));
+    }
+
+    private static OptimisticLockException conflict() {
+        return new OptimisticLockException(Subscription.class, 1, 0);
+    }
+}
@@ -1,6 +1,6 @@
 package com.dmdev.service;
 
-import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.JdbcSubscriptionDao;
 import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.integration.IntegrationTestBase;
 import com.dmdev.mapper.CreateSubscriptionMapper;
@@ -22,7 +22,7 @@ public class SubscriptionServiceIT extends IntegrationTestBase {
 
     @BeforeEach
     void init() {
-        var subscriptionDao = SubscriptionDao.getInstance();
+        var subscriptionDao = JdbcSubscriptionDao.getInstance();
         subscriptionService = new SubscriptionService(
                 subscriptionDao,
                 CreateSubscriptionMapper.getInstance(),
@@ -41,6 +41,16 @@ public class SubscriptionServiceIT extends IntegrationTestBase {
         Assertions.assertNotNull(actualResult.getId());
     }
 
+    @Test
+    @DisplayName("Upsert of the same subscription updates existing row")
+    void upsertExistingSubscription() {
+        var subscription = subscriptionService.upsert(getSubscriptionDto());
+
+        var actualResult = subscriptionService.upsert(getSubscriptionDto());
+
+        Assertions.assertEquals(subscription.getId(), actualResult.getId());
+    }
+
     private static CreateSubscriptionDto getSubscriptionDto() {
         return CreateSubscriptionDto.builder()
                 .userId(22)
@@ -5,6 +5,7 @@ import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.entity.Provider;
 import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
+import com.dmdev.exception.OptimisticLockException;
 import com.dmdev.exception.SubscriptionException;
 import com.dmdev.exception.ValidationException;
 import com.dmdev.mapper.CreateSubscriptionMapper;
@@ -23,12 +24,15 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
@@ -57,13 +61,41 @@ class SubscriptionServiceTest {
             var subscription = getSubscription();
 
             doReturn(new ValidationResult()).when(createSubscriptionValidator).validate(createSubscriptionDto);
-            doReturn(List.of(subscription)).when(subscriptionDao).findByUserId(subscription.getUserId());
-            doReturn(subscription).when(subscriptionDao).upsert(subscription);
+            doReturn(subscription).when(createSubscriptionMapper).map(createSubscriptionDto);
+            doReturn(Optional.of(subscription)).when(subscriptionDao).upsertByUserIdAndName(subscription);
 
             var actualResult = subscriptionService.upsert(createSubscriptionDto);
 
             assertThat(actualResult).isEqualTo(subscription);
-            verify(subscriptionDao).upsert(subscription);
+            verify(subscriptionDao).upsertByUserIdAndName(subscription);
+        }
+
+        @Test
+        @DisplayName("Listeners are notified of the upserted subscription")
+        void upsertNotifiesListeners() {
+            var createSubscriptionDto = getSubscriptionDto();
+            var subscription = getSubscription();
+            var listener = mock(SubscriptionListener.class);
+            subscriptionService.addListener(listener);
+            doReturn(new ValidationResult()).when(createSubscriptionValidator).validate(createSubscriptionDto);
+            doReturn(subscription).when(createSubscriptionMapper).map(createSubscriptionDto);
+            doReturn(Optional.of(subscription)).when(subscriptionDao).upsertByUserIdAndName(subscription);
+
+            subscriptionService.upsert(createSubscriptionDto);
+
+            verify(listener).onSaved(subscription);
+        }
+
+        @Test
+        @DisplayName("Throws SubscriptionException if subscription with the same name belongs to another provider")
+        void upsertShouldThrowExceptionIfProviderDiffers() {
+            var createSubscriptionDto = getSubscriptionDto();
+            var subscription = getSubscription();
+            doReturn(new ValidationResult()).when(createSubscriptionValidator).validate(createSubscriptionDto);
+            doReturn(subscription).when(createSubscriptionMapper).map(createSubscriptionDto);
+            doReturn(Optional.empty()).when(subscriptionDao).upsertByUserIdAndName(subscription);
+
+            assertThrows(SubscriptionException.class, () -> subscriptionService.upsert(createSubscriptionDto));
         }
 
         @Test
@@ -79,6 +111,36 @@ class SubscriptionServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Subscription update tests")
+    class UpdateTest {
+
+        @Test
+        @DisplayName("Change is re-applied to fresh state after a version conflict")
+        void updateRetriesOnConflict() {
+            var stale = getSubscription().setVersion(0);
+            var fresh = getSubscription().setVersion(1);
+            doReturn(Optional.of(stale), Optional.of(fresh)).when(subscriptionDao).findByIdOnPrimary(1);
+            doThrow(new OptimisticLockException(Subscription.class, 1, 0)).when(subscriptionDao).update(stale);
+            doReturn(fresh).when(subscriptionDao).update(fresh);
+
+            var actualResult = subscriptionService.update(1, subscription -> subscription.setName("Renamed"));
+
+            assertThat(actualResult).isSameAs(fresh);
+            assertThat(fresh.getName()).isEqualTo("Renamed");
+            verify(subscriptionDao, times(2)).findByIdOnPrimary(1);
+        }
+
+        @Test
+        @DisplayName("Throws IAE if no subscription present")
+        void updateShouldThrowIllegalArgumentExceptionIfIdNotValid() {
+            doReturn(Optional.empty()).when(subscriptionDao).findByIdOnPrimary(1);
+
+            assertThrows(IllegalArgumentException.class, () -> subscriptionService.update(1, subscription -> {
+            }));
+        }
+    }
+
     @Nested
     @DisplayName("Subscription cancel tests")
     class CancelTest {
@@ -86,42 +148,30 @@ class SubscriptionServiceTest {
         @Test
         @DisplayName("Subscription is cancelled successfully")
         void cancelSuccess() {
-            var subscription = getSubscription();
-            var cancelledSubscription = Subscription.builder()
-                    .id(1)
-                    .userId(22)
-                    .name("Andrey")
-                    .provider(Provider.GOOGLE)
-                    .status(Status.CANCELED)
-                    .expirationDate(Instant.now()
-                            .plus(Duration.ofDays(10))
-                            .truncatedTo(ChronoUnit.DAYS))
-                    .build();
-            doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
-
-            subscriptionService.cancel(subscription.getId());
-
-            assertThat(subscription).isEqualTo(cancelledSubscription);
-            verify(subscriptionDao).update(subscription);
+            doReturn(true).when(subscriptionDao).cancel(1);
+
+            subscriptionService.cancel(1);
+
+            verify(subscriptionDao).cancel(1);
+            verify(subscriptionDao, never()).existsByIdOnPrimary(1);
         }
 
         @Test
         @DisplayName("Throws SubscriptionException if subscription status is not ACTIVE")
         void shouldThrowSubscriptionExceptionExceptionIfSubscriptionNotActive() {
-            var subscription = getSubscription();
-
-            subscription.setStatus(Status.CANCELED);
-            doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
+            doReturn(false).when(subscriptionDao).cancel(1);
+            doReturn(true).when(subscriptionDao).existsByIdOnPrimary(1);
 
-            assertThrows(SubscriptionException.class, () -> subscriptionService.cancel(subscription.getId()));
+            assertThrows(SubscriptionException.class, () -> subscriptionService.cancel(1));
         }
 
         @Test
         @DisplayName("Throws IAE if no subscription present")
         void shouldThrowIllegalArgumentExceptionIfIdNotValid() {
-            var subscription = new Subscription();
+            doReturn(false).when(subscriptionDao).cancel(1);
+            doReturn(false).when(subscriptionDao).existsByIdOnPrimary(1);
 
-            assertThrows(IllegalArgumentException.class, () -> subscriptionService.cancel(subscription.getId()));
+            assertThrows(IllegalArgumentException.class, () -> subscriptionService.cancel(1));
         }
     }
 
@@ -129,41 +179,49 @@ class SubscriptionServiceTest {
     @DisplayName("Subscription expire tests")
     class ExpireTests {
 
+        private final Instant now = Instant.parse("2023-03-01T10:00:00Z");
+
         @Test
         @DisplayName("Subscription is expired successfully")
         void expireSuccess() {
-            var subscription = getSubscription();
-            var expiredSubscription = Subscription.builder()
-                    .id(1)
-                    .userId(22)
-                    .name("Andrey")
-                    .provider(Provider.GOOGLE)
-                    .status(Status.EXPIRED)
-                    .expirationDate(Instant.now(clock))
-                    .build();
-            doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
-
-            subscriptionService.expire(subscription.getId());
-
-            assertThat(expiredSubscription).isEqualTo(subscription);
+            doReturn(now).when(clock).instant();
+            doReturn(true).when(subscriptionDao).expire(1, now);
+
+            subscriptionService.expire(1);
+
+            verify(subscriptionDao).expire(1, now);
+            verify(subscriptionDao, never()).existsByIdOnPrimary(1);
         }
 
         @Test
         @DisplayName("Throws SubscriptionException if subscription status is not EXPIRED")
         void shouldThrowSubscriptionExceptionExceptionIfSubscriptionExpired() {
-            var subscription = getSubscription();
-            subscription.setStatus(Status.EXPIRED);
-            doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
+            doReturn(now).when(clock).instant();
+            doReturn(false).when(subscriptionDao).expire(1, now);
+            doReturn(true).when(subscriptionDao).existsByIdOnPrimary(1);
 
-            assertThrows(SubscriptionException.class, () -> subscriptionService.expire(subscription.getId()));
+            assertThrows(SubscriptionException.class, () -> subscriptionService.expire(1));
         }
 
         @Test
         @DisplayName("Throws IAE if no subscription present")
         void expireShouldThrowIllegalArgumentExceptionIfIdNotValid() {
-            var subscription = new Subscription();
+            doReturn(now).when(clock).instant();
+            doReturn(false).when(subscriptionDao).expire(1, now);
+            doReturn(false).when(subscriptionDao).existsByIdOnPrimary(1);
+
+            assertThrows(IllegalArgumentException.class, () -> subscriptionService.expire(1));
+        }
+
+        @Test
+        @DisplayName("Overdue subscriptions are expired in chunks")
+        void expireOverdue() {
+            doReturn(now).when(clock).instant();
+            doReturn(3).when(subscriptionDao).expireOverdue(now, 2);
+
+            var actualResult = subscriptionService.expireOverdue();
 
-            assertThrows(IllegalArgumentException.class, () -> subscriptionService.expire(subscription.getId()));
+            assertThat(actualResult).isEqualTo(3);
         }
     }
 
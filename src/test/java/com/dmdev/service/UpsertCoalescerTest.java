@@ -0,0 +1,211 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.SubscriptionException;
+import com.dmdev.exception.ValidationException;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class UpsertCoalescerTest {
+
+    @Mock
+    private SubscriptionDao subscriptionDao;
+    @Mock
+    private SubscriptionListener listener;
+    private SubscriptionService subscriptionService;
+    private UpsertCoalescer upsertCoalescer;
+
+    @BeforeEach
+    void init() {
+        subscriptionService = new SubscriptionService(
+                subscriptionDao,
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                Clock.systemUTC());
+        upsertCoalescer = new UpsertCoalescer(
+                subscriptionService,
+                Duration.ofSeconds(10),
+                2,
+                10);
+    }
+
+    @AfterEach
+    void close() {
+        upsertCoalescer.close();
+    }
+
+    @Test
+    @DisplayName("Concurrent upserts are written in one batch and each caller gets its own row")
+    void upsertsAreCoalesced() {
+        doAnswer(invocation -> {
+            List<Subscription> subscriptions = invocation.getArgument(0);
+            return subscriptions.stream()
+                    .map(subscription -> Optional.of(subscription.toBuilder().id(subscription.getUserId()).build()))
+                    .toList();
+        }).when(subscriptionDao).upsertAllByUserIdAndName(anyList());
+
+        var first = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var second = upsertCoalescer.upsert(getSubscriptionDto(2));
+
+        assertThat(first.join().getId()).isEqualTo(1);
+        assertThat(second.join().getId()).isEqualTo(2);
+        verify(subscriptionDao).upsertAllByUserIdAndName(anyList());
+    }
+
+    @Test
+    @DisplayName("Listeners of the service are told about coalesced upserts")
+    void listenersSeeCoalescedUpserts() {
+        subscriptionService.addListener(listener);
+        doAnswer(invocation -> {
+            List<Subscription> subscriptions = invocation.getArgument(0);
+            return List.of(Optional.of(subscriptions.get(0)), Optional.<Subscription>empty());
+        }).when(subscriptionDao).upsertAllByUserIdAndName(anyList());
+
+        var first = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var second = upsertCoalescer.upsert(getSubscriptionDto(2));
+
+        assertThrows(CompletionException.class, second::join);
+        verify(listener).onSaved(first.join());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    @DisplayName("Provider conflict fails only the conflicting upsert")
+    void providerConflictFailsSingleUpsert() {
+        doAnswer(invocation -> {
+            List<Subscription> subscriptions = invocation.getArgument(0);
+            return List.of(Optional.of(subscriptions.get(0)), Optional.<Subscription>empty());
+        }).when(subscriptionDao).upsertAllByUserIdAndName(anyList());
+
+        var first = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var second = upsertCoalescer.upsert(getSubscriptionDto(2));
+
+        assertThat(first.join().getUserId()).isEqualTo(1);
+        var exception = assertThrows(CompletionException.class, second::join);
+        assertThat(exception).hasCauseInstanceOf(SubscriptionException.class);
+    }
+
+    @Test
+    @DisplayName("Failed batch is retried one upsert at a time")
+    void failedBatchFallsBackToSingleUpserts() {
+        doThrow(new IllegalStateException("deadlock")).when(subscriptionDao).upsertAllByUserIdAndName(anyList());
+        doAnswer(invocation -> {
+            Subscription subscription = invocation.getArgument(0);
+            if (subscription.getUserId() == 2) {
+                throw new IllegalStateException("constraint violation");
+            }
+            return Optional.of(subscription);
+        }).when(subscriptionDao).upsertByUserIdAndName(any());
+
+        var first = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var second = upsertCoalescer.upsert(getSubscriptionDto(2));
+
+        assertThat(first.join().getUserId()).isEqualTo(1);
+        var exception = assertThrows(CompletionException.class, second::join);
+        assertThat(exception).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("SQLException fails the affected upserts and keeps the flusher running")
+    void sqlExceptionFailsUpsertsAndKeepsFlushing() {
+        doAnswer(invocation -> {
+            throw new SQLException("table not found");
+        }).when(subscriptionDao).upsertAllByUserIdAndName(anyList());
+        doAnswer(invocation -> {
+            Subscription subscription = invocation.getArgument(0);
+            if (subscription.getUserId() == 2) {
+                throw new SQLException("table not found");
+            }
+            return Optional.of(subscription);
+        }).when(subscriptionDao).upsertByUserIdAndName(any());
+
+        var first = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var second = upsertCoalescer.upsert(getSubscriptionDto(2));
+
+        assertThat(first.orTimeout(5, TimeUnit.SECONDS).join().getUserId()).isEqualTo(1);
+        var exception = assertThrows(CompletionException.class, second.orTimeout(5, TimeUnit.SECONDS)::join);
+        assertThat(exception).hasCauseInstanceOf(SQLException.class);
+
+        var third = upsertCoalescer.upsert(getSubscriptionDto(1));
+        var fourth = upsertCoalescer.upsert(getSubscriptionDto(3));
+
+        assertThat(third.orTimeout(5, TimeUnit.SECONDS).join().getUserId()).isEqualTo(1);
+        assertThat(fourth.orTimeout(5, TimeUnit.SECONDS).join().getUserId()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Invalid DTO fails without reaching the queue")
+    void invalidDtoIsRejectedImmediately() {
+        var dto = CreateSubscriptionDto.builder().build();
+
+        var actualResult = upsertCoalescer.upsert(dto);
+
+        var exception = assertThrows(CompletionException.class, actualResult::join);
+        assertThat(exception).hasCauseInstanceOf(ValidationException.class);
+        verifyNoInteractions(subscriptionDao);
+    }
+
+    @Test
+    @DisplayName("Pending upserts are rejected on close")
+    void pendingUpsertsAreRejectedOnClose() {
+        var pending = upsertCoalescer.upsert(getSubscriptionDto(1));
+
+        upsertCoalescer.close();
+
+        var exception = assertThrows(CompletionException.class, pending::join);
+        assertThat(exception).hasCauseInstanceOf(RejectedExecutionException.class);
+        verifyNoInteractions(subscriptionDao);
+    }
+
+    @Test
+    @DisplayName("Upserts submitted after close are rejected")
+    void upsertAfterCloseIsRejected() {
+        upsertCoalescer.close();
+
+        var actualResult = upsertCoalescer.upsert(getSubscriptionDto(1));
+
+        var exception = assertThrows(CompletionException.class, actualResult::join);
+        assertThat(exception).hasCauseInstanceOf(RejectedExecutionException.class);
+        verifyNoInteractions(subscriptionDao);
+    }
+
+    private static CreateSubscriptionDto getSubscriptionDto(int userId) {
+        return CreateSubscriptionDto.builder()
+                .userId(userId)
+                .name("Andrey")
+                .provider("Google")
+                .expirationDate(Instant.now().plus(Duration.ofDays(10)).truncatedTo(ChronoUnit.DAYS))
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1";
+
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private ConnectionPool pool;
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Returned connection is reused instead of opening a new one")
+    void reuseReturnedConnection() throws SQLException {
+        pool = createPool(0, 2, Duration.ofMinutes(1));
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        try (var connection = pool.borrow()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+
+        assertThat(openedConnections).hasValue(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Throws SQLTransientConnectionException if pool is exhausted")
+    void acquireTimeout() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+
+        try (var ignored = pool.borrow()) {
+            assertThrows(SQLTransientConnectionException.class, pool::borrow);
+        }
+    }
+
+    @Test
+    @DisplayName("Returned proxy can not be used after close")
+    void closedLeaseIsUnusable() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+
+        var connection = pool.borrow();
+        connection.close();
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    @DisplayName("Uncommitted work is rolled back when connection is returned")
+    void resetOnReturn() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+
+        try (var connection = pool.borrow()) {
+            connection.setAutoCommit(false);
+        }
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Session state changed by a borrower is restored when connection is returned")
+    void restoreSessionStateOnReturn() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+        boolean readOnly;
+        int transactionIsolation;
+        String schema;
+        try (var connection = pool.borrow()) {
+            readOnly = connection.isReadOnly();
+            transactionIsolation = connection.getTransactionIsolation();
+            schema = connection.getSchema();
+            connection.setReadOnly(!readOnly);
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setSchema("INFORMATION_SCHEMA");
+        }
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.isReadOnly()).isEqualTo(readOnly);
+            assertThat(connection.getTransactionIsolation()).isEqualTo(transactionIsolation);
+            assertThat(connection.getSchema()).isEqualTo(schema);
+        }
+        assertThat(openedConnections).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Idle connections above min size are evicted")
+    void evictIdleConnections() throws Exception {
+        pool = createPool(1, 3, Duration.ofMillis(50));
+
+        var first = pool.borrow();
+        var second = pool.borrow();
+        first.close();
+        second.close();
+        assertThat(pool.getIdleCount()).isEqualTo(2);
+
+        Thread.sleep(300);
+
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Prepared statements are reused across borrows of the same connection")
+    void reusePreparedStatement() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1), 2);
+
+        for (int i = 0; i < 3; i++) {
+            try (var connection = pool.borrow();
+                 var preparedStatement = connection.prepareStatement("SELECT ?")) {
+                preparedStatement.setInt(1, i);
+                try (var resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    assertThat(resultSet.getInt(1)).isEqualTo(i);
+                }
+            }
+        }
+
+        var stats = pool.getStatementCacheStats();
+        assertThat(stats.getHitCount()).isEqualTo(2);
+        assertThat(stats.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Statement that is still open is not handed out twice")
+    void openStatementIsNotShared() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1), 2);
+
+        try (var connection = pool.borrow();
+             var first = connection.prepareStatement("SELECT 1");
+             var second = connection.prepareStatement("SELECT 1")) {
+            assertThat(second).isNotSameAs(first);
+            assertThat(second.unwrap(PreparedStatement.class)).isNotSameAs(first.unwrap(PreparedStatement.class));
+        }
+
+        assertThat(pool.getStatementCacheStats().getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Least recently used statement is closed when evicted")
+    void closeEvictedStatement() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1), 1);
+
+        try (var connection = pool.borrow()) {
+            PreparedStatement evicted;
+            try (var preparedStatement = connection.prepareStatement("SELECT 1")) {
+                evicted = preparedStatement.unwrap(PreparedStatement.class);
+            }
+            connection.prepareStatement("SELECT 2").close();
+
+            assertThat(evicted.isClosed()).isTrue();
+        }
+        assertThat(pool.getStatementCacheStats().getEvictionCount()).isEqualTo(1);
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, Duration idleTimeout) {
+        return createPool(minSize, maxSize, idleTimeout, 0);
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, Duration idleTimeout, int statementCacheSize) {
+        return ConnectionPool.builder()
+                .connectionFactory(this::open)
+                .minSize(minSize)
+                .maxSize(maxSize)
+                .acquireTimeout(Duration.ofMillis(100))
+                .idleTimeout(idleTimeout)
+                .housekeepingPeriod(Duration.ofMillis(20))
+                .validationTimeoutSeconds(1)
+                .statementCacheSize(statementCacheSize)
+                .build();
+    }
+
+    private Connection open() throws SQLException {
+        openedConnections.incrementAndGet();
+        return DriverManager.getConnection(URL, "sa", "");
+    }
+}
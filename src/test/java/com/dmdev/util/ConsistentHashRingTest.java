@@ -0,0 +1,63 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void spreadsKeysEvenly() {
+        var ring = ConsistentHashRing.of(4, 128);
+        var counts = new int[4];
+
+        for (int key = 0; key < KEYS; key++) {
+            counts[ring.shardFor(key)]++;
+        }
+
+        for (var count : counts) {
+            assertThat(count).isBetween(KEYS / 4 * 8 / 10, KEYS / 4 * 12 / 10);
+        }
+    }
+
+    @Test
+    void addingShardOnlyMovesKeysToIt() {
+        var ring = ConsistentHashRing.of(4, 128);
+        var grownRing = ConsistentHashRing.of(5, 128);
+        var moved = 0;
+
+        for (int key = 0; key < KEYS; key++) {
+            var shard = ring.shardFor(key);
+            var newShard = grownRing.shardFor(key);
+            if (shard != newShard) {
+                assertThat(newShard).isEqualTo(4);
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(KEYS / 5 * 8 / 10, KEYS / 5 * 12 / 10);
+    }
+
+    @Test
+    void removingShardOnlyMovesItsKeys() {
+        var ring = ConsistentHashRing.of(3, 128);
+        var shrunkRing = new ConsistentHashRing(List.of(0, 2), 128);
+
+        for (int key = 0; key < KEYS; key++) {
+            if (ring.shardFor(key) != 1) {
+                assertThat(shrunkRing.shardFor(key)).isEqualTo(ring.shardFor(key));
+            }
+        }
+        assertThat(shrunkRing.getShards()).containsExactly(0, 2);
+    }
+
+    @Test
+    void rejectsEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+    }
+}
@@ -0,0 +1,50 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IntObjectHashMapTest {
+
+    private final IntObjectHashMap<String> map = new IntObjectHashMap<>(2);
+
+    @Test
+    void putGetAndReplace() {
+        assertThat(map.put(1, "Andrey")).isNull();
+        assertThat(map.put(1, "Anna")).isEqualTo("Andrey");
+
+        assertThat(map.get(1)).isEqualTo("Anna");
+        assertThat(map.get(2)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectNullValue() {
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void behaveLikeHashMapUnderRandomChurn() {
+        var random = new Random(42);
+        Map<Integer, String> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            var key = random.nextInt(2_000) - 1_000;
+            if (random.nextBoolean()) {
+                assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        Map<String, Boolean> values = new HashMap<>();
+        map.forEachValue(value -> values.put(value, true));
+        assertThat(values.keySet()).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+}
@@ -0,0 +1,61 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class LruCacheTest {
+
+    @Test
+    @DisplayName("Least recently used entry is evicted when cache is full")
+    void evictLeastRecentlyUsed() {
+        Map<String, Integer> evicted = new HashMap<>();
+        var cache = new LruCache<String, Integer>(2, null, Clock.systemUTC(), evicted::put);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+
+        cache.put("c", 3);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("c")).isEqualTo(3);
+        assertThat(evicted).containsExactly(Map.entry("b", 2));
+    }
+
+    @Test
+    @DisplayName("Entry is not returned after its time to live")
+    void expireAfterTimeToLive() {
+        var clock = mock(Clock.class);
+        var cache = new LruCache<String, Integer>(2, Duration.ofSeconds(10), clock);
+        doReturn(0L).when(clock).millis();
+        cache.put("a", 1);
+
+        doReturn(9_999L).when(clock).millis();
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        doReturn(10_000L).when(clock).millis();
+        assertThat(cache.get("a")).isNull();
+    }
+
+    @Test
+    @DisplayName("Hits and misses are counted")
+    void countHitsAndMisses() {
+        var cache = new LruCache<String, Integer>(2);
+        cache.put("a", 1);
+
+        cache.get("a");
+        cache.get("b");
+
+        assertThat(cache.stats()).isEqualTo(new CacheStats(1, 1, 0));
+        assertThat(cache.stats().hitRate()).isEqualTo(0.5);
+    }
+}
@@ -1,6 +1,7 @@
 package com.dmdev.util;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -25,7 +26,15 @@ class PropertiesUtilTest {
                 Arguments.of("db.url", "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1"),
                 Arguments.of("db.user", "sa"),
                 Arguments.of("db.password", ""),
-                Arguments.of("db.driver", "org.h2.Driver")
+                Arguments.of("db.driver", "org.h2.Driver"),
+                Arguments.of("db.pool.max-size", "5")
         );
     }
+
+    @Test
+    @DisplayName("Get int parameter or default")
+    void checkGetInt() {
+        assertEquals(5, PropertiesUtil.getInt("db.pool.max-size", 10));
+        assertEquals(10, PropertiesUtil.getInt("db.pool.unknown", 10));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRouterTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:router-primary";
+    private static final String REPLICA_A_URL = "jdbc:h2:mem:router-replica-a";
+    private static final String REPLICA_B_URL = "jdbc:h2:mem:router-replica-b";
+
+    private final AtomicBoolean replicaBDown = new AtomicBoolean();
+    private ReplicaRouter router;
+
+    @AfterEach
+    void closeRouter() {
+        router.close();
+    }
+
+    @Test
+    @DisplayName("Round-robin selection alternates between replicas")
+    void roundRobin() throws SQLException {
+        router = createRouter(ReplicaRouter.Selection.ROUND_ROBIN);
+
+        assertThat(List.of(borrowedUrl(), borrowedUrl(), borrowedUrl(), borrowedUrl()))
+                .containsExactly(REPLICA_A_URL, REPLICA_B_URL, REPLICA_A_URL, REPLICA_B_URL);
+    }
+
+    @Test
+    @DisplayName("Least-busy selection skips the replica with more borrowed connections")
+    void leastBusy() throws SQLException {
+        router = createRouter(ReplicaRouter.Selection.LEAST_BUSY);
+
+        try (var first = router.borrow()) {
+            var busyUrl = first.getMetaData().getURL();
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(borrowedUrl()).isNotEqualTo(busyUrl);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Failing replica is skipped until the health check finds it valid again")
+    void unhealthyReplica() throws SQLException {
+        router = createRouter(ReplicaRouter.Selection.ROUND_ROBIN);
+        replicaBDown.set(true);
+
+        assertThat(List.of(borrowedUrl(), borrowedUrl(), borrowedUrl())).containsOnly(REPLICA_A_URL);
+        assertThat(router.getHealthyCount()).isEqualTo(1);
+
+        replicaBDown.set(false);
+        router.checkHealth();
+
+        assertThat(router.getHealthyCount()).isEqualTo(2);
+        assertThat(List.of(borrowedUrl(), borrowedUrl())).containsExactlyInAnyOrder(REPLICA_A_URL, REPLICA_B_URL);
+    }
+
+    @Test
+    @DisplayName("Exhausted replica pools fall back to the primary without being marked unhealthy")
+    void exhaustedReplicasStayHealthy() throws SQLException {
+        router = createRouter(ReplicaRouter.Selection.ROUND_ROBIN);
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                borrowed.add(router.borrow());
+            }
+
+            assertThat(borrowedUrl()).isEqualTo(PRIMARY_URL);
+            router.checkHealth();
+            assertThat(router.getHealthyCount()).isEqualTo(2);
+        } finally {
+            for (var connection : borrowed) {
+                connection.close();
+            }
+        }
+        assertThat(borrowedUrl()).isNotEqualTo(PRIMARY_URL);
+    }
+
+    @Test
+    @DisplayName("Primary is used if no replica is healthy")
+    void fallbackToPrimary() throws SQLException {
+        router = ReplicaRouter.builder()
+                .primary(() -> DriverManager.getConnection(PRIMARY_URL, "sa", ""))
+                .pools(List.of(createPool(() -> {
+                    throw new SQLException("Replica is down");
+                })))
+                .healthCheckInterval(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .build();
+
+        assertThat(borrowedUrl()).isEqualTo(PRIMARY_URL);
+        assertThat(router.getHealthyCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Primary is used inside a transaction")
+    void primaryInTransaction() {
+        router = createRouter(ReplicaRouter.Selection.ROUND_ROBIN);
+
+        var actualResult = TransactionManager.inTransaction(() -> {
+            try {
+                return borrowedUrl();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(actualResult).isEqualTo(PRIMARY_URL);
+    }
+
+    private String borrowedUrl() throws SQLException {
+        try (var connection = router.borrow()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    private ReplicaRouter createRouter(ReplicaRouter.Selection selection) {
+        return ReplicaRouter.builder()
+                .primary(() -> DriverManager.getConnection(PRIMARY_URL, "sa", ""))
+                .pools(List.of(
+                        createPool(() -> DriverManager.getConnection(REPLICA_A_URL, "sa", "")),
+                        createPool(this::openReplicaB)))
+                .selection(selection)
+                .healthCheckInterval(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .build();
+    }
+
+    private Connection openReplicaB() throws SQLException {
+        if (replicaBDown.get()) {
+            throw new SQLException("Replica is down");
+        }
+        return DriverManager.getConnection(REPLICA_B_URL, "sa", "");
+    }
+
+    private static ConnectionPool createPool(ConnectionPool.ConnectionFactory connectionFactory) {
+        return ConnectionPool.builder()
+                .connectionFactory(connectionFactory)
+                .minSize(0)
+                .maxSize(2)
+                .acquireTimeout(Duration.ofMillis(100))
+                .validationTimeoutSeconds(1)
+                .build();
+    }
+}
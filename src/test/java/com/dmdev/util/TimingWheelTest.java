@@ -0,0 +1,63 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final TimingWheel timingWheel = new TimingWheel(Duration.ofSeconds(1), 4, 3, START);
+
+    @Test
+    void fireNoEarlierThanDeadlineAndAtMostOneTickLater() {
+        var random = new Random(42);
+        var horizonSeconds = Duration.between(START, timingWheel.horizon()).toSeconds();
+        var deadlines = new Instant[200];
+        for (int id = 0; id < deadlines.length; id++) {
+            deadlines[id] = START.plusMillis(random.nextLong(horizonSeconds * 1000));
+            assertThat(timingWheel.schedule(id, deadlines[id])).isTrue();
+        }
+
+        for (var now = START; timingWheel.size() > 0; now = now.plusMillis(500)) {
+            var current = now;
+            timingWheel.advance(now, id -> assertThat(deadlines[id])
+                    .isBeforeOrEqualTo(current)
+                    .isAfter(current.minus(Duration.ofSeconds(1))));
+        }
+    }
+
+    @Test
+    void rescheduleAndCancel() {
+        List<Integer> expired = new ArrayList<>();
+        timingWheel.schedule(1, START.plusSeconds(2));
+        timingWheel.schedule(2, START.plusSeconds(2));
+        timingWheel.schedule(1, START.plusSeconds(20));
+        timingWheel.cancel(2);
+
+        timingWheel.advance(START.plusSeconds(10), expired::add);
+        assertThat(expired).isEmpty();
+        timingWheel.advance(START.plusSeconds(20), expired::add);
+
+        assertThat(expired).containsExactly(1);
+    }
+
+    @Test
+    void rejectDeadlineBeyondHorizon() {
+        assertThat(timingWheel.horizon()).isEqualTo(START.plusSeconds(63));
+
+        assertThat(timingWheel.schedule(1, timingWheel.horizon())).isFalse();
+        assertThat(timingWheel.schedule(2, START.minusSeconds(1))).isTrue();
+        List<Integer> expired = new ArrayList<>();
+        timingWheel.advance(START, expired::add);
+
+        assertThat(expired).containsExactly(2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.dmdev.util;
+
+import com.dmdev.dao.JdbcSubscriptionDao;
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.IntegrationTestBase;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionManagerIT extends IntegrationTestBase {
+
+    private final SubscriptionDao subscriptionDao = JdbcSubscriptionDao.getInstance();
+
+    @Test
+    void commitsAllDaoCallsTogether() {
+        var subscription = TransactionManager.inTransaction(() -> {
+            var inserted = subscriptionDao.insert(getSubscription(1, "Andrey"));
+            subscriptionDao.insert(getSubscription(2, "Anna"));
+            return inserted;
+        });
+
+        assertThat(subscriptionDao.findAll()).hasSize(2).contains(subscription);
+    }
+
+    @Test
+    void rollsBackAllDaoCallsOnException() {
+        var exception = new IllegalStateException("failed");
+
+        var actualException = assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            subscriptionDao.insert(getSubscription(1, "Andrey"));
+            subscriptionDao.insert(getSubscription(2, "Anna"));
+            throw exception;
+        }));
+
+        assertThat(actualException).isSameAs(exception);
+        assertThat(subscriptionDao.findAll()).isEmpty();
+    }
+
+    @Test
+    void sharesOneConnectionAndJoinsNestedTransactions() {
+        TransactionManager.inTransaction(() -> {
+            var first = ConnectionManager.get();
+            var second = ConnectionManager.get();
+            assertThat(first).isSameAs(second);
+            TransactionManager.inTransaction(() -> assertThat(ConnectionManager.get()).isSameAs(first));
+            assertThat(ConnectionManager.getPool().getActiveCount()).isEqualTo(1);
+        });
+
+        assertThat(ConnectionManager.getPool().getActiveCount()).isZero();
+    }
+
+    @Test
+    void bindsConnectionOnFirstUse() {
+        TransactionManager.inTransaction(() -> {
+            assertThat(TransactionManager.isActive()).isTrue();
+            assertThat(ConnectionManager.getPool().getActiveCount()).isZero();
+        });
+
+        assertThat(TransactionManager.isActive()).isFalse();
+    }
+
+    @Test
+    void appliesAndRestoresIsolation() {
+        TransactionManager.inTransaction(Isolation.SERIALIZABLE,
+                () -> assertThat(getTransactionIsolation()).isEqualTo(Connection.TRANSACTION_SERIALIZABLE));
+
+        assertThat(getTransactionIsolation()).isNotEqualTo(Connection.TRANSACTION_SERIALIZABLE);
+    }
+
+    @Test
+    void findByIdForUpdateReadsInsideTransaction() {
+        var subscription = subscriptionDao.insert(getSubscription(1, "Andrey"));
+
+        var actualResult = TransactionManager.inTransaction(() -> subscriptionDao.findByIdForUpdate(subscription.getId()));
+
+        assertThat(actualResult).contains(subscription);
+    }
+
+    @Test
+    void findByIdForUpdateRequiresTransaction() {
+        assertThrows(IllegalStateException.class, () -> subscriptionDao.findByIdForUpdate(1));
+    }
+
+    @SneakyThrows
+    private static int getTransactionIsolation() {
+        try (var connection = ConnectionManager.get()) {
+            return connection.getTransactionIsolation();
+        }
+    }
+
+    private static Subscription getSubscription(Integer userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.GOOGLE)
+                .expirationDate(Instant.now().plus(Duration.ofDays(10)).truncatedTo(ChronoUnit.SECONDS))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
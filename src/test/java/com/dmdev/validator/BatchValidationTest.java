@@ -0,0 +1,79 @@
+package com.dmdev.validator;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchValidationTest {
+
+    private final CreateSubscriptionValidator validator = CreateSubscriptionValidator.getInstance();
+
+    @Test
+    @DisplayName("Parallel validation gives the same result as sequential validation")
+    void parallelEqualsSequential() {
+        var dtos = IntStream.range(0, 20_000)
+                .mapToObj(BatchValidationTest::getSubscriptionDto)
+                .toList();
+
+        var sequential = BatchValidation.validateAll(validator, dtos, Integer.MAX_VALUE);
+        var parallel = BatchValidation.validateAll(validator, dtos, 1);
+
+        assertThat(parallel).isEqualTo(sequential);
+        assertThat(parallel.getFailureCount()).isEqualTo(20_000 / 7 + 1);
+    }
+
+    @Test
+    @DisplayName("Only failing indices carry errors")
+    void reportFailuresByIndex() {
+        var dtos = IntStream.range(0, 15)
+                .mapToObj(BatchValidationTest::getSubscriptionDto)
+                .toList();
+
+        var actualResult = validator.validateAll(dtos);
+
+        assertThat(actualResult.size()).isEqualTo(15);
+        assertThat(actualResult.getFailedIndices().stream().toArray()).containsExactly(0, 7, 14);
+        assertThat(actualResult.isValid(1)).isTrue();
+        assertThat(actualResult.getErrors(1)).isEmpty();
+        assertThat(actualResult.getErrors(7)).containsExactly(Error.of(100, "userId is invalid"), Error.of(101, "name is invalid"));
+        List<Integer> failedIndices = new ArrayList<>();
+        actualResult.forEachFailure((index, errors) -> failedIndices.add(index));
+        assertThat(failedIndices).containsExactly(0, 7, 14);
+    }
+
+    @Test
+    @DisplayName("Small batches are validated on the calling thread")
+    void validateSmallBatchOnCallingThread() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Validator<CreateSubscriptionDto> recordingValidator = dto -> {
+            threads.add(Thread.currentThread());
+            return validator.validate(dto);
+        };
+
+        recordingValidator.validateAll(IntStream.range(0, BatchValidation.PARALLEL_THRESHOLD - 1)
+                .mapToObj(BatchValidationTest::getSubscriptionDto)
+                .toList());
+
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    private static CreateSubscriptionDto getSubscriptionDto(int i) {
+        var invalid = i % 7 == 0;
+        return CreateSubscriptionDto.builder()
+                .userId(invalid ? null : i)
+                .name(invalid ? " " : "Andrey " + i)
+                .provider("GOOGLE")
+                .expirationDate(Instant.now().plus(Duration.ofDays(10)))
+                .build();
+    }
+}
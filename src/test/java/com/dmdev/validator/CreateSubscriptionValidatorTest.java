@@ -6,6 +6,7 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
 import java.time.Instant;
 
@@ -35,6 +36,31 @@ class CreateSubscriptionValidatorTest {
         assertFalse(actualResult.hasErrors());
     }
 
+    @Test
+    @DisplayName("All parameters are correct = no allocations")
+    void shouldPassValidationWithoutAllocations() {
+        CreateSubscriptionDto subscriptionDto = CreateSubscriptionDto.builder()
+                .userId(22)
+                .name("Andrey")
+                .provider("google")
+                .expirationDate(Instant.now().plus(Duration.ofDays(10)))
+                .build();
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 10_000; i++) {
+            validator.validate(subscriptionDto);
+        }
+
+        var allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            validator.validate(subscriptionDto);
+        }
+        var allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertThat(validator.validate(subscriptionDto)).isSameAs(ValidationResult.success());
+        assertThat(allocated).isLessThan(1_000);
+    }
+
     @Test
     @DisplayName("Code 100 if userID is null")
     void invalidId() {
@@ -133,4 +159,19 @@ class CreateSubscriptionValidatorTest {
                 .toList();
         assertThat(errorCodes).contains(100, 101, 103);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Fail fast = only code 100 if userID & username & expiration date are incorrect")
+    void failFast() {
+        CreateSubscriptionDto subscriptionDto = CreateSubscriptionDto.builder()
+                .userId(null)
+                .name("")
+                .provider("Google")
+                .expirationDate(Instant.now().minus(Duration.ofDays(10)))
+                .build();
+
+        ValidationResult actualResult = validator.validate(subscriptionDto, RuleValidator.Mode.FAIL_FAST);
+
+        assertThat(actualResult.getErrors()).extracting(Error::getCode).containsExactly(100);
+    }
+}
@@ -0,0 +1,85 @@
+package com.dmdev.validator;
+
+import com.dmdev.validator.Rule.Cost;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleValidatorTest {
+
+    private static final Error EMPTY = Error.of(1, "empty");
+    private static final Error TOO_LONG = Error.of(2, "too long");
+    private static final Error NOT_LOWER_CASE = Error.of(3, "not lower case");
+    private static final Error NO_DIGITS = Error.of(4, "no digits");
+
+    private final List<Error> checked = new ArrayList<>();
+
+    @Test
+    void shouldCheckCheapRulesFirstKeepingDeclarationOrder() {
+        var validator = RuleValidator.<String>builder()
+                .rule(rule(value -> value.chars().anyMatch(Character::isDigit), NO_DIGITS, Cost.EXPENSIVE))
+                .rule(rule(value -> !value.isEmpty(), EMPTY, Cost.CHEAP))
+                .rule(rule(value -> value.equals(value.toLowerCase()), NOT_LOWER_CASE, Cost.MODERATE))
+                .rule(rule(value -> value.length() < 5, TOO_LONG, Cost.CHEAP))
+                .build();
+
+        var actualResult = validator.validate("ABCDEF");
+
+        assertThat(checked).containsExactly(EMPTY, TOO_LONG, NOT_LOWER_CASE, NO_DIGITS);
+        assertThat(actualResult.getErrors()).containsExactly(TOO_LONG, NOT_LOWER_CASE, NO_DIGITS);
+    }
+
+    @Test
+    void shouldStopAtFirstErrorInFailFastMode() {
+        var validator = RuleValidator.<String>builder()
+                .rule(rule(value -> value.chars().anyMatch(Character::isDigit), NO_DIGITS, Cost.EXPENSIVE))
+                .rule(rule(value -> value.length() < 5, TOO_LONG, Cost.CHEAP))
+                .mode(RuleValidator.Mode.FAIL_FAST)
+                .build();
+
+        var actualResult = validator.validate("ABCDEF");
+
+        assertThat(checked).containsExactly(TOO_LONG);
+        assertThat(actualResult.getErrors()).containsExactly(TOO_LONG);
+        assertThat(validator.withMode(RuleValidator.Mode.COLLECT_ALL).validate("ABCDEF").getErrors())
+                .containsExactly(TOO_LONG, NO_DIGITS);
+    }
+
+    @Test
+    void shouldReturnSharedSuccessIfAllRulesPass() {
+        var validator = RuleValidator.<String>builder()
+                .rule(rule(value -> !value.isEmpty(), EMPTY, Cost.CHEAP))
+                .build();
+
+        assertThat(validator.validate("abc")).isSameAs(ValidationResult.success());
+    }
+
+    @Test
+    void shouldComposeRulesOfOtherValidators() {
+        var nameRules = RuleValidator.<String>builder()
+                .rule(Rule.of(value -> !value.isEmpty(), EMPTY))
+                .rule(Rule.of(value -> value.length() < 5, TOO_LONG))
+                .build();
+        var userRules = RuleValidator.<List<String>>builder()
+                .field(names -> names.get(0), nameRules)
+                .build();
+        var validator = RuleValidator.<List<String>>builder()
+                .include(userRules)
+                .rule(Rule.of(names -> names.size() == 1, NOT_LOWER_CASE, Cost.EXPENSIVE))
+                .build();
+
+        assertThat(validator.validate(List.of("ABCDEF", "x")).getErrors()).containsExactly(TOO_LONG, NOT_LOWER_CASE);
+        assertThat(validator.validate(List.of("abc")).hasErrors()).isFalse();
+    }
+
+    private Rule<String> rule(Predicate<String> validWhen, Error error, Cost cost) {
+        return Rule.of(value -> {
+            checked.add(error);
+            return validWhen.test(value);
+        }, error, cost);
+    }
+}